@@ -0,0 +1,148 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking {@link Fetcher} on top of Jetty's NIO {@link HttpClient}.
+ * <p>
+ * Requests are multiplexed over a handful of selector/callback threads, so thousands of fetches
+ * can be in flight without holding a crawl pool thread each. The returned future completes on a
+ * client thread: callers should hop back onto the crawl pool (e.g. {@code thenApplyAsync}) before
+ * doing any parsing.
+ */
+public class AsyncHttpFetcher implements Fetcher {
+    private static final int CLIENT_THREADS = 8;
+    private static final int MAX_CONNECTIONS_PER_HOST = 32;
+    private static volatile AsyncHttpFetcher instance;
+
+    private final HttpClient client;
+
+    private AsyncHttpFetcher() {
+        QueuedThreadPool threads = new QueuedThreadPool(CLIENT_THREADS, 2);
+        threads.setName("async-fetcher");
+        threads.setDaemon(true);
+
+        client = new HttpClient(new SslContextFactory.Client());
+        client.setExecutor(threads);
+        client.setFollowRedirects(true);
+        client.setConnectTimeout(5000);
+        client.setMaxConnectionsPerDestination(MAX_CONNECTIONS_PER_HOST);
+        client.setUserAgentField(new HttpField(HttpHeader.USER_AGENT, USER_AGENT));
+        try {
+            client.start();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start HTTP client", e);
+        }
+    }
+
+    /**
+     * Gets instance, starting the client on first use.
+     *
+     * @return the instance
+     */
+    public static AsyncHttpFetcher getInstance() {
+        if (instance == null) {
+            synchronized (AsyncHttpFetcher.class) {
+                if (instance == null) {
+                    instance = new AsyncHttpFetcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the client if it was ever started.
+     */
+    public static void shutdown() {
+        synchronized (AsyncHttpFetcher.class) {
+            if (instance != null) {
+                try {
+                    instance.client.stop();
+                } catch (Exception e) {
+                    Logger.getInstance().warn("[Shutdown] Failed to stop HTTP client: " + e.getMessage());
+                }
+                instance = null;
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers, int maxBodyBytes, int timeoutMs) {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        Request request;
+        try {
+            request = client.newRequest(url).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            request.header(header.getKey(), header.getValue());
+        }
+        request.send(new BodyListener(future, maxBodyBytes));
+        return future;
+    }
+
+    /**
+     * Buffers the body up to a limit; a longer body is cut off and the exchange aborted,
+     * which still completes the future normally with the truncated bytes.
+     */
+    private static final class BodyListener extends Response.Listener.Adapter {
+        private static final Exception TRUNCATED = new Exception("body truncated", null, false, false) {};
+
+        private final CompletableFuture<FetchResponse> future;
+        private final int maxBodyBytes;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private volatile boolean truncated;
+
+        BodyListener(CompletableFuture<FetchResponse> future, int maxBodyBytes) {
+            this.future = future;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer content) {
+            int room = maxBodyBytes - body.size();
+            int length = Math.min(room, content.remaining());
+            if (length > 0) {
+                byte[] chunk = new byte[length];
+                content.get(chunk);
+                body.write(chunk, 0, length);
+            }
+            if (content.hasRemaining() || body.size() >= maxBodyBytes) {
+                truncated = true;
+                response.abort(TRUNCATED);
+            }
+        }
+
+        @Override
+        public void onComplete(Result result) {
+            if (result.isFailed() && !(truncated && result.getResponse() != null)) {
+                future.completeExceptionally(result.getFailure());
+                return;
+            }
+            Response response = result.getResponse();
+            Map<String, String> headers = new HashMap<>();
+            for (HttpField field : response.getHeaders()) {
+                headers.merge(field.getName(), field.getValue(), (a, b) -> a + ", " + b);
+            }
+            future.complete(new FetchResponse(result.getRequest().getURI().toString(),
+                    response.getStatus(), headers, body.toByteArray()));
+        }
+    }
+}
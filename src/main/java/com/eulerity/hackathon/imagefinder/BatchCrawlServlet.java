@@ -0,0 +1,133 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Crawls many sites as one batch.
+ * <p>
+ * {@code POST /batch} takes the start urls as repeated {@code url} parameters and/or one {@code urls}
+ * parameter separated by commas or whitespace, starts a {@link CrawlGroups group} and answers right away
+ * with its id. {@code GET /batch?id=...} returns the group's progress and each site's images;
+ * {@code summary=true} leaves the image lists out. Sites crawl like {@code POST /main} crawls, sharing its
+ * cache, at most {@code -Dimagefinder.batch.maxSites} (default {@value #DEFAULT_MAX_SITES}) per batch.
+ * While the most batches {@link CrawlGroups} keeps are all still running, a new one gets a 503.
+ */
+@WebServlet(
+        name = "BatchCrawl",
+        urlPatterns = {"/batch"}
+)
+public class BatchCrawlServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int DEFAULT_MAX_SITES = 1000;
+    private static final int MAX_SITES = Integer.getInteger("imagefinder.batch.maxSites", DEFAULT_MAX_SITES);
+
+    private final transient CrawlGroups groups;
+    private final transient Function<String, ResultCache.Job> starter;
+
+    /**
+     * Instantiates a new Batch crawl servlet.
+     */
+    public BatchCrawlServlet() {
+        this(CrawlGroups.getInstance(), CrawlJobs.getInstance()::startJob);
+    }
+
+    BatchCrawlServlet(CrawlGroups groups, Function<String, ResultCache.Job> starter) {
+        this.groups = groups;
+        this.starter = starter;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        List<String> urls = parseUrls(request.getParameterValues("url"), request.getParameter("urls"));
+
+        if (urls.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().print(GSON.toJson(new CrawlResult("error", "Missing 'url' or 'urls' parameter.", null, null)));
+            return;
+        }
+        if (urls.size() > MAX_SITES) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().print(GSON.toJson(new CrawlResult("error",
+                    "Too many urls, at most " + MAX_SITES + " per batch.", null, null)));
+            return;
+        }
+
+        CrawlGroups.Group group = groups.create(urls, starter);
+        if (group == null) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "10");
+            response.getWriter().print(GSON.toJson(new CrawlResult("error",
+                    "Too many batches running, try again later.", null, null)));
+            return;
+        }
+        Logger.getInstance().info("[Batch] Started group " + group.getId() + " with " + group.getSites().size() + " sites.");
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.getWriter().print(GSON.toJson(BatchResult.of(group, true)));
+    }
+
+    /**
+     * Poll a batch.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        String id = request.getParameter("id");
+
+        if (id == null || id.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().print(GSON.toJson(new CrawlResult("error", "Missing 'id' parameter.", null, null)));
+            return;
+        }
+
+        CrawlGroups.Group group = groups.get(id);
+        if (group == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().print(GSON.toJson(new CrawlResult("not_started", "No batch found for this id.", null, null)));
+            return;
+        }
+
+        BatchResult result = BatchResult.of(group, Boolean.parseBoolean(request.getParameter("summary")));
+        response.setStatus("completed".equals(result.getStatus()) ? HttpServletResponse.SC_OK : HttpServletResponse.SC_ACCEPTED);
+        response.getWriter().print(GSON.toJson(result));
+    }
+
+    /**
+     * Collect the start urls of a batch.
+     *
+     * @param url  the repeated {@code url} parameters, or null
+     * @param urls the {@code urls} parameter, or null
+     * @return the urls, in order
+     */
+    static List<String> parseUrls(String[] url, String urls) {
+        List<String> parsed = new ArrayList<>();
+        if (url != null) {
+            for (String value : url) {
+                if (value != null && !value.trim().isEmpty()) {
+                    parsed.add(value.trim());
+                }
+            }
+        }
+        if (urls != null) {
+            for (String value : urls.split("[,\\s]+")) {
+                if (!value.isEmpty()) {
+                    parsed.add(value);
+                }
+            }
+        }
+        return parsed.isEmpty() ? Collections.<String>emptyList() : parsed;
+    }
+}
@@ -0,0 +1,206 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to represent the progress and per-site results of a batch crawl in JSON format.
+ */
+public class BatchResult {
+    private final String groupId;
+    private final String status;
+    private final int sites;
+    private final int queued;
+    private final int running;
+    private final int completed;
+    private final int partial;
+    private final int failed;
+    private final int images;
+    private final long elapsedMillis;
+    private final List<SiteResult> results;
+
+    private BatchResult(CrawlGroups.Group group, boolean summary) {
+        int queued = 0;
+        int running = 0;
+        int completed = 0;
+        int partial = 0;
+        int failed = 0;
+        int images = 0;
+        List<SiteResult> results = new ArrayList<>();
+        for (CrawlGroups.Site site : group.getSites()) {
+            CrawlResult result = site.getResult();
+            switch (result.getStatus()) {
+                case "queued": queued++; break;
+                case "in_progress": running++; break;
+                case "completed": completed++; break;
+                case "partial": partial++; break;
+                default: failed++; break;
+            }
+            int count = result.getImages() == null ? 0 : result.getImages().size();
+            images += count;
+            results.add(new SiteResult(site.getUrl(), result, count, summary));
+        }
+        this.groupId = group.getId();
+        this.status = queued + running == 0 ? "completed" : "in_progress";
+        this.sites = results.size();
+        this.queued = queued;
+        this.running = running;
+        this.completed = completed;
+        this.partial = partial;
+        this.failed = failed;
+        this.images = images;
+        this.elapsedMillis = group.getElapsedMillis();
+        this.results = results;
+    }
+
+    /**
+     * Instantiates a new Batch result from the current state of a group.
+     *
+     * @param group   the group
+     * @param summary whether to leave out the image lists of the sites
+     * @return the batch result
+     */
+    public static BatchResult of(CrawlGroups.Group group, boolean summary) {
+        return new BatchResult(group, summary);
+    }
+
+    /**
+     * Gets group id.
+     *
+     * @return the group id
+     */
+    public String getGroupId() { return groupId; }
+
+    /**
+     * Gets status, {@code in_progress} until every site has finished, then {@code completed}.
+     *
+     * @return the status
+     */
+    public String getStatus() { return status; }
+
+    /**
+     * Gets the number of sites.
+     *
+     * @return the sites
+     */
+    public int getSites() { return sites; }
+
+    /**
+     * Gets the number of sites waiting to start.
+     *
+     * @return the queued
+     */
+    public int getQueued() { return queued; }
+
+    /**
+     * Gets the number of sites being crawled.
+     *
+     * @return the running
+     */
+    public int getRunning() { return running; }
+
+    /**
+     * Gets the number of sites crawled completely.
+     *
+     * @return the completed
+     */
+    public int getCompleted() { return completed; }
+
+    /**
+     * Gets the number of sites cut short with the images found so far.
+     *
+     * @return the partial
+     */
+    public int getPartial() { return partial; }
+
+    /**
+     * Gets the number of sites that failed.
+     *
+     * @return the failed
+     */
+    public int getFailed() { return failed; }
+
+    /**
+     * Gets the number of images found across all sites.
+     *
+     * @return the images
+     */
+    public int getImages() { return images; }
+
+    /**
+     * Gets the time the batch has been running, or took.
+     *
+     * @return the elapsed millis
+     */
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    /**
+     * Gets the sites' results in submission order.
+     *
+     * @return the results
+     */
+    public List<SiteResult> getResults() { return results; }
+
+    /**
+     * The result of one site of a batch.
+     */
+    public static class SiteResult {
+        private final String url;
+        private final String status;
+        private final String message;
+        private final int imageCount;
+        private final List<String> images;
+        private final List<String> logos;
+
+        private SiteResult(String url, CrawlResult result, int imageCount, boolean summary) {
+            this.url = url;
+            this.status = result.getStatus();
+            this.message = result.getMessage();
+            this.imageCount = imageCount;
+            this.images = summary ? null : result.getImages();
+            this.logos = summary ? null : result.getLogos();
+        }
+
+        /**
+         * Gets url.
+         *
+         * @return the url
+         */
+        public String getUrl() { return url; }
+
+        /**
+         * Gets status.
+         *
+         * @return the status
+         */
+        public String getStatus() { return status; }
+
+        /**
+         * Gets message.
+         *
+         * @return the message
+         */
+        public String getMessage() { return message; }
+
+        /**
+         * Gets the number of images found.
+         *
+         * @return the image count
+         */
+        public int getImageCount() { return imageCount; }
+
+        /**
+         * Gets images, or null in a summary.
+         *
+         * @return the images
+         */
+        public List<String> getImages() { return images; }
+
+        /**
+         * Gets logos, or null in a summary.
+         *
+         * @return the logos
+         */
+        public List<String> getLogos() { return logos; }
+    }
+}
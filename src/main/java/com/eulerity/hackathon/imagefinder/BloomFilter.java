@@ -0,0 +1,80 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over 64-bit fingerprints.
+ * <p>
+ * Bits live in an {@link AtomicLongArray} and are set with CAS, so concurrent adds never lose bits.
+ * The {@code k} probe positions come from double hashing of the fingerprint.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Instantiates a new Bloom filter sized for the expected number of entries and false positive rate.
+     *
+     * @param expectedEntries   the expected number of entries
+     * @param falsePositiveRate the acceptable false positive rate, e.g. 0.01
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * ln2));
+    }
+
+    /**
+     * Add a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if the filter did not already (seem to) contain it
+     */
+    public boolean add(long fingerprint) {
+        long h2 = FingerprintSet.mix(fingerprint) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(fingerprint + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Might contain boolean.
+     *
+     * @param fingerprint the fingerprint
+     * @return false if the fingerprint was definitely never added
+     */
+    public boolean mightContain(long fingerprint) {
+        long h2 = FingerprintSet.mix(fingerprint) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(fingerprint + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of the bit array in bytes.
+     *
+     * @return the bytes
+     */
+    public long estimateBytes() {
+        return bitCount >>> 3;
+    }
+}
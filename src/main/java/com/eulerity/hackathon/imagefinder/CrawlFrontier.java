@@ -0,0 +1,111 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-job breadth-first crawl frontier.
+ * <p>
+ * Pages are queued by depth and always polled from the shallowest non-empty depth,
+ * so a crawl finishes one level before going deeper. Offering and polling are lock-free
+ * and never block.
+ */
+public class CrawlFrontier {
+    private final ConcurrentLinkedQueue<Entry>[] levels;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Instantiates a new Crawl frontier.
+     *
+     * @param maxDepth the deepest depth that will be queued
+     */
+    @SuppressWarnings("unchecked")
+    public CrawlFrontier(int maxDepth) {
+        this.levels = new ConcurrentLinkedQueue[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            levels[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Queue a page.
+     *
+     * @param url   the url
+     * @param depth the depth
+     * @return false if the depth is beyond the frontier's max depth
+     */
+    public boolean offer(String url, int depth) {
+        if (depth < 0 || depth >= levels.length) {
+            return false;
+        }
+        levels[depth].offer(new Entry(url, depth));
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Take the next page, shallowest first.
+     *
+     * @return the entry, or null if the frontier is empty
+     */
+    public Entry poll() {
+        for (ConcurrentLinkedQueue<Entry> level : levels) {
+            Entry entry = level.poll();
+            if (entry != null) {
+                size.decrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of queued pages.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Is empty boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        for (ConcurrentLinkedQueue<Entry> level : levels) {
+            if (!level.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A queued page.
+     */
+    public static final class Entry {
+        private final String url;
+        private final int depth;
+
+        Entry(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+
+        /**
+         * Gets url.
+         *
+         * @return the url
+         */
+        public String getUrl() { return url; }
+
+        /**
+         * Gets depth.
+         *
+         * @return the depth
+         */
+        public int getDepth() { return depth; }
+    }
+}
@@ -0,0 +1,294 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups of site crawls submitted together as one batch, looked up by group id.
+ * <p>
+ * A group starts its sites in submission order, but at most {@code -Dimagefinder.batch.concurrentSites}
+ * (default {@value #DEFAULT_CONCURRENT_SITES}) at a time, and the next one starts when a running one
+ * finishes. Each site's crawl then takes turns on the pool with every other crawl (see
+ * {@link FairShareExecutor}). So a group of hundreds of sites neither floods the pool nor spends the
+ * crawl time limit of its last sites waiting in a queue. A group holds on to its sites' jobs, so their
+ * results outlive eviction from the {@link ResultCache}. At most {@code -Dimagefinder.batch.maxGroups}
+ * (default {@value #DEFAULT_MAX_GROUPS}) groups are kept: the oldest finished ones are dropped to make
+ * room for a new one, and a new group is turned down while all of them are still running.
+ */
+public class CrawlGroups {
+    private static final int DEFAULT_CONCURRENT_SITES = 8;
+    private static final int DEFAULT_MAX_GROUPS = 32;
+
+    private final int concurrentSites;
+    private final int maxGroups;
+    private final Executor executor;
+    private final LinkedHashMap<String, Group> groups = new LinkedHashMap<>(); // guarded by itself, oldest first
+
+    /**
+     * Instantiates a new Crawl groups.
+     *
+     * @param concurrentSites how many sites of a group crawl at once
+     * @param maxGroups       how many groups are kept
+     * @param executor        starts the next sites of a group when one finishes
+     */
+    CrawlGroups(int concurrentSites, int maxGroups, Executor executor) {
+        this.concurrentSites = Math.max(1, concurrentSites);
+        this.maxGroups = maxGroups;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static CrawlGroups getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final CrawlGroups INSTANCE = new CrawlGroups(
+                Integer.getInteger("imagefinder.batch.concurrentSites", DEFAULT_CONCURRENT_SITES),
+                Integer.getInteger("imagefinder.batch.maxGroups", DEFAULT_MAX_GROUPS),
+                CrawlingThreadPool.getInstance().getExecutor());
+    }
+
+    /**
+     * Create a group and start its first sites. Repeated urls are crawled once.
+     *
+     * @param urls    the start urls
+     * @param starter starts or joins the crawl of one url
+     * @return the group, or null if {@code maxGroups} groups are kept and none of them has finished
+     */
+    public Group create(List<String> urls, Function<String, ResultCache.Job> starter) {
+        Group group = new Group(UUID.randomUUID().toString(), new ArrayList<>(new LinkedHashSet<>(urls)), starter);
+        synchronized (groups) {
+            Iterator<Group> it = groups.values().iterator();
+            while (groups.size() >= maxGroups && it.hasNext()) {
+                if (it.next().isDone()) {
+                    it.remove();
+                }
+            }
+            if (groups.size() >= maxGroups) {
+                return null; // a running group is never dropped, its sites would keep crawling unseen
+            }
+            groups.put(group.id, group);
+        }
+        group.admit();
+        return group;
+    }
+
+    /**
+     * Look a group up.
+     *
+     * @param id the group id
+     * @return the group, or null if it is unknown or was dropped
+     */
+    public Group get(String id) {
+        synchronized (groups) {
+            return groups.get(id);
+        }
+    }
+
+    /**
+     * Gets the number of groups kept.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (groups) {
+            return groups.size();
+        }
+    }
+
+    /**
+     * A batch of sites.
+     */
+    public final class Group {
+        private final String id;
+        private final List<Site> sites;
+        private final Function<String, ResultCache.Job> starter;
+        private final long createdNanos = System.nanoTime();
+        private int nextSite; // guarded by this
+        private int running; // guarded by this
+        private int finished; // guarded by this
+        private volatile long finishedNanos;
+
+        private Group(String id, List<String> urls, Function<String, ResultCache.Job> starter) {
+            this.id = id;
+            this.starter = starter;
+            List<Site> sites = new ArrayList<>(urls.size());
+            for (String url : urls) {
+                sites.add(new Site(url));
+            }
+            this.sites = Collections.unmodifiableList(sites);
+        }
+
+        /**
+         * Gets the group id.
+         *
+         * @return the id
+         */
+        public String getId() { return id; }
+
+        /**
+         * Gets the sites in submission order.
+         *
+         * @return the sites
+         */
+        public List<Site> getSites() { return sites; }
+
+        /**
+         * Whether every site has finished.
+         *
+         * @return the boolean
+         */
+        public synchronized boolean isDone() {
+            return finished == sites.size();
+        }
+
+        /**
+         * Gets the time since the group was created, or how long it took once done.
+         *
+         * @return the milliseconds
+         */
+        public long getElapsedMillis() {
+            long end = isDone() ? finishedNanos : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - createdNanos);
+        }
+
+        /**
+         * Start sites while there are free slots.
+         */
+        private void admit() {
+            List<Site> starting = new ArrayList<>();
+            synchronized (this) {
+                while (running < concurrentSites && nextSite < sites.size()) {
+                    starting.add(sites.get(nextSite++));
+                    running++;
+                }
+            }
+            for (Site site : starting) {
+                ResultCache.Job job;
+                try {
+                    job = starter.apply(site.url);
+                } catch (RuntimeException e) {
+                    Logger.getInstance().error("Crawling failed to start for " + site.url + ": " + e.getMessage());
+                    job = ResultCache.getInstance().new Job(CompletableFuture.completedFuture(
+                            new CrawlResult("error", "Crawling failed to start.", null, null)), null);
+                }
+                site.job = job;
+                // finishing a site starts the next on the pool, so cached sites do not recurse through here
+                job.getFuture().whenCompleteAsync((result, e) -> finished(), executor);
+            }
+        }
+
+        private void finished() {
+            synchronized (this) {
+                running--;
+                if (++finished == sites.size()) {
+                    finishedNanos = System.nanoTime();
+                }
+            }
+            admit();
+        }
+    }
+
+    /**
+     * One site of a group.
+     */
+    public static final class Site {
+        private final String url;
+        private volatile ResultCache.Job job;
+
+        private Site(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Gets the start url.
+         *
+         * @return the url
+         */
+        public String getUrl() { return url; }
+
+        /**
+         * Gets the site's result so far: {@code queued} before it starts, {@code in_progress} with the
+         * images found so far while it runs, and the crawl's own result once it is done.
+         *
+         * @return the result
+         */
+        public CrawlResult getResult() {
+            ResultCache.Job current = job;
+            if (current == null) {
+                return new CrawlResult("queued", "Waiting for other sites of the batch to finish.", null, null);
+            }
+            CompletableFuture<CrawlResult> future = current.getFuture();
+            if (!future.isDone()) {
+                return current.getLog() == null
+                        ? new CrawlResult("in_progress", "Crawling is still in progress.", null, null)
+                        : new CrawlResult("in_progress", "Crawling is still in progress.", current.getLog().read(0));
+            }
+            try {
+                return future.get();
+            } catch (CancellationException e) {
+                return current.getLog() == null
+                        ? new CrawlResult("error", "Crawling was cancelled.", null, null)
+                        : new CrawlResult("partial", "Crawling was cancelled, returning available results.",
+                        current.getLog().read(0));
+            } catch (ExecutionException e) {
+                return new CrawlResult("error", "Crawling failed.", null, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new CrawlResult("in_progress", "Crawling is still in progress.", null, null);
+            }
+        }
+    }
+
+    /**
+     * Gets the sites of a group whose crawl has not started.
+     *
+     * @param group the group
+     * @return the count
+     */
+    static int queuedCount(Group group) {
+        synchronized (group) {
+            return group.sites.size() - group.nextSite;
+        }
+    }
+
+    /**
+     * Gets the sites of a group being crawled.
+     *
+     * @param group the group
+     * @return the count
+     */
+    static int runningCount(Group group) {
+        synchronized (group) {
+            return group.running;
+        }
+    }
+
+    /**
+     * Gets the groups kept, oldest first.
+     *
+     * @return a copy of the groups
+     */
+    Map<String, Group> snapshot() {
+        synchronized (groups) {
+            return new LinkedHashMap<>(groups);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts crawl jobs and looks them up, for every entry point: {@code /main}, {@code /batch} and
+ * {@code /socket}. A job lives in the {@link ResultCache} from the moment it starts, so each url is
+ * crawled once however many clients ask for it, and every job gets the same time limit and hands its
+ * crawler back to the {@link ImageCrawlerFactory} when it is done. A job that ran out of time or was
+ * cancelled is not served again: the next request for its url resumes the crawl from the
+ * {@link CrawlStore}. A completed crawl the store kept is served only while it is younger than
+ * {@code -Dimagefinder.store.freshMinutes} (default {@value #DEFAULT_FRESH_MINUTES}); after that the
+ * next request crawls the url again from scratch.
+ */
+public class CrawlJobs {
+    static final long CRAWL_TIMEOUT_SECONDS = 10;
+    private static final long DEFAULT_FRESH_MINUTES = 60;
+    private static final CrawlJobs INSTANCE = new CrawlJobs();
+
+    private final long timeoutMillis;
+    private final long freshMillis;
+
+    /**
+     * Instantiates a new Crawl jobs; the shared one is {@link #getInstance()}.
+     */
+    CrawlJobs() {
+        this(TimeUnit.SECONDS.toMillis(CRAWL_TIMEOUT_SECONDS),
+                TimeUnit.MINUTES.toMillis(Long.getLong("imagefinder.store.freshMinutes", DEFAULT_FRESH_MINUTES)));
+    }
+
+    /**
+     * Instantiates a new Crawl jobs.
+     *
+     * @param timeoutMillis how long a job runs before it completes with partial results
+     * @param freshMillis   how long a completed crawl kept by the crawl store is served
+     */
+    CrawlJobs(long timeoutMillis, long freshMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.freshMillis = freshMillis;
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static CrawlJobs getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Join the cached crawl of a url, or start one if there is none or it was cancelled or timed out
+     *
+     * @param url the start url
+     * @return the job
+     */
+    public ResultCache.Job startJob(String url) {
+        ResultCache.Job job = findJob(url);
+        if (job != null && isUnfinished(job)) {
+            // its crawler was stopped; a new one resumes the pages the crawl store still lists as queued
+            Logger.getInstance().info("[Restart] Previous crawl for " + url + " was cancelled or timed out. Resuming...");
+            job = null;
+        } else if (job != null) {
+            Logger.getInstance().info("[Cache] Serving cached crawl for: " + url);
+        }
+        if (job == null) {
+            job = startCrawling(url);
+        }
+        return job;
+    }
+
+    /**
+     * start crawl and cache its job: a `CompletableFuture` completed by the crawler itself when its last
+     * page finishes, or with partial results after the time limit, and the log of that
+     * same crawler. A job completed early (timed out or cancelled) stops its crawler. The job is cached
+     * before the crawl starts, and only if no other request got there first; a request that loses the
+     * race joins the winner's job instead of crawling the url a second time.
+     *
+     * @param url the start url
+     * @return the job
+     */
+    ResultCache.Job startCrawling(String url) {
+        ImageCrawler crawler;
+        try {
+            crawler = ImageCrawlerFactory.getInstance().getCrawler(url);
+        } catch (MalformedURLException | RuntimeException e) {
+            return ResultCache.getInstance().putIfAbsent(url,
+                    CompletableFuture.completedFuture(new CrawlResult("error", "Invalid URL format.", null, null)),
+                    null, CrawlJobs::isUnfinished);
+        }
+
+        CompletableFuture<CrawlResult> future = new CompletableFuture<>();
+        ResultCache.Job job = ResultCache.getInstance().putIfAbsent(url, future, crawler.getResults(),
+                CrawlJobs::isUnfinished);
+        if (job.getFuture() != future) {
+            return job;
+        }
+
+        CompletableFuture<Void> crawl = crawler.crawlFrom(url);
+        crawl.whenComplete((ignored, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+                return;
+            }
+            Logger.getInstance().info("[Crawler] " + url + " crawling completed. Robots cache hits: "
+                    + RobotsCache.getInstance().getHits() + ", misses: " + RobotsCache.getInstance().getMisses());
+            future.complete(new CrawlResult("completed", "Crawling completed successfully.", crawler.getResults().read(0)));
+        });
+        // the result cache owns the result log, so the crawler's visited sets can go once it is done
+        crawl.whenComplete((ignored, e) -> ImageCrawlerFactory.getInstance().release(url, crawler));
+
+        ScheduledFuture<?> timeout = CrawlingThreadPool.getInstance().getScheduler().schedule(() -> {
+            if (future.complete(partialResult(crawler.getResults()))) {
+                Logger.getInstance().info("[Timeout] Crawling exceeded " + timeoutMillis
+                        + " ms, returning partial results.");
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, e) -> {
+            timeout.cancel(false);
+            if (!crawl.isDone()) {
+                // nobody waits for the rest; startJob resumes it on the next request for the url
+                crawler.stop();
+                ImageCrawlerFactory.getInstance().release(url, crawler);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Look a crawl up in the result cache, falling back to a completed crawl kept by the crawl store if
+     * it is still fresh
+     *
+     * @param url the start url
+     * @return the job, or null if the url has not been crawled recently
+     */
+    public ResultCache.Job findJob(String url) {
+        ResultCache cache = ResultCache.getInstance();
+        ResultCache.Job job = cache.get(url);
+        if (job != null) {
+            return job;
+        }
+        CrawlStore.StoredJob stored = CrawlStore.getInstance().load(url);
+        if (stored == null || !stored.isCompleted()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - stored.getStartedMillis() > freshMillis) {
+            // the site may have changed; the factory starts a new crawl for a completed job, not a resumed one
+            Logger.getInstance().info("[Store] Stored crawl for " + url + " is stale. Crawling again...");
+            return null;
+        }
+        Logger.getInstance().info("[Store] Serving stored crawl for: " + url);
+        CrawlResult result = new CrawlResult("completed", "Crawling completed successfully.", stored.getResults().read(0));
+        return cache.putIfAbsent(url, CompletableFuture.completedFuture(result), stored.getResults(), previous -> false);
+    }
+
+    /**
+     * Whether a job ended before its crawl did: cancelled, or completed with partial results.
+     */
+    private static boolean isUnfinished(ResultCache.Job job) {
+        CompletableFuture<CrawlResult> future = job.getFuture();
+        if (future.isCancelled()) {
+            return true;
+        }
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return false;
+        }
+        return "partial".equals(future.join().getStatus());
+    }
+
+    /**
+     * Get part of the data currently crawled (if timeout)
+     *
+     * @param log the job's result log
+     * @return the partial result
+     */
+    static CrawlResult partialResult(ResultLog log) {
+        return new CrawlResult("partial",
+                "Crawling exceeded time limit, returning available results.",
+                log.read(0));
+    }
+}
@@ -0,0 +1,15 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * Callback for results as they are appended to a {@link ResultLog}.
+ * Called on crawl pool or fetcher threads, so implementations must be quick and non-blocking.
+ */
+public interface CrawlListener {
+    /**
+     * An image passed validation.
+     *
+     * @param imageUrl the image url
+     * @param logo     whether it was classified as a logo
+     */
+    void onImage(String imageUrl, boolean logo);
+}
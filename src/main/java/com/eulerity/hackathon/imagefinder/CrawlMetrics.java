@@ -0,0 +1,290 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where crawl time goes: a {@link LatencyHistogram} per crawl stage, striped counters of page and image
+ * outcomes, and, when rendered, the gauges and counters of the thread pool, the politeness scheduler,
+ * the page extractor, the HTTP cache and the logger. {@link #render(StringBuilder)} writes them all in
+ * the Prometheus text exposition format; latencies are summaries in seconds.
+ */
+public class CrawlMetrics {
+    private static final CrawlMetrics INSTANCE = new CrawlMetrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * A timed crawl stage.
+     */
+    public enum Stage {
+        /**
+         * From a page being handed to the politeness scheduler until it starts on the pool.
+         */
+        SCHEDULE,
+        /**
+         * Fetching a page, until its bytes have arrived.
+         */
+        FETCH,
+        /**
+         * Parsing a page into its images and links.
+         */
+        PARSE,
+        /**
+         * Checking a page against robots.txt, including fetching the rules on a cache miss.
+         */
+        ROBOTS,
+        /**
+         * Validating one image, until it is accepted or rejected.
+         */
+        VALIDATION,
+        /**
+         * Classifying the images of one page as logos or not.
+         */
+        LOGO;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * A page outcome.
+     */
+    public enum PageResult {
+        /**
+         * Fetched and parsed.
+         */
+        PARSED,
+        /**
+         * Revalidated with a 304, its kept extraction reused.
+         */
+        NOT_MODIFIED,
+        /**
+         * Skipped because robots.txt disallows it.
+         */
+        DISALLOWED,
+        /**
+         * Failed to fetch or parse.
+         */
+        FAILED
+    }
+
+    /**
+     * An image outcome.
+     */
+    public enum ImageResult {
+        /**
+         * Listed.
+         */
+        ACCEPTED,
+        /**
+         * Failed validation.
+         */
+        REJECTED,
+        /**
+         * Folded into a near-duplicate or url variant listed before.
+         */
+        VARIANT
+    }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<PageResult, LongAdder> pages = new EnumMap<>(PageResult.class);
+    private final Map<ImageResult, LongAdder> images = new EnumMap<>(ImageResult.class);
+
+    /**
+     * Instantiates a new Crawl metrics.
+     */
+    CrawlMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+        for (PageResult result : PageResult.values()) {
+            pages.put(result, new LongAdder());
+        }
+        for (ImageResult result : ImageResult.values()) {
+            images.put(result, new LongAdder());
+        }
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static CrawlMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the time a stage took.
+     *
+     * @param stage      the stage
+     * @param startNanos the {@link System#nanoTime()} reading taken when it began
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        stages.get(stage).recordSince(startNanos);
+    }
+
+    /**
+     * Record the time a stage took.
+     *
+     * @param stage the stage
+     * @param nanos the duration
+     */
+    public void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    /**
+     * Gets the histogram of a stage.
+     *
+     * @param stage the stage
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Count a page outcome.
+     *
+     * @param result the outcome
+     */
+    public void page(PageResult result) {
+        pages.get(result).increment();
+    }
+
+    /**
+     * Count an image outcome.
+     *
+     * @param result the outcome
+     */
+    public void image(ImageResult result) {
+        images.get(result).increment();
+    }
+
+    /**
+     * Gets the number of pages with an outcome.
+     *
+     * @param result the outcome
+     * @return the count
+     */
+    public long getPages(PageResult result) {
+        return pages.get(result).sum();
+    }
+
+    /**
+     * Gets the number of images with an outcome.
+     *
+     * @param result the outcome
+     * @return the count
+     */
+    public long getImages(ImageResult result) {
+        return images.get(result).sum();
+    }
+
+    /**
+     * Write the crawl metrics in the Prometheus text format.
+     *
+     * @param out where to write
+     */
+    public void renderCrawl(StringBuilder out) {
+        header(out, "imagefinder_stage_latency_seconds", "summary", "Latency of crawl stages.");
+        for (Map.Entry<Stage, LatencyHistogram> entry : stages.entrySet()) {
+            String stage = "stage=\"" + entry.getKey().label() + "\"";
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                sample(out, "imagefinder_stage_latency_seconds", stage + ",quantile=\"" + quantile + "\"",
+                        seconds(histogram.valueAtQuantile(quantile)));
+            }
+            sample(out, "imagefinder_stage_latency_seconds_sum", stage, seconds(histogram.getSumNanos()));
+            sample(out, "imagefinder_stage_latency_seconds_count", stage, histogram.getCount());
+        }
+        header(out, "imagefinder_stage_latency_max_seconds", "gauge", "Longest recorded latency of crawl stages.");
+        for (Map.Entry<Stage, LatencyHistogram> entry : stages.entrySet()) {
+            sample(out, "imagefinder_stage_latency_max_seconds", "stage=\"" + entry.getKey().label() + "\"",
+                    seconds(entry.getValue().getMaxNanos()));
+        }
+        header(out, "imagefinder_pages_total", "counter", "Crawled pages by outcome.");
+        for (Map.Entry<PageResult, LongAdder> entry : pages.entrySet()) {
+            sample(out, "imagefinder_pages_total", "result=\"" + entry.getKey().name().toLowerCase(Locale.ROOT) + "\"",
+                    entry.getValue().sum());
+        }
+        header(out, "imagefinder_images_total", "counter", "Checked images by outcome.");
+        for (Map.Entry<ImageResult, LongAdder> entry : images.entrySet()) {
+            sample(out, "imagefinder_images_total", "result=\"" + entry.getKey().name().toLowerCase(Locale.ROOT) + "\"",
+                    entry.getValue().sum());
+        }
+    }
+
+    /**
+     * Write every metric in the Prometheus text format: the crawl metrics and those of the shared
+     * thread pool, politeness scheduler, page extractor, HTTP cache and logger.
+     *
+     * @param out where to write
+     */
+    public void render(StringBuilder out) {
+        renderCrawl(out);
+
+        CrawlingThreadPool pool = CrawlingThreadPool.getInstance();
+        header(out, "imagefinder_pool_active_threads", "gauge", "Crawl pool tasks running.");
+        sample(out, "imagefinder_pool_active_threads", null, pool.getActiveCount());
+        header(out, "imagefinder_pool_queue_depth", "gauge", "Crawl pool tasks waiting for a thread.");
+        sample(out, "imagefinder_pool_queue_depth", null, pool.getQueueSize());
+        header(out, "imagefinder_pool_rejected_tasks_total", "counter", "Tasks the crawl pool refused.");
+        sample(out, "imagefinder_pool_rejected_tasks_total", null, pool.getRejectedCount());
+        header(out, "imagefinder_pool_ready_lanes", "gauge", "Crawls with tasks waiting for their turn on the pool.");
+        sample(out, "imagefinder_pool_ready_lanes", null, pool.getFairShare().getReadyLaneCount());
+        header(out, "imagefinder_pool_lane_queued", "gauge", "Tasks waiting in crawl lanes.");
+        sample(out, "imagefinder_pool_lane_queued", null, pool.getFairShare().getQueuedCount());
+
+        PolitenessScheduler politeness = PolitenessScheduler.getInstance();
+        header(out, "imagefinder_limiter_waits_total", "counter", "Times a rate limiter made work wait for a token.");
+        sample(out, "imagefinder_limiter_waits_total", "limiter=\"host\"", politeness.getThrottledCount());
+        header(out, "imagefinder_limiter_queued", "gauge", "Work waiting on a rate limiter.");
+        sample(out, "imagefinder_limiter_queued", "limiter=\"host\"", politeness.getQueuedCount());
+        header(out, "imagefinder_politeness_hosts", "gauge", "Hosts with politeness state.");
+        sample(out, "imagefinder_politeness_hosts", null, politeness.getHostCount());
+
+        header(out, "imagefinder_parse_fallbacks_total", "counter", "Pages too broken to stream, parsed with Jsoup.");
+        sample(out, "imagefinder_parse_fallbacks_total", null, PageExtractor.getFallbackCount());
+
+        HttpCache httpCache = HttpCache.getInstance();
+        header(out, "imagefinder_http_revalidations_total", "counter", "Conditional requests by outcome.");
+        sample(out, "imagefinder_http_revalidations_total", "result=\"sent\"", httpCache.getConditionalRequests());
+        sample(out, "imagefinder_http_revalidations_total", "result=\"not_modified\"", httpCache.getNotModified());
+        header(out, "imagefinder_http_cache_bytes", "gauge", "Estimated bytes held by the conditional-request cache.");
+        sample(out, "imagefinder_http_cache_bytes", null, httpCache.getBytes());
+
+        Logger logger = Logger.getInstance();
+        header(out, "imagefinder_log_messages_total", "counter", "Log messages by outcome.");
+        sample(out, "imagefinder_log_messages_total", "result=\"written\"", logger.getWritten());
+        sample(out, "imagefinder_log_messages_total", "result=\"dropped\"", logger.getDropped());
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
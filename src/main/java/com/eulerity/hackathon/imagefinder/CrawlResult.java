@@ -1,5 +1,6 @@
 package com.eulerity.hackathon.imagefinder;
 
+import java.util.List;
 
 /**
  * Class to represent the crawl result in JSON format.
@@ -7,8 +8,10 @@ package com.eulerity.hackathon.imagefinder;
 public class CrawlResult {
     private final String status;
     private final String message;
-    private final String images;
-    private final String logos;
+    private final List<String> images;
+    private final List<String> logos;
+    private final List<ImageMetadata> metadata;
+    private final Long cursor;
 
     /**
      * Instantiates a new Crawl result.
@@ -18,11 +21,29 @@ public class CrawlResult {
      * @param images  the images
      * @param logos   the logos
      */
-    public CrawlResult(String status, String message, String images, String logos) {
+    public CrawlResult(String status, String message, List<String> images, List<String> logos) {
+        this(status, message, images, logos, null, null);
+    }
+
+    /**
+     * Instantiates a new Crawl result holding the entries of a result log read after a cursor.
+     *
+     * @param status  the status
+     * @param message the message
+     * @param slice   the entries
+     */
+    public CrawlResult(String status, String message, ResultLog.Slice slice) {
+        this(status, message, slice.getImages(), slice.getLogos(), slice.getMetadata(), slice.getCursor());
+    }
+
+    private CrawlResult(String status, String message, List<String> images, List<String> logos,
+                        List<ImageMetadata> metadata, Long cursor) {
         this.status = status;
         this.message = message;
         this.images = images;
         this.logos = logos;
+        this.metadata = metadata;
+        this.cursor = cursor;
     }
 
     /**
@@ -44,12 +65,26 @@ public class CrawlResult {
      *
      * @return the images
      */
-    public String getImages() { return images; }
+    public List<String> getImages() { return images; }
 
     /**
      * Gets logos.
      *
      * @return the logos
      */
-    public String getLogos() { return logos; }
+    public List<String> getLogos() { return logos; }
+
+    /**
+     * Gets metadata.
+     *
+     * @return format, dimensions, size, content type and cluster size of every image and logo, or null
+     */
+    public List<ImageMetadata> getMetadata() { return metadata; }
+
+    /**
+     * Gets cursor.
+     *
+     * @return the sequence number to pass as {@code since} to fetch only newer images, or null
+     */
+    public Long getCursor() { return cursor; }
 }
@@ -0,0 +1,232 @@
+package com.eulerity.hackathon.imagefinder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import javax.websocket.CloseReason;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocket endpoint that streams images to the browser as the crawler accepts them.
+ * <p>
+ * The client sends {@code {"action":"crawl","url":"..."}} and receives
+ * {@code {"type":"images","url":...,"images":[...],"logos":[...]}} batches of up to
+ * {@value #BATCH_SIZE} urls, flushed at least every {@value #FLUSH_DELAY_MS} ms, followed by
+ * {@code {"type":"completed","url":...,"total":n}} once the crawl has finished. Crawls start through
+ * {@link CrawlJobs} like those of {@code /main}, so a socket joins a crawl already running for the url
+ * and ends with it, at the latest when its time limit is up.
+ */
+@ServerEndpoint("/socket")
+public class CrawlSocket {
+    private static final Gson GSON = new Gson();
+    private static final int BATCH_SIZE = 20;
+    private static final long FLUSH_DELAY_MS = 200;
+
+    private final Map<String, Streamer> streams = new ConcurrentHashMap<>();
+
+    /**
+     * On open.
+     *
+     * @param session the session
+     */
+    @OnOpen
+    public void onOpen(Session session) {
+        session.setMaxIdleTimeout(TimeUnit.MINUTES.toMillis(10));
+    }
+
+    /**
+     * On message.
+     *
+     * @param message the message
+     * @param session the session
+     */
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        String url;
+        try {
+            JsonObject request = new JsonParser().parse(message).getAsJsonObject();
+            if (!request.has("action") || !"crawl".equals(request.get("action").getAsString()) || !request.has("url")) {
+                sendError(session, null, "Expected {\"action\":\"crawl\",\"url\":...}");
+                return;
+            }
+            url = request.get("url").getAsString();
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            sendError(session, null, "Malformed message.");
+            return;
+        }
+
+        if (streams.containsKey(url)) {
+            return; // already streaming this crawl to this client
+        }
+        // the same job /main would start or join: cached, time-limited and released when done
+        ResultCache.Job job = CrawlJobs.getInstance().startJob(url);
+        ResultLog log = job.getLog();
+        if (log == null) {
+            sendError(session, url, "Invalid URL format.");
+            return;
+        }
+        Streamer streamer = new Streamer(session, url, log);
+        if (streams.putIfAbsent(url, streamer) != null) {
+            return;
+        }
+        log.addListener(streamer);
+        // images found before we subscribed; the streamer drops any duplicates
+        replay(streamer, log);
+
+        Logger.getInstance().info("[Socket] Streaming crawl for: " + url);
+        job.getFuture().whenComplete((result, e) -> {
+            log.removeListener(streamer);
+            streamer.finish();
+        });
+    }
+
+    /**
+     * On close.
+     *
+     * @param session the session
+     * @param reason  the reason
+     */
+    @OnClose
+    public void onClose(Session session, CloseReason reason) {
+        for (Streamer streamer : streams.values()) {
+            streamer.closed = true;
+            streamer.log.removeListener(streamer);
+        }
+        streams.clear();
+    }
+
+    /**
+     * On error.
+     *
+     * @param session the session
+     * @param error   the error
+     */
+    @OnError
+    public void onError(Session session, Throwable error) {
+        Logger.getInstance().warn("[Socket] " + error.getMessage());
+    }
+
+    private static void replay(Streamer streamer, ResultLog log) {
+        for (ImageMetadata image : log.read(0).getMetadata()) {
+            streamer.onImage(image.getUrl(), image.isLogo());
+        }
+    }
+
+    private static void sendError(Session session, String url, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", "error");
+        error.addProperty("url", url);
+        error.addProperty("message", message);
+        session.getAsyncRemote().sendText(GSON.toJson(error));
+    }
+
+    /**
+     * Buffers accepted images of one crawl and sends them in batches, one message in flight at a time.
+     */
+    private final class Streamer implements CrawlListener {
+        private final Session session;
+        private final String url;
+        private final ResultLog log;
+        private final Set<String> sent = ConcurrentHashMap.newKeySet();
+        private final ConcurrentLinkedQueue<String[]> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean flushArmed = new AtomicBoolean();
+        private volatile boolean finished;
+        private volatile boolean closed;
+
+        Streamer(Session session, String url, ResultLog log) {
+            this.session = session;
+            this.url = url;
+            this.log = log;
+        }
+
+        @Override
+        public void onImage(String imageUrl, boolean logo) {
+            if (closed || !sent.add(imageUrl)) {
+                return;
+            }
+            pending.add(new String[]{imageUrl, logo ? "logo" : "image"});
+            if (pending.size() >= BATCH_SIZE) {
+                flush();
+            } else if (flushArmed.compareAndSet(false, true)) {
+                CrawlingThreadPool.getInstance().getScheduler().schedule(() -> {
+                    flushArmed.set(false);
+                    flush();
+                }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void finish() {
+            finished = true;
+            flush();
+        }
+
+        private void flush() {
+            if (closed || !session.isOpen()) {
+                return;
+            }
+            if (!sending.compareAndSet(false, true)) {
+                return; // the send in flight flushes again when it completes
+            }
+            String message = nextMessage();
+            if (message == null) {
+                sending.set(false);
+                return;
+            }
+            session.getAsyncRemote().sendText(message, result -> {
+                sending.set(false);
+                if (!result.isOK()) {
+                    closed = true;
+                    return;
+                }
+                if (!pending.isEmpty() || (finished && streams.containsKey(url))) {
+                    flush();
+                }
+            });
+        }
+
+        /**
+         * The next batch, or the completion message once everything has been sent.
+         */
+        private String nextMessage() {
+            List<String> images = new ArrayList<>();
+            List<String> logos = new ArrayList<>();
+            String[] entry;
+            while (images.size() < BATCH_SIZE && (entry = pending.poll()) != null) {
+                images.add(entry[0]); // logos too, like the images of a POST /main result
+                if ("logo".equals(entry[1])) {
+                    logos.add(entry[0]);
+                }
+            }
+            JsonObject message = new JsonObject();
+            message.addProperty("url", url);
+            if (!images.isEmpty()) {
+                message.addProperty("type", "images");
+                message.add("images", GSON.toJsonTree(images));
+                message.add("logos", GSON.toJsonTree(logos));
+                return GSON.toJson(message);
+            }
+            if (finished && streams.remove(url, this)) {
+                message.addProperty("type", "completed");
+                message.addProperty("total", sent.size());
+                return GSON.toJson(message);
+            }
+            return null;
+        }
+    }
+}
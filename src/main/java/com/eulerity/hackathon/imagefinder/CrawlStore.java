@@ -0,0 +1,892 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk log of crawl progress: jobs started and completed, pages queued and crawled,
+ * images accepted (with their validated format and size), folded into a near-duplicate, or rejected.
+ * <p>
+ * Records are framed as {@code magic, body length, body, crc32} and written through a buffered
+ * {@link FileChannel}, flushed every second and whenever a job completes. An in-memory index maps each job's start url to the file
+ * offsets of its records, so a finished job can be served without re-fetching and an interrupted one
+ * resumed from where it stopped. On startup the index is rebuilt by scanning a memory-mapped view of
+ * the log for at most {@code -Dimagefinder.store.rebuildMillis} (default {@value #DEFAULT_REBUILD_MILLIS});
+ * whatever is left is indexed in the background, and jobs that are not indexed yet are simply
+ * crawled again. Torn or corrupt records are skipped by resynchronizing on the next magic number.
+ * <p>
+ * Compaction periodically rewrites the log without superseded jobs, jobs older than
+ * {@code -Dimagefinder.store.retentionHours} (default {@value #DEFAULT_RETENTION_HOURS}) and the page
+ * records of completed jobs. The store lives in {@code -Dimagefinder.store.dir} (default
+ * {@code crawl-store}); an empty value disables it.
+ */
+public class CrawlStore {
+    private static final int MAGIC = 0x494d4746; // "IMGF"
+    private static final byte MAGIC_FIRST_BYTE = (byte) (MAGIC >>> 24);
+    private static final int FRAME_BYTES = 12; // magic + body length + crc
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final long MAP_WINDOW_BYTES = 64L << 20;
+    private static final String FILE_NAME = "records.dat";
+    private static final long DEFAULT_REBUILD_MILLIS = 2000;
+    private static final long DEFAULT_RETENTION_HOURS = 24;
+    private static final long COMPACT_MIN_DEAD_BYTES = 4L << 20;
+
+    private static final byte JOB_STARTED = 1;
+    private static final byte PAGE_QUEUED = 2;
+    private static final byte PAGE_DONE = 3;
+    private static final byte IMAGE = 4;
+    private static final byte IMAGE_REJECTED = 5;
+    private static final byte JOB_COMPLETED = 6;
+    private static final byte IMAGE_VARIANT = 7;
+
+    private final Path file;
+    private final long retentionMillis;
+    private final Map<String, JobIndex> jobs = new HashMap<>(); // guarded by this
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024); // guarded by this
+    private FileChannel channel; // guarded by this
+    private long writePosition; // guarded by this, end of the log including buffered bytes
+    private long indexedBytes; // guarded by this, bytes of the records the index still needs
+    private boolean compacting; // guarded by this
+    private volatile boolean indexComplete;
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new Crawl store and rebuilds its index.
+     *
+     * @param dir                the directory, or null for a disabled store
+     * @param retentionMillis    how long jobs are kept
+     * @param rebuildBudgetNanos how long the startup scan may block
+     * @param scheduler          runs flushes, compaction and the rest of the scan, or null for none
+     * @throws IOException if the log cannot be opened
+     */
+    CrawlStore(Path dir, long retentionMillis, long rebuildBudgetNanos, ScheduledExecutorService scheduler)
+            throws IOException {
+        this.retentionMillis = retentionMillis;
+        if (dir == null) {
+            this.file = null;
+            this.closed = true;
+            return;
+        }
+        Files.createDirectories(dir);
+        this.file = dir.resolve(FILE_NAME);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.writePosition = channel.size();
+
+        long started = System.nanoTime();
+        long end = writePosition;
+        long scanned = scan(0, end, started + rebuildBudgetNanos);
+        if (scanned < end) {
+            Logger.getInstance().info("[Store] Indexed " + scanned + " of " + end + " bytes within the rebuild budget,"
+                    + " indexing the rest in the background");
+            if (scheduler != null) {
+                scheduler.execute(() -> {
+                    scan(scanned, end, Long.MAX_VALUE);
+                    indexComplete = true;
+                });
+            }
+        } else {
+            indexComplete = true;
+        }
+        Logger.getInstance().info("[Store] Loaded " + jobs.size() + " jobs from " + file + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        if (scheduler != null) {
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, 1, 1, TimeUnit.SECONDS);
+            scheduler.scheduleWithFixedDelay(this::compactIfWorthwhile, 5, 5, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static CrawlStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final CrawlStore INSTANCE = open();
+
+        private static CrawlStore open() {
+            String dir = System.getProperty("imagefinder.store.dir", "crawl-store");
+            long retention = TimeUnit.HOURS.toMillis(Long.getLong("imagefinder.store.retentionHours", DEFAULT_RETENTION_HOURS));
+            long budget = TimeUnit.MILLISECONDS.toNanos(Long.getLong("imagefinder.store.rebuildMillis", DEFAULT_REBUILD_MILLIS));
+            try {
+                return new CrawlStore(dir.isEmpty() ? null : Paths.get(dir), retention, budget,
+                        CrawlingThreadPool.getInstance().getScheduler());
+            } catch (IOException e) {
+                Logger.getInstance().error("[Store] Failed to open crawl store in " + dir + ": " + e.getMessage());
+                try {
+                    return new CrawlStore(null, retention, budget, null);
+                } catch (IOException impossible) {
+                    throw new IllegalStateException(impossible);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether records are being persisted.
+     *
+     * @return the boolean
+     */
+    public boolean isEnabled() {
+        return !closed;
+    }
+
+    /**
+     * Record the start of a fresh crawl, superseding anything stored for the url before.
+     *
+     * @param jobUrl the start url
+     */
+    public void jobStarted(String jobUrl) {
+        append(JOB_STARTED, jobUrl, null, 0, false, null, null);
+    }
+
+    /**
+     * Record a page queued for crawling.
+     *
+     * @param jobUrl  the start url
+     * @param pageUrl the page url
+     * @param depth   the depth
+     */
+    public void pageQueued(String jobUrl, String pageUrl, int depth) {
+        append(PAGE_QUEUED, jobUrl, pageUrl, depth, false, null, null);
+    }
+
+    /**
+     * Record a page that has been crawled (or failed for good).
+     *
+     * @param jobUrl  the start url
+     * @param pageUrl the page url
+     */
+    public void pageDone(String jobUrl, String pageUrl) {
+        append(PAGE_DONE, jobUrl, pageUrl, 0, false, null, null);
+    }
+
+    /**
+     * Record an accepted image.
+     *
+     * @param jobUrl   the start url
+     * @param imageUrl the image url
+     * @param logo     whether it is a logo
+     * @param info     what validation found out about it
+     */
+    public void imageAccepted(String jobUrl, String imageUrl, boolean logo, ImageInfo info) {
+        append(IMAGE, jobUrl, imageUrl, 0, logo, null, info);
+    }
+
+    /**
+     * Record an image folded into an earlier accepted image as a near-duplicate.
+     *
+     * @param jobUrl         the start url
+     * @param imageUrl       the image url
+     * @param representative the url of the accepted image it was folded into
+     */
+    public void imageVariant(String jobUrl, String imageUrl, String representative) {
+        append(IMAGE_VARIANT, jobUrl, imageUrl, 0, false, representative, null);
+    }
+
+    /**
+     * Record an image that failed validation, so a resumed crawl does not check it again.
+     *
+     * @param jobUrl   the start url
+     * @param imageUrl the image url
+     */
+    public void imageRejected(String jobUrl, String imageUrl) {
+        append(IMAGE_REJECTED, jobUrl, imageUrl, 0, false, null, null);
+    }
+
+    /**
+     * Record that a crawl has finished.
+     *
+     * @param jobUrl the start url
+     */
+    public void jobCompleted(String jobUrl) {
+        append(JOB_COMPLETED, jobUrl, null, 0, false, null, null);
+    }
+
+    private void append(byte type, String jobUrl, String url, int depth, boolean logo,
+                        String representative, ImageInfo info) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        byte[] record;
+        try {
+            record = frame(encode(type, now, jobUrl, url, depth, logo, representative, info));
+        } catch (IOException e) {
+            Logger.getInstance().warn("[Store] Skipped unencodable record for " + jobUrl + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (record.length > writeBuffer.remaining()) {
+                    flushLocked();
+                }
+                long offset = writePosition;
+                if (record.length > writeBuffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(record), offset);
+                } else {
+                    writeBuffer.put(record);
+                }
+                writePosition += record.length;
+                index(type, now, jobUrl, offset, record.length, true);
+                if (type == JOB_COMPLETED) {
+                    flushLocked(); // a finished crawl should not depend on the next timed flush
+                }
+            } catch (IOException e) {
+                Logger.getInstance().error("[Store] Write failed, disabling the crawl store: " + e.getMessage());
+                closed = true;
+            }
+        }
+    }
+
+    private static byte[] encode(byte type, long timestamp, String jobUrl, String url, int depth, boolean logo,
+                                 String representative, ImageInfo info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + jobUrl.length() + (url == null ? 0 : url.length()));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(timestamp);
+        writeString(out, jobUrl);
+        switch (type) {
+            case PAGE_QUEUED:
+                writeString(out, url);
+                out.writeInt(depth);
+                break;
+            case PAGE_DONE:
+            case IMAGE_REJECTED:
+                writeString(out, url);
+                break;
+            case IMAGE:
+                writeString(out, url);
+                out.writeBoolean(logo);
+                writeString(out, info.getFormat() == null ? "" : info.getFormat());
+                out.writeInt(info.getWidth());
+                out.writeInt(info.getHeight());
+                out.writeLong(info.getByteLength());
+                writeString(out, info.getContentType() == null ? "" : info.getContentType());
+                break;
+            case IMAGE_VARIANT:
+                writeString(out, url);
+                writeString(out, representative);
+                break;
+            default:
+                break;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > 0xffff) {
+            throw new IOException("string of " + utf8.length + " bytes is too long");
+        }
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    private static byte[] frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer framed = ByteBuffer.allocate(FRAME_BYTES + body.length);
+        framed.putInt(MAGIC).putInt(body.length).put(body).putInt((int) crc.getValue());
+        return framed.array();
+    }
+
+    /**
+     * Index the records between {@code from} and {@code end}, giving up at the deadline.
+     *
+     * @return the position the scan reached
+     */
+    private long scan(long from, long end, long deadlineNanos) {
+        long position = from;
+        int records = 0;
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            while (position + FRAME_BYTES <= end) {
+                if ((++records & 1023) == 0 && System.nanoTime() - deadlineNanos > 0) {
+                    return position;
+                }
+                if (window == null || position + FRAME_BYTES > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = reader.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, end - position));
+                }
+                int at = (int) (position - windowStart);
+                int length = window.getInt(at + 4);
+                if (window.getInt(at) != MAGIC || length <= 0 || length > MAX_BODY_BYTES
+                        || position + FRAME_BYTES + length > end) {
+                    position = nextMagic(window, windowStart, position); // corrupt or torn: resynchronize
+                    continue;
+                }
+                if (position + FRAME_BYTES + length > windowStart + window.limit()) {
+                    window = null; // the record straddles the window, map again from its start
+                    continue;
+                }
+                byte[] body = new byte[length];
+                window.position(at + 8);
+                window.get(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != window.getInt(at + 8 + length)) {
+                    position = nextMagic(window, windowStart, position);
+                    continue;
+                }
+                Record record = decode(body);
+                synchronized (this) {
+                    index(record.type, record.timestamp, record.jobUrl, position, FRAME_BYTES + length, false);
+                }
+                position += FRAME_BYTES + length;
+            }
+            return end;
+        } catch (IOException | RuntimeException e) {
+            Logger.getInstance().error("[Store] Index rebuild stopped at " + position + ": " + e.getMessage());
+            return end;
+        }
+    }
+
+    /**
+     * Find the next candidate frame header after a corrupt one.
+     *
+     * @return the position of the next magic number in the window, or the last window position a magic
+     * number straddling the window could start at, so the scan maps the window again from there
+     */
+    private static long nextMagic(MappedByteBuffer window, long windowStart, long corrupt) {
+        int last = window.limit() - 4;
+        for (int i = (int) (corrupt - windowStart) + 1; i <= last; i++) {
+            if (window.get(i) == MAGIC_FIRST_BYTE && window.getInt(i) == MAGIC) {
+                return windowStart + i;
+            }
+        }
+        return windowStart + last + 1;
+    }
+
+    /**
+     * Add a record to the index. Records found by the startup scan never override a job that has been
+     * written to since this process started.
+     */
+    private void index(byte type, long timestamp, String jobUrl, long offset, int length, boolean live) {
+        JobIndex job = jobs.get(jobUrl);
+        if (!live && job != null && job.live) {
+            return;
+        }
+        if (job == null || type == JOB_STARTED) {
+            if (job != null) {
+                indexedBytes -= job.liveBytes;
+            }
+            job = new JobIndex(timestamp);
+            jobs.put(jobUrl, job);
+        }
+        job.live |= live;
+        indexedBytes += job.add(offset, length, type);
+    }
+
+    /**
+     * Load a stored job. Only the job's record references are copied under the store's lock; the records
+     * are read and decoded outside it, through a channel opened while the references were current, so a
+     * compaction that swaps the file in the meantime does not move them.
+     *
+     * @param jobUrl the start url
+     * @return the job, or null if nothing is stored for the url (or it expired)
+     */
+    public StoredJob load(String jobUrl) {
+        long[] offsets;
+        int[] lengths;
+        boolean completed;
+        long startedMillis;
+        FileChannel reader;
+        synchronized (this) {
+            JobIndex job = jobs.get(jobUrl);
+            if (closed || job == null || System.currentTimeMillis() - job.startedMillis > retentionMillis) {
+                return null;
+            }
+            try {
+                flushLocked();
+                reader = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                Logger.getInstance().error("[Store] Failed to load " + jobUrl + ": " + e.getMessage());
+                return null;
+            }
+            offsets = Arrays.copyOf(job.offsets, job.count);
+            lengths = Arrays.copyOf(job.lengths, job.count);
+            completed = job.completed;
+            startedMillis = job.startedMillis;
+        }
+        try (FileChannel in = reader) {
+            StoredJob stored = new StoredJob(jobUrl, completed, startedMillis);
+            Map<String, Integer> queued = new LinkedHashMap<>();
+            Map<String, Long> accepted = new HashMap<>();
+            List<Record> variants = new ArrayList<>();
+            for (int i = 0; i < offsets.length; i++) {
+                Record record = read(in, offsets[i], lengths[i]);
+                switch (record.type) {
+                    case PAGE_QUEUED:
+                        queued.putIfAbsent(record.url, record.depth);
+                        break;
+                    case PAGE_DONE:
+                        stored.donePages.add(record.url);
+                        queued.remove(record.url);
+                        break;
+                    case IMAGE:
+                        accepted.put(record.url, stored.results.append(record.url, record.logo, record.info));
+                        stored.seenImages.add(record.url);
+                        break;
+                    case IMAGE_VARIANT:
+                        variants.add(record); // its representative may be recorded after it
+                        stored.seenImages.add(record.url);
+                        break;
+                    case IMAGE_REJECTED:
+                        stored.seenImages.add(record.url);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            for (Record variant : variants) {
+                Long representative = accepted.get(variant.representative);
+                if (representative != null) {
+                    stored.results.addVariant(representative);
+                }
+            }
+            for (Map.Entry<String, Integer> page : queued.entrySet()) {
+                stored.pendingPages.add(new CrawlFrontier.Entry(page.getKey(), page.getValue()));
+            }
+            return stored;
+        } catch (IOException | RuntimeException e) {
+            Logger.getInstance().error("[Store] Failed to load " + jobUrl + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Record read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("record at " + offset + " runs past the end of the log");
+            }
+        }
+        buffer.flip();
+        return decode(Arrays.copyOfRange(buffer.array(), 8, length - 4));
+    }
+
+    private static Record decode(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        Record record = new Record();
+        record.type = in.get();
+        record.timestamp = in.getLong();
+        record.jobUrl = readString(in);
+        switch (record.type) {
+            case PAGE_QUEUED:
+                record.url = readString(in);
+                record.depth = in.getInt();
+                break;
+            case PAGE_DONE:
+            case IMAGE_REJECTED:
+                record.url = readString(in);
+                break;
+            case IMAGE:
+                record.url = readString(in);
+                record.logo = in.get() != 0;
+                String format = readString(in);
+                int width = in.getInt();
+                int height = in.getInt();
+                // size and content type were added later; older records end after the dimensions
+                long byteLength = in.hasRemaining() ? in.getLong() : ImageInfo.UNKNOWN;
+                String contentType = in.hasRemaining() ? readString(in) : "";
+                record.info = new ImageInfo(format.isEmpty() ? null : format, width, height, byteLength,
+                        contentType.isEmpty() ? null : contentType);
+                break;
+            case IMAGE_VARIANT:
+                record.url = readString(in);
+                record.representative = readString(in);
+                break;
+            default:
+                break;
+        }
+        return record;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xffff;
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private void flushQuietly() {
+        synchronized (this) {
+            try {
+                flushLocked();
+            } catch (IOException e) {
+                Logger.getInstance().error("[Store] Flush failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        if (channel == null || writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        writeFully(writeBuffer, writePosition - writeBuffer.remaining());
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Compact when the records no longer needed (superseded jobs, page records of completed jobs)
+     * take up at least as much as the live ones.
+     */
+    void compactIfWorthwhile() {
+        long dead;
+        synchronized (this) {
+            dead = writePosition - indexedBytes;
+        }
+        if (indexComplete && dead > COMPACT_MIN_DEAD_BYTES && dead > writePosition / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log keeping only records that are still needed, then swap it in atomically. The live
+     * records are copied without holding the store lock, from an index snapshot; the lock is only taken
+     * again to copy the records appended meanwhile and swap the files.
+     */
+    void compact() {
+        long started = System.nanoTime();
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        Map<String, Snapshot> snapshot = new HashMap<>();
+        long before;
+        synchronized (this) {
+            if (closed || !indexComplete || compacting) {
+                return;
+            }
+            try {
+                flushLocked();
+            } catch (IOException e) {
+                Logger.getInstance().error("[Store] Compaction failed, disabling the crawl store: " + e.getMessage());
+                closed = true;
+                return;
+            }
+            before = writePosition;
+            for (Map.Entry<String, JobIndex> entry : jobs.entrySet()) {
+                if (entry.getValue().startedMillis >= cutoff) {
+                    snapshot.put(entry.getKey(), new Snapshot(entry.getValue()));
+                }
+            }
+            compacting = true;
+        }
+
+        Path compacted = file.resolveSibling(FILE_NAME + ".compact");
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // everything before the snapshot end is flushed and never rewritten, so it is read unlocked
+            long position = 0;
+            for (Snapshot job : snapshot.values()) {
+                for (int i = 0; i < job.count; i++) {
+                    byte type = job.types[i];
+                    if (job.completed && (type == PAGE_QUEUED || type == PAGE_DONE)) {
+                        continue; // only needed to resume an unfinished crawl
+                    }
+                    transfer(reader, job.offsets[i], job.lengths[i], out, position);
+                    job.rewritten.add(position, job.lengths[i], type);
+                    position += job.lengths[i];
+                }
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    Files.deleteIfExists(compacted);
+                    return;
+                }
+                flushLocked();
+                long shift = position - before;
+                transfer(channel, before, writePosition - before, out, position);
+                out.force(true);
+                long kept = 0;
+                Iterator<Map.Entry<String, JobIndex>> it = jobs.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, JobIndex> entry = it.next();
+                    JobIndex job = entry.getValue();
+                    Snapshot copied = snapshot.get(entry.getKey());
+                    if (job.startedMillis < cutoff) {
+                        it.remove();
+                        continue;
+                    }
+                    if (copied != null && copied.job == job) {
+                        for (int i = copied.count; i < job.count; i++) {
+                            copied.rewritten.add(job.offsets[i] + shift, job.lengths[i], job.types[i]);
+                        }
+                        job.replaceWith(copied.rewritten);
+                    } else {
+                        // started after the snapshot: every record is in the tail that was just copied
+                        for (int i = 0; i < job.count; i++) {
+                            job.offsets[i] += shift;
+                        }
+                    }
+                    kept += job.liveBytes;
+                }
+                channel.close();
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                writePosition += shift;
+                indexedBytes = kept;
+                Logger.getInstance().info("[Store] Compacted " + before + " -> " + writePosition + " bytes in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+            }
+        } catch (IOException e) {
+            Logger.getInstance().error("[Store] Compaction failed, disabling the crawl store: " + e.getMessage());
+            synchronized (this) {
+                closed = true;
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    private static void transfer(FileChannel from, long offset, long length, FileChannel to, long position)
+            throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long n = from.transferTo(offset + copied, length - copied, to.position(position + copied));
+            if (n <= 0) {
+                throw new IOException("truncated record at " + (offset + copied));
+            }
+            copied += n;
+        }
+    }
+
+    /**
+     * Flush and close the log.
+     */
+    public synchronized void close() {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            flushLocked();
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Logger.getInstance().error("[Store] Close failed: " + e.getMessage());
+        }
+        closed = true;
+    }
+
+    /**
+     * Gets the number of indexed jobs.
+     *
+     * @return the job count
+     */
+    public synchronized int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Gets the size of the log, including buffered records.
+     *
+     * @return the bytes
+     */
+    public synchronized long getLogBytes() {
+        return writePosition;
+    }
+
+    /**
+     * Whether the startup scan has indexed the whole log.
+     *
+     * @return the boolean
+     */
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    /**
+     * What the store knows about one crawl.
+     */
+    public static final class StoredJob {
+        private final String startUrl;
+        private final boolean completed;
+        private final long startedMillis;
+        private final ResultLog results = new ResultLog();
+        private final List<String> seenImages = new ArrayList<>();
+        private final List<String> donePages = new ArrayList<>();
+        private final List<CrawlFrontier.Entry> pendingPages = new ArrayList<>();
+
+        StoredJob(String startUrl, boolean completed, long startedMillis) {
+            this.startUrl = startUrl;
+            this.completed = completed;
+            this.startedMillis = startedMillis;
+        }
+
+        /**
+         * Gets start url.
+         *
+         * @return the start url
+         */
+        public String getStartUrl() { return startUrl; }
+
+        /**
+         * Is completed boolean.
+         *
+         * @return whether the crawl finished
+         */
+        public boolean isCompleted() { return completed; }
+
+        /**
+         * Gets started millis.
+         *
+         * @return when the crawl started, in epoch millis
+         */
+        public long getStartedMillis() { return startedMillis; }
+
+        /**
+         * Gets results.
+         *
+         * @return the accepted images, in the order they were found
+         */
+        public ResultLog getResults() { return results; }
+
+        /**
+         * Gets seen images.
+         *
+         * @return every image url validated so far, accepted or not
+         */
+        public List<String> getSeenImages() { return seenImages; }
+
+        /**
+         * Gets done pages.
+         *
+         * @return the pages already crawled
+         */
+        public List<String> getDonePages() { return donePages; }
+
+        /**
+         * Gets pending pages.
+         *
+         * @return the pages queued but not crawled yet
+         */
+        public List<CrawlFrontier.Entry> getPendingPages() { return pendingPages; }
+    }
+
+    private static final class Record {
+        private byte type;
+        private long timestamp;
+        private String jobUrl;
+        private String url;
+        private int depth;
+        private boolean logo;
+        private String representative;
+        private ImageInfo info;
+    }
+
+    /**
+     * A job's records as they were when a compaction started, and where the compaction copied them.
+     */
+    private static final class Snapshot {
+        private final JobIndex job;
+        private final boolean completed;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final byte[] types;
+        private final int count;
+        private final JobIndex rewritten;
+
+        Snapshot(JobIndex job) {
+            this.job = job;
+            this.completed = job.completed;
+            this.offsets = Arrays.copyOf(job.offsets, job.count);
+            this.lengths = Arrays.copyOf(job.lengths, job.count);
+            this.types = Arrays.copyOf(job.types, job.count);
+            this.count = job.count;
+            this.rewritten = new JobIndex(job.startedMillis);
+        }
+    }
+
+    private static final class JobIndex {
+        private final long startedMillis;
+        private boolean completed;
+        private boolean live;
+        private long[] offsets = new long[8];
+        private int[] lengths = new int[8];
+        private byte[] types = new byte[8];
+        private int count;
+        private long liveBytes;
+        private long pageBytes;
+
+        JobIndex(long startedMillis) {
+            this.startedMillis = startedMillis;
+        }
+
+        /**
+         * Append a record reference.
+         *
+         * @return the change in bytes still needed; page records stop being needed once the job completes
+         */
+        long add(long offset, int length, byte type) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            types[count] = type;
+            count++;
+            long delta = length;
+            if (type == PAGE_QUEUED || type == PAGE_DONE) {
+                if (completed) {
+                    delta = 0;
+                } else {
+                    pageBytes += length;
+                }
+            } else if (type == JOB_COMPLETED && !completed) {
+                completed = true;
+                delta -= pageBytes;
+                pageBytes = 0;
+            }
+            liveBytes += delta;
+            return delta;
+        }
+
+        void replaceWith(JobIndex other) {
+            offsets = other.offsets;
+            lengths = other.lengths;
+            types = other.types;
+            count = other.count;
+            liveBytes = other.liveBytes;
+            pageBytes = other.pageBytes;
+        }
+    }
+}
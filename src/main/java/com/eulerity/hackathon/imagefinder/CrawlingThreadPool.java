@@ -1,30 +1,89 @@
 package com.eulerity.hackathon.imagefinder;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The type Crawling thread pool.
+ * <p>
+ * Runs in one of two modes, chosen with {@code -Dimagefinder.pool.mode}:
+ * <ul>
+ *     <li>{@code platform} (default): a fixed pool of {@value #THREAD_COUNT} threads.</li>
+ *     <li>{@code virtual}: one thread per task, bounded by {@code -Dimagefinder.pool.permits}
+ *     (default {@value #DEFAULT_PERMITS}) concurrently running tasks. Threads are virtual on
+ *     JDK 21+ and plain platform threads otherwise.</li>
+ * </ul>
+ * Crawls submit their work through {@link #newLane() lanes} of a {@link FairShareExecutor} on top of
+ * the pool, so concurrent crawls share it round-robin rather than first come, first served.
  */
 public class CrawlingThreadPool {
     private static final int THREAD_COUNT = 10;
-    private static final CrawlingThreadPool INSTANCE = new CrawlingThreadPool();
-
-    private final ThreadPoolExecutor executorService;
-    private RateLimiter rateLimiter;
-
-    private CrawlingThreadPool() {
-        this.executorService = new ThreadPoolExecutor(
-                THREAD_COUNT, THREAD_COUNT,
-                60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(100),
-                Executors.defaultThreadFactory(),
-                new ThreadPoolExecutor.CallerRunsPolicy()
-        );
-        this.rateLimiter = new RateLimiter(10, 200);
+    private static final int DEFAULT_PERMITS = 256;
+    private static final CrawlingThreadPool INSTANCE = new CrawlingThreadPool(
+            Mode.fromProperty(System.getProperty("imagefinder.pool.mode")),
+            Integer.getInteger("imagefinder.pool.permits", DEFAULT_PERMITS));
+
+    private final Mode mode;
+    private final ExecutorService executorService;
+    private final FairShareExecutor fairShare;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Execution mode of the pool.
+     */
+    public enum Mode {
+        /**
+         * Fixed-size platform thread pool.
+         */
+        PLATFORM,
+        /**
+         * Thread per task, bounded by permits.
+         */
+        VIRTUAL;
+
+        static Mode fromProperty(String value) {
+            return "virtual".equalsIgnoreCase(value) ? VIRTUAL : PLATFORM;
+        }
+    }
+
+    /**
+     * Instantiates a pool in the given mode; the shared pool is {@link #getInstance()}.
+     *
+     * @param mode    the execution mode
+     * @param permits the concurrency bound in {@link Mode#VIRTUAL} mode
+     */
+    CrawlingThreadPool(Mode mode, int permits) {
+        this.mode = mode;
+        if (mode == Mode.VIRTUAL) {
+            this.executorService = new PermitBoundedExecutor(permits, true);
+        } else {
+            // unbounded: each crawler's frontier caps how many of its pages are queued here, and a
+            // caller-runs policy would make workers run crawls inline when the queue filled up
+            this.executorService = new ThreadPoolExecutor(
+                    THREAD_COUNT, THREAD_COUNT,
+                    60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    Executors.defaultThreadFactory(),
+                    (task, executor) -> {
+                        rejected.increment();
+                        throw new RejectedExecutionException("Task " + task + " rejected from " + executor);
+                    }
+            );
+        }
+        this.fairShare = new FairShareExecutor(executorService, mode == Mode.VIRTUAL ? permits : THREAD_COUNT);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "crawl-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -37,23 +96,45 @@ public class CrawlingThreadPool {
     }
 
     /**
-     * submit
+     * Gets the execution mode.
      *
-     * @param task crawl tasks
+     * @return the mode
      */
-    public void submitTask(Runnable task) {
-        if (rateLimiter.allowRequestTokenBucket()) {
-            executorService.submit(task);
-            System.out.println("[Crawling] Task submitted. Active Threads: " + executorService.getActiveCount());
-        } else {
-            System.out.println("[Rate Limited] Task delayed. Queue Size: " + executorService.getQueue().size());
-            try {
-                TimeUnit.MILLISECONDS.sleep(500); // wait and re-submit
-                executorService.submit(task);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets the number of running tasks.
+     *
+     * @return the active count
+     */
+    public int getActiveCount() {
+        return executorService instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) executorService).getActiveCount()
+                : ((PermitBoundedExecutor) executorService).getActiveCount();
+    }
+
+    /**
+     * Gets the number of queued tasks.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return executorService instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) executorService).getQueue().size()
+                : ((PermitBoundedExecutor) executorService).getQueueSize();
+    }
+
+    /**
+     * Gets the number of tasks the pool refused, e.g. after shutdown.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return executorService instanceof ThreadPoolExecutor
+                ? rejected.sum()
+                : ((PermitBoundedExecutor) executorService).getRejectedCount();
     }
 
     /**
@@ -66,23 +147,43 @@ public class CrawlingThreadPool {
     }
 
     /**
-     * 允许动态调整限流策略
+     * Create a lane for one crawl's work on the pool, taking turns with the lanes of other crawls.
+     *
+     * @return the lane
+     */
+    public Executor newLane() {
+        return fairShare.newLane();
+    }
+
+    /**
+     * Gets the scheduler behind {@link #newLane()}.
+     *
+     * @return the fair share executor
+     */
+    public FairShareExecutor getFairShare() {
+        return fairShare;
+    }
+
+    /**
+     * Gets the shared timer for delayed work such as crawl timeouts.
+     * Tasks must be short and never block.
      *
-     * @param rateLimiter 新的 RateLimiter
+     * @return the scheduler
      */
-    public void setRateLimiter(RateLimiter rateLimiter) {
-        this.rateLimiter = rateLimiter;
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
     }
 
     /**
      * 关闭线程池
      */
     public void shutdown() {
-        System.out.println("[Shutdown] Closing thread pool...");
+        Logger.getInstance().info("[Shutdown] Closing thread pool...");
+        scheduler.shutdownNow();
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
-                System.out.println("[Shutdown] Forcing shutdown.");
+                Logger.getInstance().warn("[Shutdown] Forcing shutdown.");
                 executorService.shutdownNow();
             }
         } catch (InterruptedException e) {
@@ -95,7 +196,8 @@ public class CrawlingThreadPool {
      * 强制终止线程池中的所有任务
      */
     public void shutdownNow() {
-        System.out.println("[ShutdownNow] Immediate shutdown requested.");
+        Logger.getInstance().info("[ShutdownNow] Immediate shutdown requested.");
+        scheduler.shutdownNow();
         executorService.shutdownNow();
     }
 }
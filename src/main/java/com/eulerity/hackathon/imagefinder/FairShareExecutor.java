@@ -0,0 +1,149 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares an executor fairly between crawls.
+ * <p>
+ * Every crawl submits through its own {@link #newLane() lane}. Lanes queue their tasks here, and at most
+ * {@code maxRunning} lane tasks are handed to the executor at a time, so its own queue never builds up a
+ * backlog in arrival order. Whenever one finishes, the next task is taken round-robin from the lanes
+ * that have work: a site that queues a thousand image checks gets one turn per round like a site that
+ * queues three, instead of running all of them first. Like the pool it wraps, submitting never blocks.
+ */
+public class FairShareExecutor {
+    private final Executor executor;
+    private final int maxRunning;
+    private final ConcurrentLinkedQueue<Lane> ready = new ConcurrentLinkedQueue<>(); // lanes with queued tasks
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Instantiates a new Fair share executor.
+     *
+     * @param executor   runs the tasks
+     * @param maxRunning how many lane tasks the executor is given at once, ideally its thread count
+     */
+    public FairShareExecutor(Executor executor, int maxRunning) {
+        this.executor = executor;
+        this.maxRunning = maxRunning;
+    }
+
+    /**
+     * Create a lane. A lane holds no resources while it is empty, so it can simply be dropped.
+     *
+     * @return the lane
+     */
+    public Executor newLane() {
+        return new Lane();
+    }
+
+    private void pump() {
+        while (true) {
+            if (running.incrementAndGet() > maxRunning) {
+                // a running task will pump again when it finishes
+                running.decrementAndGet();
+                return;
+            }
+            Lane lane = ready.poll();
+            if (lane == null) {
+                running.decrementAndGet();
+                if (ready.isEmpty()) {
+                    return;
+                }
+                continue; // a lane became ready while we were giving the slot back
+            }
+            Runnable task = lane.tasks.poll();
+            if (lane.tasks.isEmpty()) {
+                lane.scheduled.set(false);
+                lane.reschedule();
+            } else {
+                ready.add(lane); // to the back of the round
+            }
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.decrementAndGet();
+                        pump();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the pool is shutting down and has counted the rejection
+                rejected.increment();
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of lanes with queued tasks.
+     *
+     * @return the lane count
+     */
+    public int getReadyLaneCount() {
+        return ready.size();
+    }
+
+    /**
+     * Gets the number of tasks queued in lanes.
+     *
+     * @return the queued count
+     */
+    public int getQueuedCount() {
+        int total = 0;
+        for (Lane lane : ready) {
+            total += lane.tasks.size();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of lane tasks handed to the executor and not finished yet.
+     *
+     * @return the running count
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * Gets the number of lane tasks dropped because the executor refused them.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private final class Lane implements Executor {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(); // in the ready queue or being pumped
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            reschedule();
+            pump();
+        }
+
+        /**
+         * Join the round if there is work and the lane is not in it yet.
+         */
+        private void reschedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+            }
+        }
+    }
+}
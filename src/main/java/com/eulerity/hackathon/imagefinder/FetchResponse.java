@@ -0,0 +1,112 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The response of a {@link Fetcher}: status, headers and the (possibly truncated) body.
+ */
+public class FetchResponse {
+    private final String url;
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    /**
+     * Instantiates a new Fetch response.
+     *
+     * @param url        the final url, after redirects
+     * @param statusCode the HTTP status code
+     * @param headers    the response headers
+     * @param body       the body bytes
+     */
+    public FetchResponse(String url, int statusCode, Map<String, String> headers, byte[] body) {
+        this.url = url;
+        this.statusCode = statusCode;
+        TreeMap<String, String> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copy.putAll(headers);
+        this.headers = Collections.unmodifiableMap(copy);
+        this.body = body;
+    }
+
+    /**
+     * Gets url.
+     *
+     * @return the url
+     */
+    public String getUrl() { return url; }
+
+    /**
+     * Gets status code.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() { return statusCode; }
+
+    /**
+     * Gets a header value, case-insensitively.
+     *
+     * @param name the header name
+     * @return the value, or null
+     */
+    public String getHeader(String name) { return headers.get(name); }
+
+    /**
+     * Gets body.
+     *
+     * @return the body
+     */
+    public byte[] getBody() { return body; }
+
+    /**
+     * Whether the status is 2xx.
+     *
+     * @return the boolean
+     */
+    public boolean isSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Gets the media type without parameters, lower-cased.
+     *
+     * @return the content type, or null
+     */
+    public String getContentType() {
+        String contentType = headers.get("Content-Type");
+        if (contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the charset declared in the Content-Type header.
+     *
+     * @return the charset name, or null if absent or unsupported
+     */
+    public String getCharset() {
+        String contentType = headers.get("Content-Type");
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + 8).replace("\"", "").trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end).trim();
+        }
+        try {
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pluggable HTTP fetcher used for pages and image headers.
+ * <p>
+ * Implementations never fail on an HTTP error status: the status is returned in the
+ * {@link FetchResponse} and callers decide. The future fails only on I/O errors and timeouts.
+ * The default is the blocking {@link JsoupFetcher}; {@code -Dimagefinder.fetcher=async}
+ * selects the non-blocking {@link AsyncHttpFetcher}.
+ */
+public interface Fetcher {
+    /**
+     * The user agent sent with every request.
+     */
+    String USER_AGENT = "Mozilla/5.0";
+
+    /**
+     * Fetch a url.
+     *
+     * @param url          the url
+     * @param headers      extra request headers
+     * @param maxBodyBytes the body is truncated after this many bytes
+     * @param timeoutMs    the request timeout in milliseconds
+     * @return the response future
+     */
+    CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers, int maxBodyBytes, int timeoutMs);
+
+    /**
+     * Gets the fetcher selected by the {@code imagefinder.fetcher} system property.
+     *
+     * @return the default fetcher
+     */
+    static Fetcher getDefault() {
+        return "async".equalsIgnoreCase(System.getProperty("imagefinder.fetcher"))
+                ? AsyncHttpFetcher.getInstance()
+                : JsoupFetcher.getInstance();
+    }
+}
@@ -0,0 +1,187 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent set of 64-bit url fingerprints.
+ * <p>
+ * Fingerprints are stored in open-addressing {@code long[]} tables with linear probing, split into
+ * {@value #STRIPES} stripes that are locked independently, so there is no global monitor and each
+ * entry costs 8 bytes (at most ~16 with load-factor slack) instead of a String and a HashMap node.
+ * Once the set holds {@code exactLimit} fingerprints, further ones go into a {@link BloomFilter}
+ * that keeps memory flat for very large crawls at the price of a small false positive rate
+ * (a new url is occasionally taken for a seen one and skipped).
+ */
+public class FingerprintSet {
+    private static final int STRIPES = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    private final int exactLimit;
+    private final AtomicInteger overflowCount = new AtomicInteger();
+    private volatile BloomFilter overflow;
+
+    /**
+     * Instantiates a new Fingerprint set without a size limit.
+     */
+    public FingerprintSet() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates a new Fingerprint set that switches to a Bloom filter after {@code exactLimit} entries.
+     *
+     * @param exactLimit the number of fingerprints kept exactly
+     */
+    public FingerprintSet(int exactLimit) {
+        this.exactLimit = exactLimit;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters, finished with {@link #mix(long)} to spread the bits.
+     *
+     * @param value the value, usually a canonical url
+     * @return the fingerprint
+     */
+    public static long fingerprint(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Add a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if it was not in the set; checking and inserting is one atomic step
+     */
+    public boolean add(long fingerprint) {
+        long key = fingerprint == 0 ? 1 : fingerprint; // 0 marks an empty slot
+        Stripe stripe = stripes[(int) (key >>> 60)];
+        BloomFilter bloom = overflow;
+        if (bloom != null && bloom.mightContain(key)) {
+            return false;
+        }
+        synchronized (stripe) {
+            int slot = stripe.find(key);
+            if (stripe.table[slot] == key) {
+                return false;
+            }
+            if (size.get() < exactLimit) {
+                stripe.insert(slot, key);
+                size.incrementAndGet();
+                return true;
+            }
+        }
+        if (bloom == null) {
+            synchronized (this) {
+                if (overflow == null) {
+                    overflow = new BloomFilter(Math.max(1024, exactLimit) * 4L, BLOOM_FALSE_POSITIVE_RATE);
+                }
+                bloom = overflow;
+            }
+        }
+        if (bloom.add(key)) {
+            overflowCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Contains boolean.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if it is (or, past the exact limit, probably is) in the set
+     */
+    public boolean contains(long fingerprint) {
+        long key = fingerprint == 0 ? 1 : fingerprint;
+        Stripe stripe = stripes[(int) (key >>> 60)];
+        synchronized (stripe) {
+            if (stripe.table[stripe.find(key)] == key) {
+                return true;
+            }
+        }
+        BloomFilter bloom = overflow;
+        return bloom != null && bloom.mightContain(key);
+    }
+
+    /**
+     * Gets the number of fingerprints added, including those held by the Bloom filter.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size.get() + overflowCount.get();
+    }
+
+    /**
+     * Gets the heap held by the tables and the Bloom filter.
+     *
+     * @return the estimated bytes
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += 16 + 8L * stripe.table.length;
+            }
+        }
+        BloomFilter bloom = overflow;
+        return bloom != null ? bytes + bloom.estimateBytes() : bytes;
+    }
+
+    private static final class Stripe {
+        private long[] table = new long[INITIAL_STRIPE_CAPACITY];
+        private int used;
+
+        /**
+         * The slot holding the key, or the empty slot where it would go.
+         */
+        int find(long key) {
+            int mask = table.length - 1;
+            int slot = (int) key & mask;
+            while (table[slot] != 0 && table[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void insert(int slot, long key) {
+            table[slot] = key;
+            if (++used * 3 > table.length * 2) { // keep the load factor under 2/3
+                long[] old = table;
+                table = new long[old.length * 2];
+                for (long existing : old) {
+                    if (existing != 0) {
+                        table[find(existing)] = existing;
+                    }
+                }
+            }
+        }
+    }
+}
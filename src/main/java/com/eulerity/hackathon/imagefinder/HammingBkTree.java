@@ -0,0 +1,102 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Arrays;
+
+/**
+ * BK-tree over 64-bit hashes under Hamming distance, used to find perceptually near-duplicate images.
+ * <p>
+ * Each node keeps its children by their distance to it, so a search for hashes within {@code d} of a
+ * query only descends into children at distance {@code [dist - d, dist + d]} of each visited node.
+ * Not thread-safe; callers synchronize.
+ */
+public class HammingBkTree {
+    private Node root;
+    private int size;
+
+    /**
+     * Add a hash.
+     *
+     * @param hash  the hash
+     * @param value the value to return when the hash is found
+     */
+    public void add(long hash, long value) {
+        size++;
+        if (root == null) {
+            root = new Node(hash, value);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            Node child = node.children == null ? null : node.children[distance];
+            if (child == null) {
+                if (node.children == null) {
+                    node.children = new Node[Long.SIZE + 1];
+                }
+                node.children[distance] = new Node(hash, value);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Find the closest hash within a distance.
+     *
+     * @param hash        the hash
+     * @param maxDistance the largest Hamming distance that still counts as a match
+     * @return the value of the closest match, or -1 if there is none
+     */
+    public long find(long hash, int maxDistance) {
+        if (root == null) {
+            return -1;
+        }
+        long best = -1;
+        int bestDistance = maxDistance + 1;
+        Node[] stack = new Node[16];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance < bestDistance) {
+                best = node.value;
+                bestDistance = distance;
+            }
+            if (node.children == null) {
+                continue;
+            }
+            int from = Math.max(0, distance - maxDistance);
+            int to = Math.min(Long.SIZE, distance + maxDistance);
+            for (int d = from; d <= to; d++) {
+                if (node.children[d] != null) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = node.children[d];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the number of hashes added.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    private static final class Node {
+        private final long hash;
+        private final long value;
+        private Node[] children; // indexed by distance, allocated with the first child
+
+        Node(long hash, long value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
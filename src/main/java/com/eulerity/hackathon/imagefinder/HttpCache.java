@@ -0,0 +1,208 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conditional-request cache for pages and images.
+ * <p>
+ * For every url fetched with an {@code ETag} or {@code Last-Modified} validator we keep the validators
+ * together with what we derived from the response (a {@link PageExtraction} for pages, the validation
+ * outcome for images). The next fetch of the url sends {@code If-None-Match} / {@code If-Modified-Since},
+ * and a {@code 304 Not Modified} reuses the kept result without downloading or parsing anything.
+ * Holds at most {@code -Dimagefinder.httpcache.maxEntries} (default {@value #DEFAULT_MAX_ENTRIES})
+ * urls and {@code -Dimagefinder.httpcache.maxBytes} (default 16MB) of estimated entry size, least
+ * recently used evicted first.
+ */
+public class HttpCache {
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final HttpCache INSTANCE = new HttpCache(
+            Integer.getInteger("imagefinder.httpcache.maxEntries", DEFAULT_MAX_ENTRIES),
+            Long.getLong("imagefinder.httpcache.maxBytes", DEFAULT_MAX_BYTES));
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes; // guarded by entries
+    private final LongAdder conditionalRequests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * Instantiates a new Http cache.
+     *
+     * @param maxEntries the maximum number of urls kept
+     * @param maxBytes   the maximum estimated bytes of the kept entries
+     */
+    HttpCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static HttpCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Look up what was kept for a url.
+     *
+     * @param url         the url
+     * @param payloadType the kind of result the caller expects
+     * @return the entry, or null if nothing of that kind is kept
+     */
+    public Entry lookup(String url, Class<?> payloadType) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(url);
+        }
+        return entry != null && payloadType.isInstance(entry.payload) ? entry : null;
+    }
+
+    /**
+     * Add the conditional headers for an entry to a request's headers.
+     *
+     * @param entry   the entry, may be null
+     * @param headers the headers the request would send anyway
+     * @return the headers to send
+     */
+    public Map<String, String> conditionalHeaders(Entry entry, Map<String, String> headers) {
+        if (entry == null) {
+            return headers;
+        }
+        Map<String, String> conditional = new HashMap<>(headers);
+        if (entry.etag != null) {
+            conditional.put("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            conditional.put("If-Modified-Since", entry.lastModified);
+        }
+        conditionalRequests.increment();
+        return conditional;
+    }
+
+    /**
+     * Whether the response says the kept result is still current.
+     *
+     * @param entry    the entry the request was made with, may be null
+     * @param response the response
+     * @return true on a 304 for a request made with an entry
+     */
+    public boolean isNotModified(Entry entry, FetchResponse response) {
+        if (entry == null || response.getStatusCode() != 304) {
+            return false;
+        }
+        notModified.increment();
+        return true;
+    }
+
+    /**
+     * Keep what was derived from a response, if the response carries a validator.
+     *
+     * @param url      the url
+     * @param response the response
+     * @param payload  the derived result
+     */
+    public void store(String url, FetchResponse response, Object payload) {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        Entry entry = etag == null && lastModified == null ? null : new Entry(url, etag, lastModified, payload);
+        synchronized (entries) {
+            Entry previous = entry == null
+                    ? entries.remove(url) // nothing to revalidate with
+                    : entries.put(url, entry);
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            if (entry != null) {
+                bytes += entry.bytes;
+                evictLocked();
+            }
+        }
+    }
+
+    private void evictLocked() {
+        Iterator<Entry> it = entries.values().iterator(); // least recently used first
+        while (it.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Gets the number of kept urls.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the estimated bytes of the kept entries.
+     *
+     * @return the bytes
+     */
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Gets the number of requests sent with validators.
+     *
+     * @return the conditional request count
+     */
+    public long getConditionalRequests() {
+        return conditionalRequests.sum();
+    }
+
+    /**
+     * Gets the number of 304 responses that reused a kept result.
+     *
+     * @return the not modified count
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * Validators and derived result kept for one url.
+     */
+    public static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final Object payload;
+        private final long bytes;
+
+        Entry(String url, String etag, String lastModified, Object payload) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.payload = payload;
+            this.bytes = estimateBytes(url) + estimateBytes(etag) + estimateBytes(lastModified) + 64
+                    + (payload instanceof PageExtraction ? ((PageExtraction) payload).estimateBytes() : 48);
+        }
+
+        // ~40 bytes of String and char[] headers, 2 bytes per char
+        private static long estimateBytes(String value) {
+            return value == null ? 0 : 40 + 2L * value.length();
+        }
+
+        /**
+         * Gets payload.
+         *
+         * @return the derived result
+         */
+        public Object getPayload() { return payload; }
+    }
+}
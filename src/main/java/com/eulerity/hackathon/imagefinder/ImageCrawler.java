@@ -1,34 +1,62 @@
 package com.eulerity.hackathon.imagefinder;
 
-import com.google.gson.Gson;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.*;
-import java.util.concurrent.Semaphore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * The type Image crawler.
+ * <p>
+ * Variants of one picture are folded into the first one accepted, which then reports a cluster size:
+ * urls with the same {@link UrlCanonicalizer#variantKey(String) variant key} skip validation entirely,
+ * and accepted images whose {@link PerceptualHasher perceptual hashes} are within {@code -Dimagefinder.dedupe.maxDistance} (default 6) bits of an earlier one are not listed
+ * separately.
  */
 public class ImageCrawler {
-    private static final Semaphore semaphore = new Semaphore(20); // limit max concurrency 20
-    private final Set<String> visitedPages = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> imageUrls = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> logoImages = Collections.synchronizedSet(new HashSet<>());
+    private static final int MAX_IN_FLIGHT = 20; // max pages of one crawler fetched concurrently
+    // fingerprints of canonical urls; past this many entries a set switches to a Bloom filter
+    private static final int DEDUPE_EXACT_LIMIT = Integer.getInteger("imagefinder.dedupe.exactLimit", 1 << 20);
+    private final FingerprintSet visitedPages = new FingerprintSet(DEDUPE_EXACT_LIMIT);
+    private final FingerprintSet imageUrls = new FingerprintSet(DEDUPE_EXACT_LIMIT);
+    // images whose dHashes differ in at most this many bits are one picture
+    private static final int MAX_HASH_DISTANCE = Integer.getInteger("imagefinder.dedupe.maxDistance", 6);
+    private final Map<String, Long> variantKeys = new ConcurrentHashMap<>(); // variant key -> accepted image's sequence
+    private final HammingBkTree nearDuplicates = new HammingBkTree(); // guarded by itself, dHash -> sequence
+    private final ResultLog results;
+    private final String startUrl;
     private final String baseDomain;
     private final int maxDepth;
-    private volatile boolean isCrawling = false;
+    private final AtomicInteger pendingPages = new AtomicInteger(); // queued or in flight
+    private volatile CompletableFuture<Void> completion = CompletableFuture.completedFuture(null);
     private static final Map<String, String> crawlStatus = Collections.synchronizedMap(new HashMap<>());
+    private static final int MAX_PAGE_BYTES = 2 * 1024 * 1024;
+    private static final int PAGE_TIMEOUT_MS = 5000;
+    private static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+    private static final int IMAGE_TIMEOUT_MS = 3000;
+    private final Fetcher fetcher = Fetcher.getDefault();
+    private final CrawlFrontier frontier;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // pages handed to the politeness scheduler that have not started, so stop() can take them back
+    private final Map<CrawlFrontier.Entry, Supplier<CompletableFuture<Void>>> scheduled = new ConcurrentHashMap<>();
+    private volatile long lastActiveNanos = System.nanoTime();
+    private volatile boolean stopped;
+    private final CrawlStore store = CrawlStore.getInstance();
+    private final CrawlMetrics metrics = CrawlMetrics.getInstance();
+    private final Executor lane = CrawlingThreadPool.getInstance().newLane(); // this crawl's fair share of the pool
+    private List<CrawlFrontier.Entry> resumePages; // guarded by this, pages to re-queue on the first crawlFrom
+    private boolean jobRecorded; // guarded by this
 
     /**
      * Instantiates a new Image crawler.
@@ -38,36 +66,143 @@ public class ImageCrawler {
      * @throws MalformedURLException the malformed url exception
      */
     public ImageCrawler(String startUrl, int maxDepth) throws MalformedURLException {
-        this.baseDomain = new URL(startUrl).getHost();
+        this(startUrl, maxDepth, null);
+    }
+
+    /**
+     * Instantiates a new Image crawler that continues an interrupted crawl: pages already crawled and
+     * images already validated are skipped, and pages that were still queued are queued again.
+     *
+     * @param startUrl the start url
+     * @param maxDepth the max depth
+     * @param resumed  the stored state of the interrupted crawl, or null to start fresh
+     * @throws MalformedURLException the malformed url exception
+     */
+    public ImageCrawler(String startUrl, int maxDepth, CrawlStore.StoredJob resumed) throws MalformedURLException {
+        this.startUrl = startUrl;
+        // links are canonicalized before isSameDomain sees them, so the start host must be too
+        this.baseDomain = new URL(UrlCanonicalizer.canonicalize(startUrl)).getHost();
         this.maxDepth = maxDepth;
+        this.frontier = new CrawlFrontier(maxDepth);
+        if (resumed == null) {
+            this.results = new ResultLog();
+            return;
+        }
+        this.results = resumed.getResults();
+        for (String page : resumed.getDonePages()) {
+            visitedPages.add(FingerprintSet.fingerprint(page));
+        }
+        for (String image : resumed.getSeenImages()) {
+            imageUrls.add(FingerprintSet.fingerprint(image));
+        }
+        for (long sequence = 1; sequence <= results.size(); sequence++) {
+            variantKeys.putIfAbsent(UrlCanonicalizer.variantKey(results.urlAt(sequence)), sequence);
+        }
+        this.resumePages = resumed.getPendingPages();
     }
 
     /**
-     * Start crawling.
+     * Start crawling: queue the page on this crawler's frontier and dispatch work.
+     * Never blocks; the page is skipped if its canonical url was already queued or it is too deep.
      *
      * @param url   the url
      * @param depth the depth
      */
     public void startCrawling(String url, int depth) {
-        if (depth > maxDepth || visitedPages.contains(url) || !isAllowedByRobots(url)) return;
+        if (depth > maxDepth || stopped) return;
+        url = UrlCanonicalizer.canonicalize(url);
+        if (!visitedPages.add(FingerprintSet.fingerprint(url))) return;
 
-        visitedPages.add(url);
+        store.pageQueued(startUrl, url, depth);
         crawlStatus.put(url, "in_progress");
-        isCrawling = true;
+        pendingPages.incrementAndGet();
+        frontier.offer(url, depth);
+        dispatch();
+    }
+
+    /**
+     * Drain the frontier into the politeness scheduler, keeping at most {@link #MAX_IN_FLIGHT} pages of this
+     * crawler in flight. Called after every enqueue and every completed page.
+     */
+    private void dispatch() {
+        while (true) {
+            if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+                // the page that holds the excess slot will dispatch again when it completes
+                inFlight.decrementAndGet();
+                return;
+            }
+            CrawlFrontier.Entry next = frontier.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                if (frontier.isEmpty()) {
+                    return;
+                }
+                continue; // a page was queued while we were giving the slot back
+            }
+            if (stopped) {
+                drop();
+                continue;
+            }
+            // pages of one crawler all share baseDomain, so they share its politeness budget
+            long queuedNanos = System.nanoTime();
+            Supplier<CompletableFuture<Void>> task = () -> {
+                scheduled.remove(next);
+                metrics.recordSince(CrawlMetrics.Stage.SCHEDULE, queuedNanos);
+                return crawlEntry(next);
+            };
+            scheduled.put(next, task);
+            PolitenessScheduler.getInstance().submit(baseDomain, task);
+        }
+    }
+
+    /**
+     * Give up a dispatched page without crawling it; the crawl store still lists it as queued, so a later
+     * crawl resumes it.
+     */
+    private void drop() {
+        inFlight.decrementAndGet();
+        if (pendingPages.decrementAndGet() == 0) {
+            completeIfIdle();
+        }
+    }
 
-        semaphore.acquireUninterruptibly();
-        CrawlingThreadPool.getInstance().submitTask(() -> {
-            try {
-                crawl(url, depth);
+    private CompletableFuture<Void> crawlEntry(CrawlFrontier.Entry entry) {
+        String url = entry.getUrl();
+        long robotsStart = System.nanoTime();
+        CompletableFuture<Void> page;
+        if (stopped) {
+            page = CompletableFuture.completedFuture(null); // started as stop() ran: leave it queued
+        } else {
+            page = isAllowedByRobots(url).thenCompose(allowed -> {
+                metrics.recordSince(CrawlMetrics.Stage.ROBOTS, robotsStart);
+                if (allowed) {
+                    return crawl(url, entry.getDepth());
+                }
+                metrics.page(CrawlMetrics.PageResult.DISALLOWED);
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+        return page.whenComplete((ignored, e) -> {
+            if (e == null) {
                 crawlStatus.put(url, "completed");
-            } catch (CrawlException e) {
-                Logger.getInstance().error("[CrawlException] " + e.getMessage());
+            } else {
+                metrics.page(CrawlMetrics.PageResult.FAILED);
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                Logger.getInstance().error("[CrawlException] " + cause.getMessage());
                 crawlStatus.put(url, "error");
-            } finally {
-                isCrawling = false;
-                crawlStatus.remove(url);
-                semaphore.release();
             }
+            crawlStatus.remove(url);
+            if (!stopped) {
+                // a page that finished after stop() may not have queued all its links; leave it queued
+                store.pageDone(startUrl, url);
+            }
+            lastActiveNanos = System.nanoTime();
+            inFlight.decrementAndGet();
+            // a page's links are queued before its future completes, so zero means nothing is left
+            if (pendingPages.decrementAndGet() == 0) {
+                completeIfIdle();
+            }
+            dispatch();
         });
     }
 
@@ -85,177 +220,319 @@ public class ImageCrawler {
     /**
      * Is crawling boolean.
      *
-     * @return the boolean
+     * @return true while any page is queued or in flight
      */
     public boolean isCrawling() {
-        return isCrawling;
+        return pendingPages.get() > 0;
     }
 
-    private void crawl(String url, int depth) throws CrawlException {
-        try {
-            if (Thread.currentThread().isInterrupted()) {
-                System.out.println("[Cancelled] Crawl interrupted before starting: " + url);
-                return;
-            }
+    private synchronized void completeIfIdle() {
+        if (pendingPages.get() == 0 && completion.complete(null) && !stopped) {
+            store.jobCompleted(startUrl);
+        }
+    }
 
-            Logger.getInstance().info("[Crawling] " + url);
-            Document doc = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0")
-                    .timeout(5000)
-                    .get();
+    /**
+     * Stop crawling for good: queued pages are dropped and pages in flight finish without queueing their
+     * links, then the future of {@link #crawlFrom(String)} completes. The crawl store keeps the dropped
+     * pages, and those in flight, queued, so a new crawler for the same url resumes them.
+     */
+    public void stop() {
+        stopped = true;
+        // pages waiting for a politeness token would each spend one on the host a resumed crawl needs
+        for (Map.Entry<CrawlFrontier.Entry, Supplier<CompletableFuture<Void>>> page : scheduled.entrySet()) {
+            if (PolitenessScheduler.getInstance().withdraw(baseDomain, page.getValue())) {
+                scheduled.remove(page.getKey());
+                drop();
+            }
+        }
+        dispatch();
+    }
 
-            Elements images = doc.select("img");
-            for (Element img : images) {
-                if (Thread.currentThread().isInterrupted()) {
-                    System.out.println("[Cancelled] Crawl interrupted while processing images: " + url);
-                    return;
-                }
+    /**
+     * Whether {@link #stop()} was called.
+     *
+     * @return the boolean
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
 
-                String src = img.absUrl("src");
-                if (!src.isEmpty() && isValidImage(src)) {
-                    imageUrls.add(src);
-                    if (isLogoImage(src)) {
-                        logoImages.add(src);
-                    }
+    /**
+     * Crawl from the start url and get notified when done.
+     *
+     * @param startUrl the start url
+     * @return a future that completes the moment the last queued page has finished
+     */
+    public synchronized CompletableFuture<Void> crawlFrom(String startUrl) {
+        lastActiveNanos = System.nanoTime();
+        if (completion.isDone()) {
+            completion = new CompletableFuture<>();
+        }
+        CompletableFuture<Void> current = completion;
+        if (!jobRecorded) {
+            jobRecorded = true;
+            if (resumePages == null) {
+                store.jobStarted(this.startUrl);
+            } else {
+                Logger.getInstance().info("[Crawler] Resuming " + this.startUrl + " with " + resumePages.size() + " queued pages");
+                for (CrawlFrontier.Entry page : resumePages) {
+                    startCrawling(page.getUrl(), page.getDepth());
                 }
+                resumePages = null;
             }
+        }
+        startCrawling(startUrl, 0);
+        if (pendingPages.get() == 0) {
+            completeIfIdle(); // nothing new to crawl, e.g. the start page was visited before
+        }
+        return current;
+    }
 
-            if (depth < maxDepth) {
-                Elements links = doc.select("a[href]");
-                for (Element link : links) {
-                    if (Thread.currentThread().isInterrupted()) {
-                        System.out.println("[Cancelled] Crawl interrupted while processing links: " + url);
-                        return;
-                    }
+    /**
+     * Gets the number of urls this crawler remembers (visited pages and accepted images).
+     *
+     * @return the retained url count
+     */
+    public int getRetainedUrlCount() {
+        return visitedPages.size() + imageUrls.size();
+    }
 
-                    String nextUrl = link.absUrl("href");
-                    if (isSameDomain(nextUrl) && !visitedPages.contains(nextUrl)) {
-                        startCrawling(nextUrl, depth + 1);
-                    }
-                }
-            }
+    /**
+     * Gets the heap held by the visited-page and seen-image fingerprint sets.
+     * The result log is accounted by the result cache.
+     *
+     * @return the estimated bytes
+     */
+    public long estimateRetainedBytes() {
+        return visitedPages.estimateBytes() + imageUrls.estimateBytes();
+    }
 
-        } catch (IOException e) {
-            throw new CrawlException("Failed to crawl URL: " + url, e);
-        } finally {
-            crawlStatus.put(url, "completed");
-            isCrawling = false;
-        }
+    /**
+     * Gets the {@code System.nanoTime()} of the last crawl start or finished page.
+     *
+     * @return the last active time
+     */
+    public long getLastActiveNanos() {
+        return lastActiveNanos;
     }
 
+    /**
+     * Gets the log of accepted images.
+     *
+     * @return the results
+     */
+    public ResultLog getResults() {
+        return results;
+    }
 
     /**
-     * parse robots.txt
+     * Fetch the page and, once its bytes have arrived, parse it on the crawl pool.
+     * A page seen before is fetched conditionally; if the server answers 304 its kept extraction is reused
+     * without parsing. The returned future completes after the page's image checks have finished.
      */
-    private boolean isAllowedByRobots(String url) {
-        try {
-            String robotsTxtUrl = new URL(url).getProtocol() + "://" + new URL(url).getHost() + "/robots.txt";
-            Document doc = Jsoup.connect(robotsTxtUrl).ignoreContentType(true).get();
-            String content = doc.body().text().toLowerCase();
-
-            // parse all disallow rules
-            Scanner scanner = new Scanner(content);
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.startsWith("disallow:")) {
-                    String disallowedPath = line.replace("disallow:", "").trim();
-                    if (url.contains(disallowedPath)) {
-                        return false;
+    private CompletableFuture<Void> crawl(String url, int depth) {
+        if (Thread.currentThread().isInterrupted()) {
+            Logger.getInstance().info("[Cancelled] Crawl interrupted before starting: " + url);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Logger.getInstance().info("[Crawling] " + url);
+        HttpCache httpCache = HttpCache.getInstance();
+        HttpCache.Entry cached = httpCache.lookup(url, PageExtraction.class);
+        Map<String, String> headers = httpCache.conditionalHeaders(cached, Collections.<String, String>emptyMap());
+        long fetchStart = System.nanoTime();
+        return fetcher.fetch(url, headers, MAX_PAGE_BYTES, PAGE_TIMEOUT_MS)
+                .handle((response, e) -> {
+                    metrics.recordSince(CrawlMetrics.Stage.FETCH, fetchStart);
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        throw new CompletionException(new CrawlException("Failed to crawl URL: " + url, cause));
                     }
-                }
+                    return response;
+                })
+                .thenComposeAsync(response -> {
+                    if (httpCache.isNotModified(cached, response)) {
+                        Logger.getInstance().info("[Crawling] Not modified, reusing extraction: " + url);
+                        metrics.page(CrawlMetrics.PageResult.NOT_MODIFIED);
+                        return processExtraction(url, (PageExtraction) cached.getPayload(), depth);
+                    }
+                    PageExtraction extraction = extractPage(url, response);
+                    metrics.page(CrawlMetrics.PageResult.PARSED);
+                    httpCache.store(url, response, extraction);
+                    return processExtraction(url, extraction, depth);
+                }, lane);
+    }
+
+    /**
+     * Extract a fetched page's image urls and links with a {@link PageExtractor}, classifying logos from
+     * the markup on the way. The time spent classifying is recorded as its own stage and left out of the
+     * parse time.
+     *
+     * @param url      the page url
+     * @param response the fetched page
+     * @return the extraction
+     */
+    static PageExtraction extractPage(String url, FetchResponse response) {
+        CrawlMetrics metrics = CrawlMetrics.getInstance();
+        try {
+            if (!response.isSuccessful()) {
+                throw new CrawlException("Failed to crawl URL: " + url + " | HTTP " + response.getStatusCode());
             }
-            return true;
+            long parseStart = System.nanoTime();
+            PageExtractor extractor = new PageExtractor(response.getUrl());
+            PageExtraction extraction = extractor.extract(response);
+            metrics.record(CrawlMetrics.Stage.LOGO, extractor.getLogoNanos());
+            metrics.record(CrawlMetrics.Stage.PARSE, System.nanoTime() - parseStart - extractor.getLogoNanos());
+            return extraction;
         } catch (IOException e) {
-            return true;
+            throw new CompletionException(new CrawlException("Failed to crawl URL: " + url, e));
+        } catch (CrawlException e) {
+            throw new CompletionException(e);
         }
     }
 
     /**
-     * check if image is valid
+     * Check the page's new images and queue its same-domain links.
      */
-    private boolean isValidImage(String imageUrl) {
+    private CompletableFuture<Void> processExtraction(String url, PageExtraction extraction, int depth) {
         try {
-            URL url = new URL(imageUrl);
-            URLConnection connection = url.openConnection();
-            connection.setConnectTimeout(3000);
-            connection.setReadTimeout(3000);
+            List<CompletableFuture<Void>> imageChecks = new ArrayList<>();
+            for (String src : extraction.getImageUrls()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    Logger.getInstance().info("[Cancelled] Crawl interrupted while processing images: " + url);
+                    break;
+                }
 
-            String contentType = connection.getContentType();
-            int contentLength = connection.getContentLength();
+                // one atomic claim per image: only the page that claims it validates it, once, pass or fail
+                if (!imageUrls.add(FingerprintSet.fingerprint(src))) {
+                    continue;
+                }
+                Long knownVariant = variantKeys.get(UrlCanonicalizer.variantKey(src));
+                if (knownVariant != null) {
+                    foldVariant(src, knownVariant);
+                    continue;
+                }
+                boolean logo = extraction.isLogo(src);
+                // run each check as its own pool task so blocking fetchers validate images in parallel
+                long validationStart = System.nanoTime();
+                imageChecks.add(CompletableFuture.supplyAsync(
+                        () -> ImageValidator.getInstance().validateAsync(src, logo),
+                        lane
+                ).thenCompose(check -> check).thenCompose(info -> {
+                    metrics.recordSince(CrawlMetrics.Stage.VALIDATION, validationStart);
+                    if (info == null) {
+                        metrics.image(CrawlMetrics.ImageResult.REJECTED);
+                        store.imageRejected(startUrl, src);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return inspectPixels(src, info).thenAccept(hash -> acceptImage(src, logo, info, hash));
+                }));
+            }
 
-            List<String> allowedTypes = Arrays.asList("image/jpeg", "image/png", "image/webp");
+            if (depth < maxDepth) {
+                for (String nextUrl : extraction.getLinks()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        Logger.getInstance().info("[Cancelled] Crawl interrupted while processing links: " + url);
+                        break;
+                    }
 
-            if (!allowedTypes.contains(contentType)) {
-                return false;
+                    if (isSameDomain(nextUrl)) {
+                        startCrawling(nextUrl, depth + 1);
+                    }
+                }
             }
+            return CompletableFuture.allOf(imageChecks.toArray(new CompletableFuture[0]));
+        } finally {
+            crawlStatus.put(url, "completed");
+        }
+    }
 
-            if (contentLength < 10240 || contentLength > 5 * 1024 * 1024) {
-                return false;
-            }
 
-            BufferedImage img = ImageIO.read(url);
-            return img != null;
-        } catch (IOException e) {
-            return false;
+    /**
+     * Download a validated image once for the stages that need its pixels, the perceptual hash and the
+     * thumbnail cache, when either wants it. Without thumbnails, images known to be larger than the
+     * hasher's limit are not downloaded, and the rest only up to it. Decoding happens on the crawl pool.
+     *
+     * @return a future of the image's perceptual hash, completing with null if there is none
+     */
+    private CompletableFuture<Long> inspectPixels(String src, ImageInfo info) {
+        PerceptualHasher hasher = PerceptualHasher.getInstance();
+        ThumbnailStore thumbnails = ThumbnailStore.getInstance();
+        boolean hash = hasher.isEnabled()
+                && (info.getByteLength() == ImageInfo.UNKNOWN || info.getByteLength() <= hasher.getMaxBytes());
+        if (!hash && !thumbnails.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
         }
+        int maxBytes = thumbnails.isEnabled() ? MAX_IMAGE_BYTES : (int) Math.min(MAX_IMAGE_BYTES, hasher.getMaxBytes());
+        return fetcher.fetch(src, Collections.<String, String>emptyMap(), maxBytes, IMAGE_TIMEOUT_MS)
+                .thenApplyAsync(response -> {
+                    if (!response.isSuccessful()) {
+                        return null;
+                    }
+                    BufferedImage image = PerceptualHasher.decode(response.getBody(),
+                            thumbnails.isEnabled() ? thumbnails.getMaxEdge() : PerceptualHasher.DECODE_EDGE);
+                    if (image == null) {
+                        return null;
+                    }
+                    thumbnails.put(src, response.getBody(), image);
+                    return hasher.isEnabled() ? PerceptualHasher.dHash(image) : null;
+                }, lane)
+                .exceptionally(e -> null);
     }
 
     /**
-     * use url to figure out Logo
+     * List a validated image, unless it is a near-duplicate of one already listed.
      */
-    private boolean isLogoImage(String imageUrl) {
-        String lowerCaseUrl = imageUrl.toLowerCase();
-        String[] logoKeywords = {"logo", "brand", "favicon", "icon", "corporate", "symbol"};
-
-        for (String keyword : logoKeywords) {
-            if (lowerCaseUrl.contains(keyword)) {
-                return true;
+    private void acceptImage(String src, boolean logo, ImageInfo info, Long hash) {
+        long representative;
+        long sequence = -1;
+        synchronized (nearDuplicates) {
+            representative = hash == null ? -1 : nearDuplicates.find(hash, MAX_HASH_DISTANCE);
+            if (representative < 0) {
+                sequence = results.append(src, logo, info);
+                if (hash != null) {
+                    nearDuplicates.add(hash, sequence);
+                }
             }
         }
+        if (representative >= 0) { // find returns -1 for no match; sequences start at 1
+            foldVariant(src, representative);
+            return;
+        }
+        variantKeys.putIfAbsent(UrlCanonicalizer.variantKey(src), sequence);
+        metrics.image(CrawlMetrics.ImageResult.ACCEPTED);
+        store.imageAccepted(startUrl, src, logo, info);
+    }
 
-        return false;
+    private void foldVariant(String src, long representative) {
+        String representativeUrl = results.urlAt(representative);
+        int clusterSize = results.addVariant(representative);
+        metrics.image(CrawlMetrics.ImageResult.VARIANT);
+        store.imageVariant(startUrl, src, representativeUrl);
+        ThumbnailStore.getInstance().alias(src, representativeUrl);
+        Logger.getInstance().info("[Dedupe] " + src + " is a variant of " + representativeUrl
+                + " (cluster of " + clusterSize + ")");
     }
 
     /**
-     * download image
+     * check robots.txt through the shared per-host cache
      */
-    private String downloadImage(String imageUrl) throws IOException {
-        URL url = new URL(imageUrl);
-        String filePath = "temp_images/" + imageUrl.substring(imageUrl.lastIndexOf("/") + 1);
-        Files.copy(url.openStream(), Paths.get(filePath));
-        return filePath;
+    private CompletableFuture<Boolean> isAllowedByRobots(String url) {
+        return RobotsCache.getInstance().isAllowedAsync(url);
     }
 
     /**
      * check URL is the same domain
+     *
+     * @param url the url
+     * @return the boolean
      */
-    private boolean isSameDomain(String url) {
+    boolean isSameDomain(String url) {
         try {
             return new URL(url).getHost().equals(baseDomain);
         } catch (MalformedURLException e) {
             return false;
         }
     }
-
-    /**
-     * Gets image urls as json.
-     *
-     * @return the image urls as json
-     */
-    public String getImageUrlsAsJson() {
-        synchronized (imageUrls) {
-            return new Gson().toJson(new ArrayList<>(imageUrls));
-        }
-    }
-
-    /**
-     * Gets logo urls as json.
-     *
-     * @return the logo urls as json
-     */
-    public String getLogoUrlsAsJson() {
-        synchronized (logoImages) {
-            return new Gson().toJson(new ArrayList<>(logoImages));
-        }
-    }
 }
@@ -1,16 +1,52 @@
 package com.eulerity.hackathon.imagefinder;
 
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The type Image crawler factory.
+ * <p>
+ * Crawlers are released once their results have been handed to the {@link ResultCache}, and a sweeper
+ * evicts crawlers idle for longer than {@code -Dimagefinder.crawler.idleSeconds} (default
+ * {@value #DEFAULT_IDLE_SECONDS}) or, oldest first, while all crawlers together remember more than
+ * {@code -Dimagefinder.crawler.maxRetainedUrls} (default {@value #DEFAULT_MAX_RETAINED_URLS}) urls.
+ * A crawler that is still crawling is never evicted.
  */
 public class ImageCrawlerFactory {
-    private static final ImageCrawlerFactory INSTANCE = new ImageCrawlerFactory();
+    private static final long DEFAULT_IDLE_SECONDS = 300;
+    private static final int DEFAULT_MAX_RETAINED_URLS = 500_000;
+    private static final long SWEEP_SECONDS = 30;
+    private static final ImageCrawlerFactory INSTANCE = new ImageCrawlerFactory(CrawlStore.getInstance(),
+            TimeUnit.SECONDS.toNanos(Long.getLong("imagefinder.crawler.idleSeconds", DEFAULT_IDLE_SECONDS)),
+            Integer.getInteger("imagefinder.crawler.maxRetainedUrls", DEFAULT_MAX_RETAINED_URLS));
     private final ConcurrentHashMap<String, ImageCrawler> crawlerCache = new ConcurrentHashMap<>();
+    private final CrawlStore store;
+    private final long idleNanos;
+    private final int maxRetainedUrls;
 
-    private ImageCrawlerFactory() {}
+    static {
+        CrawlingThreadPool.getInstance().getScheduler()
+                .scheduleWithFixedDelay(INSTANCE::sweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Instantiates a new Image crawler factory; the shared one is {@link #getInstance()}, whose sweeper
+     * runs every {@value #SWEEP_SECONDS} seconds.
+     *
+     * @param store           resumes interrupted crawls
+     * @param idleNanos       how long a finished crawler is kept
+     * @param maxRetainedUrls how many urls all crawlers may remember together
+     */
+    ImageCrawlerFactory(CrawlStore store, long idleNanos, int maxRetainedUrls) {
+        this.store = store;
+        this.idleNanos = idleNanos;
+        this.maxRetainedUrls = maxRetainedUrls;
+    }
 
     /**
      * Gets instance.
@@ -22,18 +58,32 @@ public class ImageCrawlerFactory {
     }
 
     /**
-     * get crawl instance
+     * get crawl instance, replacing one that was stopped
      * @param url url parameter
      * @return response `ImageCrawler` instance
      */
     public ImageCrawler getCrawler(String url) throws MalformedURLException {
-        return crawlerCache.computeIfAbsent(url, key -> {
-            try {
-                return new ImageCrawler(key,1);
-            } catch (MalformedURLException e) {
-                throw new RuntimeException(e);
+        ImageCrawler crawler = crawlerCache.get(url);
+        if (crawler != null && !crawler.isStopped()) {
+            return crawler;
+        }
+        // read the store outside the map, so a slow disk holds up only the callers of this url
+        CrawlStore.StoredJob stored = store.load(url);
+        ImageCrawler created = stored != null && !stored.isCompleted()
+                ? new ImageCrawler(url, 1, stored)
+                : new ImageCrawler(url, 1);
+        while (true) {
+            crawler = crawlerCache.putIfAbsent(url, created);
+            if (crawler == null) {
+                return created;
+            }
+            if (!crawler.isStopped()) {
+                return crawler; // another caller got there first; ours never crawled, so it can go
+            }
+            if (crawlerCache.replace(url, crawler, created)) {
+                return created;
             }
-        });
+        }
     }
 
     /**
@@ -43,4 +93,93 @@ public class ImageCrawlerFactory {
     public void removeCrawler(String url) {
         crawlerCache.remove(url);
     }
+
+    /**
+     * Drop a crawler once its results live elsewhere. Does nothing while it is still crawling, unless it
+     * was stopped, or if the url has a newer crawler by now.
+     *
+     * @param url     target URL
+     * @param crawler the crawler that crawled it
+     */
+    public void release(String url, ImageCrawler crawler) {
+        if ((crawler.isStopped() || !crawler.isCrawling()) && crawlerCache.remove(url, crawler)) {
+            report("Released", url, crawler);
+        }
+    }
+
+    /**
+     * Evict idle crawlers, then the least recently active ones until the retained url budget is met.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        List<Map.Entry<String, ImageCrawler>> evictable = new ArrayList<>();
+        long retained = 0;
+        for (Map.Entry<String, ImageCrawler> entry : crawlerCache.entrySet()) {
+            ImageCrawler crawler = entry.getValue();
+            if (!crawler.isCrawling() && now - crawler.getLastActiveNanos() > idleNanos) {
+                if (crawlerCache.remove(entry.getKey(), crawler)) {
+                    report("Evicted idle", entry.getKey(), crawler);
+                }
+                continue;
+            }
+            retained += crawler.getRetainedUrlCount();
+            if (!crawler.isCrawling()) {
+                evictable.add(entry);
+            }
+        }
+        if (retained <= maxRetainedUrls) {
+            return;
+        }
+        evictable.sort(Comparator.comparingLong(entry -> entry.getValue().getLastActiveNanos()));
+        for (Map.Entry<String, ImageCrawler> entry : evictable) {
+            if (retained <= maxRetainedUrls) {
+                break;
+            }
+            ImageCrawler crawler = entry.getValue();
+            if (!crawler.isCrawling() && crawlerCache.remove(entry.getKey(), crawler)) {
+                retained -= crawler.getRetainedUrlCount();
+                report("Evicted over budget", entry.getKey(), crawler);
+            }
+        }
+    }
+
+    private static void report(String action, String url, ImageCrawler crawler) {
+        Logger.getInstance().info("[Factory] " + action + " crawler for " + url + ": "
+                + crawler.getRetainedUrlCount() + " urls, ~" + crawler.estimateRetainedBytes() / 1024 + " KB");
+    }
+
+    /**
+     * Gets the number of live crawlers.
+     *
+     * @return the size
+     */
+    public int size() {
+        return crawlerCache.size();
+    }
+
+    /**
+     * Gets the number of urls remembered by all crawlers.
+     *
+     * @return the retained url count
+     */
+    public long getRetainedUrlCount() {
+        long total = 0;
+        for (ImageCrawler crawler : crawlerCache.values()) {
+            total += crawler.getRetainedUrlCount();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the estimated heap held by each live crawler, for sizing the JVM.
+     *
+     * @return estimated bytes by start url
+     */
+    public Map<String, Long> getRetainedBytesByCrawler() {
+        Map<String, Long> usage = new ConcurrentHashMap<>();
+        for (Map.Entry<String, ImageCrawler> entry : crawlerCache.entrySet()) {
+            usage.put(entry.getKey(), entry.getValue().estimateRetainedBytes());
+        }
+        return usage;
+    }
 }
@@ -1,7 +1,6 @@
 package com.eulerity.hackathon.imagefinder;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.util.concurrent.*;
 
 import javax.servlet.ServletException;
@@ -24,8 +23,7 @@ public class ImageFinder extends HttpServlet {
     private static final long serialVersionUID = 1L;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
-    private static final ConcurrentHashMap<String, CompletableFuture<CrawlResult>> crawlResults = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, Future<?>> runningTasks = new ConcurrentHashMap<>();
+    private final transient CrawlJobs jobs;
 
     /**
      * The constant testImages.
@@ -37,6 +35,17 @@ public class ImageFinder extends HttpServlet {
             "https://images.pexels.com/photos/1108099/pexels-photo-1108099.jpeg?auto=compress&format=tiny"
     };
 
+    /**
+     * Instantiates a new Image finder.
+     */
+    public ImageFinder() {
+        this(CrawlJobs.getInstance());
+    }
+
+    ImageFinder(CrawlJobs jobs) {
+        this.jobs = jobs;
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setContentType("application/json");
@@ -48,62 +57,54 @@ public class ImageFinder extends HttpServlet {
             return;
         }
 
-        System.out.println("[Request] Received crawl request for: " + url);
-
-        CompletableFuture<CrawlResult> future = crawlResults.get(url);
+        Logger.getInstance().info("[Request] Received crawl request for: " + url);
 
-        if (future != null && future.isCancelled()) {
-            // Restart the crawl if the task was cancelled
-            System.out.println("[Restart] Previous crawl for " + url + " was cancelled. Restarting...");
-            crawlResults.remove(url);
-            future = startCrawling(url);
-            crawlResults.put(url, future);
-        } else if (future == null) {
-            future = startCrawling(url);
-            crawlResults.put(url, future);
-        }
+        ResultCache cache = ResultCache.getInstance();
+        ResultCache.Job job = jobs.startJob(url);
+        CompletableFuture<CrawlResult> future = job.getFuture();
 
         try {
             CrawlResult result = future.get(10, TimeUnit.SECONDS);
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.getWriter().print(GSON.toJson(result));
         } catch (TimeoutException e) {
-            System.out.println("[Timeout] Crawling for " + url + " exceeded 10 seconds, returning partial results.");
-            CrawlResult partialResult = getCurrentCrawlResult(url);
+            Logger.getInstance().warn("[Timeout] Crawling for " + url + " exceeded 10 seconds, returning partial results.");
+            CrawlResult partialResult = job.getLog() == null
+                    ? new CrawlResult("error", "Crawling exceeded time limit.", null, null)
+                    : CrawlJobs.partialResult(job.getLog());
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.getWriter().print(GSON.toJson(partialResult));
 
             // cancel teak can remove cache
             future.cancel(true);
-            crawlResults.remove(url);
-
-            // cancel `Future<?>` task
-            Future<?> task = runningTasks.remove(url);
-            if (task != null) {
-                task.cancel(true);
-            }
+            cache.remove(url, job);
         } catch (CancellationException e) {
-            System.out.println("[Cancelled] Crawl task for " + url + " was cancelled.");
+            Logger.getInstance().info("[Cancelled] Crawl task for " + url + " was cancelled.");
             resp.setStatus(HttpServletResponse.SC_GONE);
             resp.getWriter().print(GSON.toJson(new CrawlResult("error", "Crawling was cancelled.", null, null)));
 
             // remove tasks has been canceled
-            crawlResults.remove(url);
+            cache.remove(url, job);
         } catch (ExecutionException e) {
-            System.out.println("[ExecutionException] Crawling failed for " + url + ": " + e.getMessage());
+            Logger.getInstance().error("[ExecutionException] Crawling failed for " + url + ": " + e.getMessage());
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             resp.getWriter().print(GSON.toJson(new CrawlResult("error", "Crawling failed.", null, null)));
 
             // remove failed tasks
-            crawlResults.remove(url);
+            cache.remove(url, job);
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             resp.getWriter().print(GSON.toJson(new CrawlResult("error", "Unexpected error occurred.", null, null)));
         }
     }
 
+    /**
+     * Poll a crawl. Only images appended after the {@code since} cursor (default 0, meaning all) are
+     * returned, together with the cursor to send on the next poll.
+     */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
         String url = request.getParameter("url");
 
         if (url == null || url.isEmpty()) {
@@ -112,32 +113,40 @@ public class ImageFinder extends HttpServlet {
             return;
         }
 
-        CompletableFuture<CrawlResult> futureResult = crawlResults.get(url);
-        if (futureResult == null) {
+        long since;
+        try {
+            String cursor = request.getParameter("since");
+            since = cursor == null || cursor.isEmpty() ? 0 : Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().print(GSON.toJson(new CrawlResult("error", "Invalid 'since' cursor.", null, null)));
+            return;
+        }
+
+        ResultCache.Job job = jobs.findJob(url);
+        if (job == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             response.getWriter().print(GSON.toJson(new CrawlResult("not_started", "No crawling task found for this URL.", null, null)));
             return;
         }
 
         try {
+            CompletableFuture<CrawlResult> futureResult = job.getFuture();
+            ResultLog log = job.getLog();
             if (futureResult.isDone()) {
                 CrawlResult result = futureResult.get();
+                if (result.getImages() != null && log != null) {
+                    result = new CrawlResult(result.getStatus(), result.getMessage(), log.read(since));
+                }
                 response.setStatus(HttpServletResponse.SC_OK);
-                response.setContentType("application/json");
                 response.getWriter().print(GSON.toJson(result));
-
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        Thread.sleep(60000);
-                        crawlResults.remove(url);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                });
-
-            } else {
+            } else if (log == null) {
                 response.setStatus(HttpServletResponse.SC_ACCEPTED);
                 response.getWriter().print(GSON.toJson(new CrawlResult("in_progress", "Crawling is still in progress. Try again later.", null, null)));
+            } else {
+                response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                response.getWriter().print(GSON.toJson(new CrawlResult("in_progress",
+                        "Crawling is still in progress. Try again later.", log.read(since))));
             }
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -145,70 +154,14 @@ public class ImageFinder extends HttpServlet {
         }
     }
 
-    /**
-     * start crawl and return `CompletableFuture`
-     */
-    CompletableFuture<CrawlResult> startCrawling(String url) {
-        CompletableFuture<CrawlResult> future = new CompletableFuture<>();
-
-        Future<?> task = CrawlingThreadPool.getInstance().getExecutor().submit(() -> {
-            try {
-                ImageCrawler crawler = ImageCrawlerFactory.getInstance().getCrawler(url);
-                crawler.startCrawling(url, 0);
-
-                long startTime = System.currentTimeMillis();
-
-                while (crawler.isCrawling()) {
-                    if (System.currentTimeMillis() - startTime > 10000) {
-                        System.out.println("[Timeout] Crawling exceeded 10 seconds, returning partial results.");
-                        future.complete(getCurrentCrawlResult(url));
-                        return;
-                    }
-                    Thread.sleep(1000);
-
-                    // crontask to check if task is canceled
-                    if (Thread.currentThread().isInterrupted()) {
-                        System.out.println("[Cancelled] Crawling task interrupted for " + url);
-                        return;
-                    }
-                }
-
-                CrawlResult result = new CrawlResult("completed", "Crawling completed successfully.",
-                        crawler.getImageUrlsAsJson(), crawler.getLogoUrlsAsJson());
-                future.complete(result);
-                System.out.println("[Crawler] " + url + " crawling completed.");
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();  // Reset interrupt status
-                future.complete(new CrawlResult("error", "Crawling was interrupted.", null, null));
-            } catch (MalformedURLException e) {
-                future.complete(new CrawlResult("error", "Invalid URL format.", null, null));
-            } finally {
-                runningTasks.remove(url);  // Clean up after task completion
-            }
-        });
-
-        runningTasks.put(url, task);
-        return future;
-    }
-
-    /**
-     * Get part of the data currently crawled (if timeout)
-     */
-    private CrawlResult getCurrentCrawlResult(String url) throws MalformedURLException {
-        ImageCrawler crawler = ImageCrawlerFactory.getInstance().getCrawler(url);
-        return new CrawlResult("partial",
-                "Crawling exceeded time limit, returning available results.",
-                crawler.getImageUrlsAsJson(),
-                crawler.getLogoUrlsAsJson());
-    }
-
     /**
      * Shut down the thread pool when destroying the Servlet
      */
     @Override
     public void destroy() {
         CrawlingThreadPool.getInstance().shutdown();
-        System.out.println("[Shutdown] ImageFinder servlet shutting down.");
+        AsyncHttpFetcher.shutdown();
+        CrawlStore.getInstance().close();
+        Logger.getInstance().info("[Shutdown] ImageFinder servlet shutting down.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * Reads image format and dimensions from the first bytes of a file,
+ * without decoding any pixel data.
+ * <p>
+ * Supports JPEG (SOFn segment), PNG (IHDR), GIF (logical screen descriptor),
+ * WebP (VP8, VP8L and VP8X chunks) and ICO (first directory entry).
+ */
+public final class ImageHeaderSniffer {
+
+    private ImageHeaderSniffer() {}
+
+    /**
+     * Sniff the image header.
+     *
+     * @param data   the leading bytes of the image
+     * @param length the number of valid bytes in data
+     * @return the image info, with {@link ImageInfo#UNKNOWN} dimensions if the size fields lie beyond
+     * the given bytes, or null if the bytes are not a supported image format
+     */
+    public static ImageInfo sniff(byte[] data, int length) {
+        if (length >= 8 && u8(data, 0) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G'
+                && u8(data, 4) == 0x0D && u8(data, 5) == 0x0A && u8(data, 6) == 0x1A && u8(data, 7) == 0x0A) {
+            return sniffPng(data, length);
+        }
+        if (length >= 3 && u8(data, 0) == 0xFF && u8(data, 1) == 0xD8 && u8(data, 2) == 0xFF) {
+            return sniffJpeg(data, length);
+        }
+        if (length >= 6 && data[0] == 'G' && data[1] == 'I' && data[2] == 'F' && data[3] == '8'
+                && (data[4] == '7' || data[4] == '9') && data[5] == 'a') {
+            return length >= 10
+                    ? new ImageInfo("gif", u16le(data, 6), u16le(data, 8))
+                    : new ImageInfo("gif", ImageInfo.UNKNOWN, ImageInfo.UNKNOWN);
+        }
+        if (length >= 12 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F'
+                && data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') {
+            return sniffWebp(data, length);
+        }
+        if (length >= 8 && data[0] == 0 && data[1] == 0 && data[2] == 1 && data[3] == 0 && u16le(data, 4) > 0) {
+            // a width or height byte of 0 means 256 pixels
+            return new ImageInfo("ico", u8(data, 6) == 0 ? 256 : u8(data, 6), u8(data, 7) == 0 ? 256 : u8(data, 7));
+        }
+        return null;
+    }
+
+    private static ImageInfo sniffPng(byte[] data, int length) {
+        if (length < 24) {
+            return new ImageInfo("png", ImageInfo.UNKNOWN, ImageInfo.UNKNOWN);
+        }
+        if (data[12] != 'I' || data[13] != 'H' || data[14] != 'D' || data[15] != 'R') {
+            return null; // IHDR must be the first chunk
+        }
+        return new ImageInfo("png", s32be(data, 16), s32be(data, 20));
+    }
+
+    private static ImageInfo sniffJpeg(byte[] data, int length) {
+        int pos = 2;
+        while (pos + 4 <= length) {
+            if (u8(data, pos) != 0xFF) {
+                return null; // lost marker sync: corrupt stream
+            }
+            int marker = u8(data, pos + 1);
+            if (marker == 0xFF) {
+                pos++; // fill byte
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2; // standalone markers have no length
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null; // end of image or start of scan before any frame header
+            }
+            int segmentLength = u16be(data, pos + 2);
+            if (segmentLength < 2) {
+                return null;
+            }
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                if (pos + 9 > length) {
+                    break;
+                }
+                return new ImageInfo("jpeg", u16be(data, pos + 7), u16be(data, pos + 5));
+            }
+            pos += 2 + segmentLength;
+        }
+        return new ImageInfo("jpeg", ImageInfo.UNKNOWN, ImageInfo.UNKNOWN);
+    }
+
+    private static ImageInfo sniffWebp(byte[] data, int length) {
+        if (length < 30) {
+            return new ImageInfo("webp", ImageInfo.UNKNOWN, ImageInfo.UNKNOWN);
+        }
+        if (data[12] == 'V' && data[13] == 'P' && data[14] == '8') {
+            if (data[15] == ' ') {
+                // lossy: frame tag, start code 9D 01 2A, then 14-bit dimensions
+                if (u8(data, 23) != 0x9D || u8(data, 24) != 0x01 || u8(data, 25) != 0x2A) {
+                    return null;
+                }
+                return new ImageInfo("webp", u16le(data, 26) & 0x3FFF, u16le(data, 28) & 0x3FFF);
+            }
+            if (data[15] == 'L') {
+                // lossless: signature byte, then 14-bit width-1 and height-1
+                if (u8(data, 20) != 0x2F) {
+                    return null;
+                }
+                long bits = u8(data, 21) | (u8(data, 22) << 8) | (u8(data, 23) << 16) | ((long) u8(data, 24) << 24);
+                return new ImageInfo("webp", (int) (bits & 0x3FFF) + 1, (int) ((bits >> 14) & 0x3FFF) + 1);
+            }
+            if (data[15] == 'X') {
+                // extended: 24-bit canvas width-1 and height-1
+                return new ImageInfo("webp", u24le(data, 24) + 1, u24le(data, 27) + 1);
+            }
+        }
+        return null;
+    }
+
+    private static int u8(byte[] data, int pos) {
+        return data[pos] & 0xFF;
+    }
+
+    private static int u16le(byte[] data, int pos) {
+        return u8(data, pos) | (u8(data, pos + 1) << 8);
+    }
+
+    private static int u16be(byte[] data, int pos) {
+        return (u8(data, pos) << 8) | u8(data, pos + 1);
+    }
+
+    private static int u24le(byte[] data, int pos) {
+        return u8(data, pos) | (u8(data, pos + 1) << 8) | (u8(data, pos + 2) << 16);
+    }
+
+    private static int s32be(byte[] data, int pos) {
+        return (u8(data, pos) << 24) | (u8(data, pos + 1) << 16) | (u8(data, pos + 2) << 8) | u8(data, pos + 3);
+    }
+}
@@ -0,0 +1,95 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * Format and dimensions of an image, as read from its header bytes, and the size and content type
+ * the server reported for it.
+ */
+public class ImageInfo {
+    /**
+     * Dimension value used when the header was truncated before the size fields.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final String format;
+    private final int width;
+    private final int height;
+    private final long byteLength;
+    private final String contentType;
+
+    /**
+     * Instantiates a new Image info.
+     *
+     * @param format the format, e.g. "jpeg"
+     * @param width  the width in pixels
+     * @param height the height in pixels
+     */
+    public ImageInfo(String format, int width, int height) {
+        this(format, width, height, UNKNOWN, null);
+    }
+
+    /**
+     * Instantiates a new Image info.
+     *
+     * @param format      the format, e.g. "jpeg"
+     * @param width       the width in pixels
+     * @param height      the height in pixels
+     * @param byteLength  the size of the whole image in bytes, or {@link #UNKNOWN}
+     * @param contentType the content type the server sent, or null
+     */
+    public ImageInfo(String format, int width, int height, long byteLength, String contentType) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.byteLength = byteLength;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Gets format.
+     *
+     * @return the format
+     */
+    public String getFormat() { return format; }
+
+    /**
+     * Gets width.
+     *
+     * @return the width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Gets height.
+     *
+     * @return the height
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Gets byte length.
+     *
+     * @return the size of the whole image in bytes, or {@link #UNKNOWN}
+     */
+    public long getByteLength() { return byteLength; }
+
+    /**
+     * Gets content type.
+     *
+     * @return the content type, or null
+     */
+    public String getContentType() { return contentType; }
+
+    /**
+     * Whether the dimensions were found in the header.
+     *
+     * @return the boolean
+     */
+    public boolean hasDimensions() {
+        return width != UNKNOWN && height != UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return format + " " + width + "x" + height;
+    }
+}
@@ -0,0 +1,92 @@
+package com.eulerity.hackathon.imagefinder;
+
+/**
+ * One accepted image as returned to clients: its url and what validation learned about it, so callers
+ * can filter and rank without downloading the image. Fields that are not known are null and left out
+ * of the JSON.
+ */
+public class ImageMetadata {
+    private final String url;
+    private final boolean logo;
+    private final String format;
+    private final Integer width;
+    private final Integer height;
+    private final Long bytes;
+    private final String contentType;
+    private final int clusterSize;
+
+    /**
+     * Instantiates a new Image metadata.
+     *
+     * @param url         the image url
+     * @param logo        whether the image is a logo
+     * @param info        what validation found out, or null if nothing is known
+     * @param clusterSize the number of near-duplicate urls the image stands for, counting itself
+     */
+    public ImageMetadata(String url, boolean logo, ImageInfo info, int clusterSize) {
+        this.url = url;
+        this.logo = logo;
+        this.format = info == null ? null : info.getFormat();
+        this.width = info == null || !info.hasDimensions() ? null : info.getWidth();
+        this.height = info == null || !info.hasDimensions() ? null : info.getHeight();
+        this.bytes = info == null || info.getByteLength() == ImageInfo.UNKNOWN ? null : info.getByteLength();
+        this.contentType = info == null ? null : info.getContentType();
+        this.clusterSize = clusterSize;
+    }
+
+    /**
+     * Gets url.
+     *
+     * @return the url
+     */
+    public String getUrl() { return url; }
+
+    /**
+     * Is logo boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isLogo() { return logo; }
+
+    /**
+     * Gets format.
+     *
+     * @return the format, e.g. "jpeg", or null
+     */
+    public String getFormat() { return format; }
+
+    /**
+     * Gets width.
+     *
+     * @return the width in pixels, or null
+     */
+    public Integer getWidth() { return width; }
+
+    /**
+     * Gets height.
+     *
+     * @return the height in pixels, or null
+     */
+    public Integer getHeight() { return height; }
+
+    /**
+     * Gets bytes.
+     *
+     * @return the size of the image in bytes, or null
+     */
+    public Long getBytes() { return bytes; }
+
+    /**
+     * Gets content type.
+     *
+     * @return the content type, or null
+     */
+    public String getContentType() { return contentType; }
+
+    /**
+     * Gets cluster size.
+     *
+     * @return the number of near-duplicate urls the image stands for, counting itself
+     */
+    public int getClusterSize() { return clusterSize; }
+}
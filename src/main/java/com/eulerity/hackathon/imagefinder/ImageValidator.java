@@ -0,0 +1,197 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Validates candidate images by reading only their header bytes.
+ * <p>
+ * A ranged GET fetches the first {@link #HEADER_BYTES} bytes, which are sniffed with
+ * {@link ImageHeaderSniffer} for format and dimensions. JPEGs whose frame header sits behind
+ * a large EXIF block get one more ranged read of {@link #MAX_JPEG_HEADER_BYTES}.
+ * The full {@code ImageIO} decode only runs in strict mode
+ * ({@code -Dimagefinder.image.strict=true}).
+ * <p>
+ * Images already classified as logos are held to a looser standard: site icons are often small and in
+ * ICO format, so for them the {@link #MIN_IMAGE_BYTES} floor does not apply and ICO is accepted.
+ * <p>
+ * Outcomes are kept in the {@link HttpCache}: the next check of the same url sends its validators
+ * with the first ranged GET, and a 304 reuses the earlier outcome.
+ */
+public class ImageValidator {
+    private static final ImageValidator INSTANCE =
+            new ImageValidator(Fetcher.getDefault(), Boolean.getBoolean("imagefinder.image.strict"));
+
+    private static final int TIMEOUT_MS = 3000;
+    private static final int HEADER_BYTES = 8 * 1024;
+    private static final int MAX_JPEG_HEADER_BYTES = 64 * 1024;
+    private static final int MIN_IMAGE_BYTES = 10 * 1024;
+    private static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+    private static final List<String> ALLOWED_FORMATS = Arrays.asList("jpeg", "png", "webp", "gif");
+    private static final List<String> LOGO_FORMATS = Arrays.asList("jpeg", "png", "webp", "gif", "ico");
+    // kept in the HttpCache for urls that were checked and turned down
+    private static final ImageInfo REJECTED = new ImageInfo(null, ImageInfo.UNKNOWN, ImageInfo.UNKNOWN);
+
+    private final Fetcher fetcher;
+    private final boolean strict;
+    private final HttpCache httpCache = HttpCache.getInstance();
+
+    /**
+     * Instantiates a new Image validator.
+     *
+     * @param fetcher the fetcher used for the ranged reads
+     * @param strict  also fully decode the image with ImageIO
+     */
+    public ImageValidator(Fetcher fetcher, boolean strict) {
+        this.fetcher = fetcher;
+        this.strict = strict;
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static ImageValidator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Validate an image url.
+     *
+     * @param imageUrl the image url
+     * @return a future of the image info, completing with null if the url is not an acceptable image
+     */
+    public CompletableFuture<ImageInfo> validateAsync(String imageUrl) {
+        return validateAsync(imageUrl, false);
+    }
+
+    /**
+     * Validate an image url.
+     *
+     * @param imageUrl the image url
+     * @param logo     whether the image was classified as a logo
+     * @return a future of the image info, completing with null if the url is not an acceptable image
+     */
+    public CompletableFuture<ImageInfo> validateAsync(String imageUrl, boolean logo) {
+        HttpCache.Entry cached = httpCache.lookup(imageUrl, ImageInfo.class);
+        Map<String, String> headers = httpCache.conditionalHeaders(cached, rangeHeader(HEADER_BYTES));
+        return fetcher.fetch(imageUrl, headers, HEADER_BYTES, TIMEOUT_MS)
+                .thenCompose(response -> {
+                    if (httpCache.isNotModified(cached, response)) {
+                        ImageInfo info = (ImageInfo) cached.getPayload();
+                        return CompletableFuture.completedFuture(accept(info == REJECTED ? null : info, logo));
+                    }
+                    return inspect(imageUrl, sniff(response)).thenApply(info -> {
+                        if (response.getStatusCode() == 200 || response.getStatusCode() == 206) {
+                            httpCache.store(imageUrl, response, info == null ? REJECTED : info);
+                        }
+                        return accept(info, logo);
+                    });
+                })
+                .exceptionally(e -> null);
+    }
+
+    /**
+     * Finish reading an image from what its first ranged read showed: its format and dimensions, or null
+     * if it is not a readable image. Whether it is acceptable is up to {@link #accept(ImageInfo, boolean)},
+     * so the outcome can be cached for logos and other images alike.
+     */
+    private CompletableFuture<ImageInfo> inspect(String imageUrl, ImageInfo sniffed) {
+        return CompletableFuture.completedFuture(sniffed)
+                .thenCompose(info -> info != null && !info.hasDimensions() && "jpeg".equals(info.getFormat())
+                        ? sniffRemote(imageUrl, MAX_JPEG_HEADER_BYTES)
+                        : CompletableFuture.completedFuture(info))
+                .thenApply(info -> info == null || !info.hasDimensions()
+                        || info.getWidth() <= 0 || info.getHeight() <= 0 ? null : info)
+                .thenCompose(info -> strict && info != null && !"ico".equals(info.getFormat())
+                        ? decodeFully(imageUrl).thenApply(decoded -> decoded ? info : null)
+                        : CompletableFuture.completedFuture(info));
+    }
+
+    private static ImageInfo accept(ImageInfo info, boolean logo) {
+        if (info == null) {
+            return null;
+        }
+        if (logo) {
+            return LOGO_FORMATS.contains(info.getFormat()) ? info : null;
+        }
+        boolean tooSmall = info.getByteLength() != ImageInfo.UNKNOWN && info.getByteLength() < MIN_IMAGE_BYTES;
+        return ALLOWED_FORMATS.contains(info.getFormat()) && !tooSmall ? info : null;
+    }
+
+    /**
+     * Fetch the first bytes of the image with a ranged GET and sniff them.
+     * Servers that ignore the Range header are read only up to maxBytes.
+     */
+    private CompletableFuture<ImageInfo> sniffRemote(String imageUrl, int maxBytes) {
+        return fetcher.fetch(imageUrl, rangeHeader(maxBytes), maxBytes, TIMEOUT_MS)
+                .thenApply(ImageValidator::sniff);
+    }
+
+    private static Map<String, String> rangeHeader(int maxBytes) {
+        return Collections.singletonMap("Range", "bytes=0-" + (maxBytes - 1));
+    }
+
+    /**
+     * Sniff a ranged read, or null if the response is not an image of acceptable size.
+     * The result also carries the image's total size and content type from the response headers.
+     */
+    private static ImageInfo sniff(FetchResponse response) {
+        if (response.getStatusCode() != 200 && response.getStatusCode() != 206) {
+            return null;
+        }
+        String contentType = response.getContentType();
+        if (contentType != null && !contentType.startsWith("image/")) {
+            return null;
+        }
+        long totalLength = totalLength(response);
+        if (totalLength > MAX_IMAGE_BYTES) {
+            return null;
+        }
+        byte[] body = response.getBody();
+        ImageInfo info = ImageHeaderSniffer.sniff(body, body.length);
+        return info == null ? null
+                : new ImageInfo(info.getFormat(), info.getWidth(), info.getHeight(), totalLength, contentType);
+    }
+
+    private CompletableFuture<Boolean> decodeFully(String imageUrl) {
+        return fetcher.fetch(imageUrl, Collections.<String, String>emptyMap(), MAX_IMAGE_BYTES, TIMEOUT_MS)
+                .thenApplyAsync(response -> {
+                    try {
+                        return response.isSuccessful()
+                                && ImageIO.read(new ByteArrayInputStream(response.getBody())) != null;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                }, CrawlingThreadPool.getInstance().getExecutor());
+    }
+
+    /**
+     * Total size of the resource: from Content-Range on a 206, else Content-Length; -1 if unknown.
+     */
+    private static long totalLength(FetchResponse response) {
+        String value;
+        if (response.getStatusCode() == 206) {
+            String contentRange = response.getHeader("Content-Range");
+            int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+            value = slash < 0 ? null : contentRange.substring(slash + 1);
+        } else {
+            value = response.getHeader("Content-Length");
+        }
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1; // "bytes 0-8191/*"
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking {@link Fetcher} on top of Jsoup's connection.
+ * The request runs on the calling thread and the returned future is already complete.
+ */
+public class JsoupFetcher implements Fetcher {
+    private static final JsoupFetcher INSTANCE = new JsoupFetcher();
+
+    private JsoupFetcher() {}
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static JsoupFetcher getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public CompletableFuture<FetchResponse> fetch(String url, Map<String, String> headers, int maxBodyBytes, int timeoutMs) {
+        CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(USER_AGENT)
+                    .headers(headers)
+                    .timeout(timeoutMs)
+                    .maxBodySize(maxBodyBytes)
+                    .ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .followRedirects(true)
+                    .execute();
+            future.complete(new FetchResponse(response.url().toString(), response.statusCode(),
+                    response.headers(), response.bodyAsBytes()));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
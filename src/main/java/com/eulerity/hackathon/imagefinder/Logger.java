@@ -1,39 +1,114 @@
 package com.eulerity.hackathon.imagefinder;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.logging.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
 
 /**
  * The type Logger.
+ * <p>
+ * Logging never blocks a crawl thread: a call claims a slot in a bounded lock-free ring buffer and
+ * returns, and a single daemon thread formats the queued messages and writes them to {@value #LOG_FILE}
+ * and the console. When the buffer is full the message is dropped and counted, and the writer reports
+ * the drops in the log once it catches up. The timestamp text is formatted at most once per second.
+ * <p>
+ * Configured with {@code -Dimagefinder.log.level} (a {@link Level} name, default {@code INFO};
+ * {@code FINE} turns on the per-task debug lines of the thread pool), {@code -Dimagefinder.log.bufferSize}
+ * (default {@value #DEFAULT_BUFFER_SIZE} messages) and {@code -Dimagefinder.log.console=false} to log to
+ * the file only.
  */
 public class Logger {
     private static final String LOG_FILE = "crawler.log"; // log file path
-    private static final Logger instance = new Logger();
-    private final java.util.logging.Logger logger;
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final Logger instance = open();
 
-    private Logger() {
-        logger = java.util.logging.Logger.getLogger("ImageCrawlerLogger");
-        logger.setUseParentHandlers(false); // close default control log
+    private final int threshold;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Event[] events;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final List<Writer> sinks;
+    private long head; // writer thread only
+    private long reportedDrops; // writer thread only
+    private volatile long highWaterMark;
+    private volatile boolean running;
+    private volatile boolean parked;
+    private volatile Thread writer;
 
-        try {
-            FileHandler fileHandler = new FileHandler(LOG_FILE, true);
-            fileHandler.setFormatter(new SimpleFormatter());
+    // timestamp cache, writer thread only
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
 
-            ConsoleHandler consoleHandler = new ConsoleHandler();
-            consoleHandler.setFormatter(new SimpleFormatter());
+    /**
+     * A preallocated ring buffer slot.
+     */
+    private static final class Event {
+        private Level level;
+        private String message;
+        private long millis;
+    }
 
-            logger.setLevel(Level.ALL);
-            fileHandler.setLevel(Level.ALL);
-            consoleHandler.setLevel(Level.ALL);
+    /**
+     * Instantiates a new Logger whose writer thread is not started yet.
+     *
+     * @param threshold  the lowest level that is logged
+     * @param bufferSize the number of messages that may wait for the writer, rounded up to a power of two
+     * @param sinks      where the formatted lines go
+     */
+    Logger(Level threshold, int bufferSize, List<Writer> sinks) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.threshold = threshold.intValue();
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.events = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+            events[i] = new Event();
+        }
+        this.sinks = sinks;
+    }
 
-            // add handler
-            logger.addHandler(fileHandler);
-            logger.addHandler(consoleHandler);
+    private static Logger open() {
+        Level threshold;
+        try {
+            threshold = Level.parse(System.getProperty("imagefinder.log.level", "INFO").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level, using INFO: " + e.getMessage());
+            threshold = Level.INFO;
+        }
+        List<Writer> sinks = new ArrayList<>();
+        try {
+            sinks.add(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(LOG_FILE, true), StandardCharsets.UTF_8)));
         } catch (IOException e) {
             System.err.println("Failed to initialize logger: " + e.getMessage());
         }
+        if (Boolean.parseBoolean(System.getProperty("imagefinder.log.console", "true"))) {
+            sinks.add(new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8)));
+        }
+        Logger logger = new Logger(threshold, Integer.getInteger("imagefinder.log.bufferSize", DEFAULT_BUFFER_SIZE),
+                Collections.unmodifiableList(sinks));
+        logger.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(logger::close, "log-shutdown"));
+        return logger;
     }
 
     /**
@@ -45,6 +120,25 @@ public class Logger {
         return instance;
     }
 
+    /**
+     * Whether messages of a level are logged; check it before building an expensive message.
+     *
+     * @param level the level
+     * @return the boolean
+     */
+    public boolean isEnabled(Level level) {
+        return level.intValue() >= threshold;
+    }
+
+    /**
+     * Is debug enabled boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.FINE);
+    }
+
     /**
      * Log.
      *
@@ -52,7 +146,43 @@ public class Logger {
      * @param message the message
      */
     public void log(Level level, String message) {
-        logger.log(level, "[" + getCurrentTimestamp() + "] " + message);
+        if (!isEnabled(level)) {
+            return;
+        }
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.incrementAndGet(); // full: the writer has not freed this slot yet
+                return;
+            } else {
+                position = tail.get(); // another thread claimed the slot
+            }
+        }
+        Event event = events[index];
+        event.level = level;
+        event.message = message;
+        event.millis = System.currentTimeMillis();
+        sequences.lazySet(index, position + 1); // publish to the writer
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Debug.
+     *
+     * @param message the message
+     */
+    public void debug(String message) {
+        log(Level.FINE, message);
     }
 
     /**
@@ -82,7 +212,151 @@ public class Logger {
         log(Level.SEVERE, message);
     }
 
-    private String getCurrentTimestamp() {
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+    /**
+     * Gets the number of messages dropped because the buffer was full.
+     *
+     * @return the dropped count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of messages written.
+     *
+     * @return the written count
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Gets the most messages seen waiting for the writer at once.
+     *
+     * @return the high water mark
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Gets the number of messages the buffer holds.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Start the writer thread.
+     */
+    void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "log-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop the writer thread once it has written everything queued so far.
+     */
+    public void close() {
+        Thread thread = writer;
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (drain() == 0) {
+                flushSinks();
+                parked = true;
+                if (tail.get() == head && running) { // re-check after announcing, or a wakeup could be missed
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+        drain();
+        flushSinks();
+    }
+
+    /**
+     * Write every published message to the sinks. Only one thread may drain: the writer, or a test
+     * whose logger was never started.
+     *
+     * @return the number of messages written
+     */
+    int drain() {
+        long backlog = tail.get() - head;
+        if (backlog > highWaterMark) {
+            highWaterMark = backlog;
+        }
+        int count = 0;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Event event = events[index];
+            write(event.level, event.message, event.millis);
+            event.message = null;
+            sequences.lazySet(index, head + mask + 1); // hand the slot back to producers
+            head++;
+            count++;
+        }
+        long drops = dropped.get();
+        if (drops > reportedDrops) {
+            write(Level.WARNING, "[Logger] Buffer full, dropped " + (drops - reportedDrops) + " messages",
+                    System.currentTimeMillis());
+            reportedDrops = drops;
+        }
+        written.addAndGet(count);
+        return count;
+    }
+
+    private void write(Level level, String message, long millis) {
+        String timestamp = timestamp(millis);
+        for (Writer sink : sinks) {
+            try {
+                sink.write(timestamp);
+                sink.write(' ');
+                sink.write(level.getName());
+                sink.write(' ');
+                sink.write(message);
+                sink.write(System.lineSeparator());
+            } catch (IOException e) {
+                // a broken sink must not stop the others
+            }
+        }
+    }
+
+    private void flushSinks() {
+        for (Writer sink : sinks) {
+            try {
+                sink.flush();
+            } catch (IOException ignored) {
+                // nothing sensible to log it to
+            }
+        }
+    }
+
+    private String timestamp(long millis) {
+        long second = millis / 1000;
+        if (second != cachedSecond) {
+            cachedTimestamp = dateFormat.format(new Date(millis));
+            cachedSecond = second;
+        }
+        return cachedTimestamp;
     }
 }
@@ -0,0 +1,154 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.nodes.Element;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Tells logos apart from other images while a page is parsed, from the markup alone.
+ * <p>
+ * Each image collects points: 2 for a keyword in its url path, 2 for a keyword in its {@code alt},
+ * {@code title}, {@code class} or {@code id}, 2 for a keyword in the class or id of a close ancestor,
+ * 2 for sitting inside a link to the site's home page and 1 for sitting inside {@code header} or
+ * {@code nav}; two points make a logo. All keywords are matched by one precompiled, case-insensitive
+ * pattern, configurable as a comma-separated list with {@code -Dimagefinder.logo.keywords}.
+ * Icons declared with {@code <link rel="icon">} and friends are logos without scoring.
+ */
+public class LogoClassifier {
+    private static final String DEFAULT_KEYWORDS = "logo,brand,favicon,icon,corporate,symbol";
+    private static final LogoClassifier INSTANCE =
+            new LogoClassifier(System.getProperty("imagefinder.logo.keywords", DEFAULT_KEYWORDS));
+    static final int MAX_ANCESTORS = 6;
+    private static final int LOGO_SCORE = 2;
+
+    private final Pattern keywords;
+
+    /**
+     * Instantiates a new Logo classifier.
+     *
+     * @param keywords comma-separated keywords that mark a logo
+     */
+    public LogoClassifier(String keywords) {
+        StringBuilder alternation = new StringBuilder();
+        for (String keyword : keywords.split(",")) {
+            if (!keyword.trim().isEmpty()) {
+                alternation.append(alternation.length() == 0 ? "" : "|").append(Pattern.quote(keyword.trim()));
+            }
+        }
+        this.keywords = alternation.length() == 0 ? null
+                : Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static LogoClassifier getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether a {@code link} element declares a site icon ({@code icon}, {@code shortcut icon},
+     * {@code apple-touch-icon}, {@code mask-icon}).
+     *
+     * @param link the element
+     * @return the boolean
+     */
+    public static boolean isIconLink(Element link) {
+        return isIconRel(link.attr("rel"));
+    }
+
+    /**
+     * Whether the {@code rel} attribute of a {@code link} element declares a site icon.
+     *
+     * @param rel the attribute value
+     * @return the boolean
+     */
+    public static boolean isIconRel(String rel) {
+        for (String type : rel.toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (type.equals("icon") || type.endsWith("-icon")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an {@code img} element shows a logo.
+     *
+     * @param img     the element
+     * @param src     its canonical absolute url
+     * @param homeUrl the canonical url of the site's home page
+     * @return the boolean
+     */
+    public boolean isLogo(Element img, String src, String homeUrl) {
+        boolean ancestorKeyword = false;
+        boolean homeLink = false;
+        boolean banner = false;
+        Element ancestor = img.parent();
+        for (int depth = 0; ancestor != null && depth < MAX_ANCESTORS; depth++, ancestor = ancestor.parent()) {
+            String tag = ancestor.tagName();
+            ancestorKeyword |= matches(ancestor.className()) || matches(ancestor.id());
+            homeLink |= "a".equals(tag) && ancestor.hasAttr("href")
+                    && homeUrl.equals(UrlCanonicalizer.canonicalize(ancestor.absUrl("href")));
+            banner |= "header".equals(tag) || "nav".equals(tag);
+        }
+        return isLogo(src, img.attr("alt"), img.attr("title"), img.className(), img.id(), ancestorKeyword, homeLink, banner);
+    }
+
+    /**
+     * Whether an image shows a logo, for parsers that walk its {@value #MAX_ANCESTORS} closest ancestors
+     * themselves.
+     *
+     * @param src             its canonical absolute url
+     * @param alt             its {@code alt}, or null
+     * @param title           its {@code title}, or null
+     * @param className       its {@code class}, or null
+     * @param id              its {@code id}, or null
+     * @param ancestorKeyword whether the class or id of an ancestor has a keyword, see {@link #hasKeyword(String)}
+     * @param homeLink        whether an ancestor is a link to the site's home page
+     * @param banner          whether an ancestor is a {@code header} or {@code nav}
+     * @return the boolean
+     */
+    public boolean isLogo(String src, String alt, String title, String className, String id,
+                          boolean ancestorKeyword, boolean homeLink, boolean banner) {
+        int score = 0;
+        if (matches(path(src))) {
+            score += 2;
+        }
+        if (matches(alt) || matches(title) || matches(className) || matches(id)) {
+            score += 2;
+        }
+        score += (ancestorKeyword ? 2 : 0) + (homeLink ? 2 : 0) + (banner ? 1 : 0);
+        return score >= LOGO_SCORE;
+    }
+
+    /**
+     * Whether a text contains one of the keywords.
+     *
+     * @param text the text, or null
+     * @return the boolean
+     */
+    public boolean hasKeyword(String text) {
+        return matches(text);
+    }
+
+    private boolean matches(String text) {
+        return keywords != null && text != null && !text.isEmpty() && keywords.matcher(text).find();
+    }
+
+    /**
+     * The path of a url, so that keywords in the host name ("brandcdn.com") do not count.
+     */
+    private static String path(String url) {
+        try {
+            return new URI(url).getRawPath();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves {@link CrawlMetrics} in the Prometheus text exposition format: {@code GET /metrics}.
+ */
+@WebServlet(
+        name = "Metrics",
+        urlPatterns = {"/metrics"}
+)
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StringBuilder out = new StringBuilder(8192);
+        CrawlMetrics.getInstance().render(out);
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(out.toString());
+    }
+}
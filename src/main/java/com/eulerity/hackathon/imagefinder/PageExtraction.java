@@ -0,0 +1,67 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the crawler took from one page: its image urls, which of them are logos, and its outgoing links.
+ * Kept by the {@link HttpCache} so an unchanged page does not have to be parsed again.
+ */
+public class PageExtraction {
+    private final List<String> imageUrls;
+    private final Set<String> logoUrls;
+    private final List<String> links;
+
+    /**
+     * Instantiates a new Page extraction.
+     *
+     * @param imageUrls the canonical image urls, in document order
+     * @param logoUrls  the image urls classified as logos
+     * @param links     the absolute link targets, in document order
+     */
+    public PageExtraction(List<String> imageUrls, Set<String> logoUrls, List<String> links) {
+        this.imageUrls = Collections.unmodifiableList(imageUrls);
+        this.logoUrls = Collections.unmodifiableSet(logoUrls);
+        this.links = Collections.unmodifiableList(links);
+    }
+
+    /**
+     * Gets image urls.
+     *
+     * @return the image urls
+     */
+    public List<String> getImageUrls() { return imageUrls; }
+
+    /**
+     * Whether an image of the page was classified as a logo.
+     *
+     * @param imageUrl the canonical image url
+     * @return the boolean
+     */
+    public boolean isLogo(String imageUrl) { return logoUrls.contains(imageUrl); }
+
+    /**
+     * Gets links.
+     *
+     * @return the links
+     */
+    public List<String> getLinks() { return links; }
+
+    /**
+     * Estimate the heap the extraction holds, for the {@link HttpCache} byte budget.
+     *
+     * @return the estimated bytes
+     */
+    long estimateBytes() {
+        // ~40 bytes of String and char[] headers per url, 2 bytes per char, a reference per list slot
+        long bytes = 64;
+        for (String url : imageUrls) {
+            bytes += 48 + 2L * url.length();
+        }
+        for (String url : links) {
+            bytes += 48 + 2L * url.length();
+        }
+        return bytes + 48L * logoUrls.size(); // the logo set shares the image url strings
+    }
+}
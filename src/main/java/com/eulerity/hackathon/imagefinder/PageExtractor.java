@@ -0,0 +1,848 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Entities;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Takes a page's images, logos and links from its markup without building a DOM.
+ * <p>
+ * A tokenizer reads the decoded body in chunks. It skips text, comments and the contents of
+ * {@code script}, {@code style} and other raw-text elements. From each tag it keeps only the attributes
+ * the crawl uses: {@code img} {@code src}, {@code data-src} and {@code srcset}, icon {@code link}s,
+ * {@code a[href]} and {@code base[href]}. The only structure it keeps is the stack of open elements,
+ * with their tag, class, id and href, which is what {@link LogoClassifier} looks at. Common
+ * implied end tags ({@code li}, {@code p}, table cells...) are honoured so the stack stays close to
+ * the tree a browser would build. Tokenizing stops once a page has given {@code imagefinder.extract.maxImages}
+ * images and {@code imagefinder.extract.maxLinks} links.
+ * <p>
+ * Markup too broken to trust the stack (nesting past {@value #MAX_DEPTH} levels, or more than
+ * {@value #MAX_STRAY_END_TAGS} end tags that close nothing) is handed to Jsoup instead, which builds a DOM
+ * the way a browser would; so is every page with {@code -Dimagefinder.extract.streaming=false}.
+ * An extractor is used for one page only.
+ */
+public class PageExtractor {
+    private static final boolean STREAMING =
+            Boolean.parseBoolean(System.getProperty("imagefinder.extract.streaming", "true"));
+    private static final int MAX_IMAGES = Integer.getInteger("imagefinder.extract.maxImages", 1000);
+    private static final int MAX_LINKS = Integer.getInteger("imagefinder.extract.maxLinks", 2000);
+    static final int MAX_DEPTH = 512;
+    static final int MAX_STRAY_END_TAGS = 64;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CHARSET_SNIFF_BYTES = 1024;
+    private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]+charset\\s*=\\s*[\"']?([a-z0-9_.:-]+)");
+    private static final LongAdder FALLBACKS = new LongAdder();
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "keygen", "link", "meta", "param",
+            "source", "track", "wbr"));
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList(
+            "script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"));
+    // a start tag that implicitly closes an open element of one of these kinds, unless a boundary is nearer
+    private static final Map<String, Set<String>> IMPLIED_END = new HashMap<>();
+    private static final Map<String, Set<String>> IMPLIED_END_BOUNDARY = new HashMap<>();
+
+    static {
+        impliedEnd(new String[]{"li"}, new String[]{"li"}, "ul", "ol", "menu");
+        impliedEnd(new String[]{"dt", "dd"}, new String[]{"dt", "dd"}, "dl");
+        impliedEnd(new String[]{"option"}, new String[]{"option"}, "select", "datalist", "optgroup");
+        impliedEnd(new String[]{"tr"}, new String[]{"tr", "td", "th"}, "table", "thead", "tbody", "tfoot");
+        impliedEnd(new String[]{"td", "th"}, new String[]{"td", "th"}, "tr", "table");
+        impliedEnd(new String[]{"p"}, new String[]{"p"}, "div", "section", "article", "td", "th", "li", "button");
+    }
+
+    // the attributes worth keeping, by slot
+    private static final String[] ATTRIBUTES = {"src", "data-src", "srcset", "href", "rel", "alt", "title", "class", "id"};
+    private static final int SRC = 0;
+    private static final int DATA_SRC = 1;
+    private static final int SRCSET = 2;
+    private static final int HREF = 3;
+    private static final int REL = 4;
+    private static final int ALT = 5;
+    private static final int TITLE = 6;
+    private static final int CLASS = 7;
+    private static final int ID = 8;
+
+    private final String pageUrl;
+    private final int maxImages;
+    private final int maxLinks;
+    private final LogoClassifier classifier = LogoClassifier.getInstance();
+    private long logoNanos;
+
+    // tokenizer state
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder token = new StringBuilder(64);
+    private final String[] attributes = new String[ATTRIBUTES.length];
+    private Reader in;
+    private int position;
+    private int limit;
+    private String baseUrl;
+    private boolean baseSet;
+    private String homeUrl;
+    private OpenElement[] stack = new OpenElement[32];
+    private int depth;
+    private int strayEndTags;
+    private List<String> icons;
+    private List<String> images;
+    private Set<String> logos;
+    private List<String> links;
+
+    /**
+     * A start tag still open at the tokenizer's position; reused as the stack grows and shrinks.
+     */
+    private static final class OpenElement {
+        String tag;
+        String className;
+        String id;
+        String href;
+        String hrefBase;
+        Boolean keyword;
+        Boolean homeLink;
+    }
+
+    /**
+     * Instantiates a new Page extractor with the configured limits.
+     *
+     * @param pageUrl the url the page was fetched from
+     */
+    public PageExtractor(String pageUrl) {
+        this(pageUrl, MAX_IMAGES, MAX_LINKS);
+    }
+
+    /**
+     * Instantiates a new Page extractor.
+     *
+     * @param pageUrl   the url the page was fetched from
+     * @param maxImages the most image urls to take from the page
+     * @param maxLinks  the most links to take from the page
+     */
+    PageExtractor(String pageUrl, int maxImages, int maxLinks) {
+        this.pageUrl = pageUrl;
+        this.maxImages = maxImages;
+        this.maxLinks = maxLinks;
+    }
+
+    /**
+     * Gets the number of pages handed to Jsoup because their markup was too broken to stream.
+     *
+     * @return the fallback count
+     */
+    public static long getFallbackCount() {
+        return FALLBACKS.sum();
+    }
+
+    /**
+     * Gets the time spent classifying logos, which callers may want to report apart from parsing.
+     *
+     * @return the nanoseconds
+     */
+    public long getLogoNanos() {
+        return logoNanos;
+    }
+
+    /**
+     * Extract a fetched page, streaming unless it is disabled or the markup is too broken.
+     *
+     * @param response the fetched page
+     * @return the extraction
+     * @throws IOException if the page url is malformed or the body cannot be decoded
+     */
+    public PageExtraction extract(FetchResponse response) throws IOException {
+        if (STREAMING) {
+            byte[] body = response.getBody();
+            int bom = bomLength(body);
+            PageExtraction extraction = stream(new InputStreamReader(
+                    new ByteArrayInputStream(body, bom, body.length - bom), charset(response, bom)));
+            if (extraction != null) {
+                return extraction;
+            }
+            FALLBACKS.increment();
+            Logger.getInstance().info("[Parse] Markup too broken to stream, parsing with Jsoup: " + pageUrl);
+        }
+        return parseWithJsoup(response);
+    }
+
+    /**
+     * Tokenize a page.
+     *
+     * @param reader the decoded body
+     * @return the extraction, or null if the markup is too broken to trust the open elements
+     * @throws IOException if the page url is malformed or the reader fails
+     */
+    PageExtraction stream(Reader reader) throws IOException {
+        in = reader;
+        position = 0;
+        limit = 0;
+        baseUrl = pageUrl;
+        baseSet = false;
+        homeUrl = homeUrl(pageUrl);
+        depth = 0;
+        strayEndTags = 0;
+        icons = new ArrayList<>();
+        images = new ArrayList<>();
+        logos = new HashSet<>();
+        links = new ArrayList<>();
+
+        while (!(imagesFull() && linksFull()) && skipTo('<')) {
+            int c = read();
+            if (c == '!') {
+                skipMarkupDeclaration();
+            } else if (c == '?') {
+                skipTo('>');
+            } else if (c == '/') {
+                if (!endTag()) {
+                    return null;
+                }
+            } else if (isAsciiLetter(c)) {
+                if (!startTag(c)) {
+                    return null;
+                }
+            } else if (c != -1) {
+                unread();
+            }
+        }
+        icons.addAll(images);
+        return new PageExtraction(icons, logos, links);
+    }
+
+    /**
+     * Parse a page into a DOM with Jsoup and select its icons, images and links.
+     *
+     * @param response the fetched page
+     * @return the extraction
+     * @throws IOException if the body cannot be parsed
+     */
+    PageExtraction parseWithJsoup(FetchResponse response) throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(response.getBody()),
+                response.getCharset(), response.getUrl());
+        String home = homeUrl(response.getUrl());
+        List<String> found = new ArrayList<>();
+        Set<String> logoUrls = new HashSet<>();
+        for (Element icon : doc.select("link[rel][href]")) {
+            String absoluteHref = icon.absUrl("href");
+            if (found.size() < maxImages && !absoluteHref.isEmpty() && LogoClassifier.isIconLink(icon)) {
+                String src = UrlCanonicalizer.canonicalize(absoluteHref);
+                if (logoUrls.add(src)) {
+                    found.add(src);
+                }
+            }
+        }
+        for (Element img : doc.select("img")) {
+            int first = found.size();
+            List<String> candidates = candidates(img.attr("src"), img.attr("data-src"), img.attr("srcset"));
+            for (int i = 0; i < candidates.size() && found.size() < maxImages; i++) {
+                String absoluteSrc = StringUtil.resolve(img.baseUri(), candidates.get(i));
+                if (!absoluteSrc.isEmpty()) {
+                    String src = UrlCanonicalizer.canonicalize(absoluteSrc);
+                    if (found.subList(first, found.size()).contains(src)) {
+                        continue;
+                    }
+                    found.add(src);
+                    long logoStart = System.nanoTime();
+                    if (classifier.isLogo(img, src, home)) {
+                        logoUrls.add(src);
+                    }
+                    logoNanos += System.nanoTime() - logoStart;
+                }
+            }
+        }
+        List<String> hrefs = new ArrayList<>();
+        for (Element link : doc.select("a[href]")) {
+            if (hrefs.size() >= maxLinks) {
+                break;
+            }
+            if (!link.attr("href").trim().isEmpty()) {
+                hrefs.add(link.absUrl("href"));
+            }
+        }
+        return new PageExtraction(found, logoUrls, hrefs);
+    }
+
+    /**
+     * The urls an {@code img} may show, in the order they are tried: {@code src}, then the lazy-loading
+     * {@code data-src}, then every {@code srcset} candidate. Blank values are left out.
+     *
+     * @param src     the {@code src}, or null
+     * @param dataSrc the {@code data-src}, or null
+     * @param srcset  the {@code srcset}, or null
+     * @return the urls as written
+     */
+    static List<String> candidates(String src, String dataSrc, String srcset) {
+        List<String> urls = new ArrayList<>(4);
+        if (src != null && !src.trim().isEmpty()) {
+            urls.add(src);
+        }
+        if (dataSrc != null && !dataSrc.trim().isEmpty()) {
+            urls.add(dataSrc);
+        }
+        if (srcset == null) {
+            return urls;
+        }
+        // "a.jpg 1x, b.jpg 2x": a url runs to the next whitespace and loses trailing commas, the descriptor to the next comma
+        int i = 0;
+        int length = srcset.length();
+        while (i < length) {
+            while (i < length && (Character.isWhitespace(srcset.charAt(i)) || srcset.charAt(i) == ',')) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(srcset.charAt(i))) {
+                i++;
+            }
+            int end = i;
+            while (end > start && srcset.charAt(end - 1) == ',') {
+                end--;
+            }
+            if (end > start) {
+                urls.add(srcset.substring(start, end));
+            }
+            if (end == i) {
+                while (i < length && srcset.charAt(i) != ',') {
+                    i++;
+                }
+            }
+        }
+        return urls;
+    }
+
+    private boolean startTag(int first) throws IOException {
+        token.setLength(0);
+        token.append(toLower(first));
+        int c;
+        while ((c = read()) != -1 && !isWhitespace(c) && c != '/' && c != '>') {
+            token.append(toLower(c));
+        }
+        if (c == -1) {
+            return true;
+        }
+        unread();
+        String tag = "image".contentEquals(token) ? "img" : token.toString();
+        Arrays.fill(attributes, null);
+        int end = readAttributes();
+        if (end == -1) {
+            return true; // a tag cut off by the end of the page is dropped, as browsers do
+        }
+        boolean selfClosing = end == '/';
+
+        switch (tag) {
+            case "img":
+                image();
+                break;
+            case "a":
+                closeOpen("a");
+                if (attributes[HREF] != null && !attributes[HREF].trim().isEmpty() && !linksFull()) {
+                    links.add(resolve(attributes[HREF]));
+                }
+                break;
+            case "link":
+                iconLink();
+                break;
+            case "base":
+                if (!baseSet && attributes[HREF] != null) {
+                    baseSet = true;
+                    String base = resolve(attributes[HREF]);
+                    if (!base.isEmpty()) {
+                        baseUrl = base;
+                    }
+                }
+                break;
+            default:
+                Set<String> closes = IMPLIED_END.get(tag);
+                if (closes != null) {
+                    closeImplied(closes, IMPLIED_END_BOUNDARY.get(tag));
+                }
+        }
+        if (selfClosing || VOID_ELEMENTS.contains(tag)) {
+            return true;
+        }
+        if (RAW_TEXT_ELEMENTS.contains(tag)) {
+            skipRawText(tag);
+            return true;
+        }
+        return push(tag);
+    }
+
+    private boolean endTag() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = read()) != -1 && c != '>' && !isWhitespace(c) && c != '/') {
+            token.append(toLower(c));
+        }
+        if (c != '>' && !skipTo('>')) {
+            return true;
+        }
+        if (token.length() == 0) {
+            return true;
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            if (stack[i].tag.contentEquals(token)) {
+                depth = i;
+                return true;
+            }
+        }
+        return VOID_ELEMENTS.contains(token.toString()) || ++strayEndTags <= MAX_STRAY_END_TAGS;
+    }
+
+    /**
+     * Read the attributes of a tag into their slots.
+     *
+     * @return '>' or '/' for a self-closing tag, or -1 if the page ended inside the tag
+     */
+    private int readAttributes() throws IOException {
+        while (true) {
+            int c = skipWhitespace();
+            if (c == -1 || c == '>') {
+                return c;
+            }
+            if (c == '/') {
+                c = read();
+                if (c == '>' || c == -1) {
+                    return c == '>' ? '/' : -1;
+                }
+                unread();
+                continue;
+            }
+            token.setLength(0);
+            do {
+                token.append(toLower(c));
+            } while ((c = read()) != -1 && !isWhitespace(c) && c != '=' && c != '>' && c != '/');
+            int slot = slot(token);
+            if (isWhitespace(c)) {
+                c = skipWhitespace();
+            }
+            if (c == -1) {
+                return -1;
+            }
+            if (c != '=') {
+                unread();
+                if (slot >= 0 && attributes[slot] == null) {
+                    attributes[slot] = "";
+                }
+                continue;
+            }
+            c = skipWhitespace();
+            if (c == -1) {
+                return -1;
+            }
+            boolean keep = slot >= 0 && attributes[slot] == null;
+            token.setLength(0);
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = read()) != quote) {
+                    if (c == -1) {
+                        return -1;
+                    }
+                    if (keep) {
+                        token.append((char) c);
+                    }
+                }
+            } else {
+                do {
+                    if (keep) {
+                        token.append((char) c);
+                    }
+                } while ((c = read()) != -1 && !isWhitespace(c) && c != '>');
+                if (c == '>') {
+                    unread();
+                }
+            }
+            if (keep) {
+                String value = token.toString();
+                attributes[slot] = value.indexOf('&') >= 0 ? decodeEntities(value) : value;
+            }
+        }
+    }
+
+    private void image() {
+        if (imagesFull()) {
+            return;
+        }
+        List<String> candidates = candidates(attributes[SRC], attributes[DATA_SRC], attributes[SRCSET]);
+        if (candidates.isEmpty()) {
+            return;
+        }
+        long logoStart = System.nanoTime();
+        boolean ancestorKeyword = false;
+        boolean homeLink = false;
+        boolean banner = false;
+        for (int i = depth - 1; i >= 0 && i >= depth - LogoClassifier.MAX_ANCESTORS; i--) {
+            OpenElement ancestor = stack[i];
+            if (ancestor.keyword == null) {
+                ancestor.keyword = classifier.hasKeyword(ancestor.className) || classifier.hasKeyword(ancestor.id);
+            }
+            if (ancestor.homeLink == null) {
+                ancestor.homeLink = ancestor.href != null
+                        && homeUrl.equals(UrlCanonicalizer.canonicalize(StringUtil.resolve(ancestor.hrefBase, ancestor.href)));
+            }
+            ancestorKeyword |= ancestor.keyword;
+            homeLink |= ancestor.homeLink;
+            banner |= "header".equals(ancestor.tag) || "nav".equals(ancestor.tag);
+        }
+        logoNanos += System.nanoTime() - logoStart;
+
+        int first = images.size();
+        for (int i = 0; i < candidates.size() && !imagesFull(); i++) {
+            String absoluteSrc = resolve(candidates.get(i));
+            if (absoluteSrc.isEmpty()) {
+                continue;
+            }
+            String src = UrlCanonicalizer.canonicalize(absoluteSrc);
+            if (images.subList(first, images.size()).contains(src)) {
+                continue;
+            }
+            images.add(src);
+            logoStart = System.nanoTime();
+            if (classifier.isLogo(src, attributes[ALT], attributes[TITLE], attributes[CLASS], attributes[ID],
+                    ancestorKeyword, homeLink, banner)) {
+                logos.add(src);
+            }
+            logoNanos += System.nanoTime() - logoStart;
+        }
+    }
+
+    private void iconLink() {
+        if (attributes[REL] == null || attributes[HREF] == null || imagesFull()
+                || !LogoClassifier.isIconRel(attributes[REL])) {
+            return;
+        }
+        String absoluteHref = resolve(attributes[HREF]);
+        if (!absoluteHref.isEmpty()) {
+            String src = UrlCanonicalizer.canonicalize(absoluteHref);
+            if (logos.add(src)) {
+                icons.add(src);
+            }
+        }
+    }
+
+    private boolean push(String tag) {
+        if (depth == MAX_DEPTH) {
+            return false;
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        OpenElement element = stack[depth];
+        if (element == null) {
+            element = stack[depth] = new OpenElement();
+        }
+        element.tag = tag;
+        element.className = attributes[CLASS];
+        element.id = attributes[ID];
+        element.href = "a".equals(tag) ? attributes[HREF] : null;
+        element.hrefBase = baseUrl;
+        element.keyword = null;
+        element.homeLink = null;
+        depth++;
+        return true;
+    }
+
+    /**
+     * Close an open element of a kind that cannot nest, such as an {@code a} inside an {@code a}.
+     */
+    private void closeOpen(String tag) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (stack[i].tag.equals(tag)) {
+                depth = i;
+                return;
+            }
+        }
+    }
+
+    private void closeImplied(Set<String> closes, Set<String> boundaries) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (closes.contains(tag)) {
+                depth = i;
+                return;
+            }
+            if (boundaries.contains(tag)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skip the contents of a raw-text element up to and including its end tag.
+     */
+    private void skipRawText(String tag) throws IOException {
+        while (skipTo('<')) {
+            int c = read();
+            if (c != '/') {
+                if (c == -1) {
+                    return;
+                }
+                unread();
+                continue;
+            }
+            int matched = 0;
+            while (matched < tag.length() && (c = read()) != -1 && toLower(c) == tag.charAt(matched)) {
+                matched++;
+            }
+            if (matched == tag.length()) {
+                c = read();
+                if (c == '>' || c == '/' || isWhitespace(c)) {
+                    if (c != '>') {
+                        skipTo('>');
+                    }
+                    return;
+                }
+            }
+            if (c == -1) {
+                return;
+            }
+            unread();
+        }
+    }
+
+    /**
+     * Skip a comment, CDATA section, doctype or other {@code <!} declaration.
+     */
+    private void skipMarkupDeclaration() throws IOException {
+        int c = read();
+        if (c == '-') {
+            c = read();
+            if (c == '-') {
+                skipPastRun('-');
+                return;
+            }
+        }
+        if (c == '[' && matches("CDATA[")) {
+            skipPastRun(']');
+        } else if (c != -1 && c != '>') {
+            skipTo('>');
+        }
+    }
+
+    /**
+     * Skip to the end of a comment ({@code -->}) or CDATA section ({@code ]]>}); "<!-->" closes at once.
+     */
+    private void skipPastRun(char closing) throws IOException {
+        int run = closing == '-' ? 2 : 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '>' && run >= 2) {
+                return;
+            }
+            run = c == closing ? run + 1 : 0;
+        }
+    }
+
+    private boolean matches(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (read() != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advance past the next occurrence of a character.
+     *
+     * @return false if the page ended first
+     */
+    private boolean skipTo(char target) throws IOException {
+        while (true) {
+            while (position < limit) {
+                if (buffer[position++] == target) {
+                    return true;
+                }
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Step back over the character just read, which is always still in the buffer.
+     */
+    private void unread() {
+        position--;
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private String resolve(String url) {
+        return StringUtil.resolve(baseUrl, url);
+    }
+
+    private boolean imagesFull() {
+        return icons.size() + images.size() >= maxImages;
+    }
+
+    private boolean linksFull() {
+        return links.size() >= maxLinks;
+    }
+
+    private static int slot(CharSequence name) {
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            if (ATTRIBUTES[i].contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the character references of an attribute value. Only references closed by {@code ;} are
+     * decoded; unknown ones are kept as written.
+     */
+    static String decodeEntities(String value) {
+        StringBuilder decoded = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int end = c == '&' ? value.indexOf(';', i + 2) : -1;
+            String replacement = end < 0 || end - i > 32 ? null : reference(value.substring(i + 1, end));
+            if (replacement == null) {
+                decoded.append(c);
+                i++;
+            } else {
+                decoded.append(replacement);
+                i = end + 1;
+            }
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * The text of a character reference without its {@code &} and {@code ;}, or null if it is not one.
+     */
+    private static String reference(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "quot":
+                return "\"";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "apos":
+                return "'";
+            default:
+        }
+        if (name.charAt(0) != '#') {
+            return Entities.isNamedEntity(name) ? Entities.getByName(name) : null;
+        }
+        try {
+            boolean hex = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X');
+            int codePoint = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+            return Character.isValidCodePoint(codePoint) && codePoint != 0
+                    ? new String(Character.toChars(codePoint)) : "\uFFFD";
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String homeUrl(String pageUrl) throws IOException {
+        return UrlCanonicalizer.canonicalize(new URL(new URL(pageUrl), "/").toString());
+    }
+
+    /**
+     * The length of a byte order mark at the start of a body.
+     */
+    private static int bomLength(byte[] body) {
+        if (body.length >= 3 && (body[0] & 0xff) == 0xef && (body[1] & 0xff) == 0xbb && (body[2] & 0xff) == 0xbf) {
+            return 3;
+        }
+        if (body.length >= 2 && ((body[0] & 0xff) == 0xfe && (body[1] & 0xff) == 0xff
+                || (body[0] & 0xff) == 0xff && (body[1] & 0xff) == 0xfe)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * The charset of a body: its byte order mark, else the Content-Type header, else a {@code <meta>}
+     * charset near the top of the page, else UTF-8.
+     */
+    private static Charset charset(FetchResponse response, int bom) {
+        byte[] body = response.getBody();
+        if (bom == 3) {
+            return StandardCharsets.UTF_8;
+        }
+        if (bom == 2) {
+            return (body[0] & 0xff) == 0xfe ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE;
+        }
+        if (response.getCharset() != null) {
+            return Charset.forName(response.getCharset());
+        }
+        Matcher meta = META_CHARSET.matcher(new String(body, 0, Math.min(body.length, CHARSET_SNIFF_BYTES),
+                StandardCharsets.ISO_8859_1));
+        try {
+            if (meta.find() && Charset.isSupported(meta.group(1))) {
+                return Charset.forName(meta.group(1));
+            }
+        } catch (IllegalArgumentException e) {
+            // an illegal charset name, fall through to the default
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static void impliedEnd(String[] tags, String[] closes, String... boundaries) {
+        for (String tag : tags) {
+            IMPLIED_END.put(tag, new HashSet<>(Arrays.asList(closes)));
+            IMPLIED_END_BOUNDARY.put(tag, new HashSet<>(Arrays.asList(boundaries)));
+        }
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static char toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : (char) c;
+    }
+}
@@ -0,0 +1,143 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Computes 64-bit difference hashes (dHash) of images, so that resized, recompressed or re-encoded
+ * copies of one picture hash to values a few bits apart.
+ * <p>
+ * The image is decoded with source subsampling to roughly {@value #DECODE_EDGE} pixels on its longer
+ * edge, scaled to 9x8 grayscale, and each bit records whether a pixel is brighter than its right
+ * neighbour. Formats {@code ImageIO} cannot read (e.g. WebP) get no hash. Hashing needs the whole
+ * image, so only images of at most {@code -Dimagefinder.dedupe.maxBytes} (default 1MB) are
+ * downloaded for it; larger ones are listed without a hash. Off with
+ * {@code -Dimagefinder.dedupe.perceptual=false}.
+ */
+public class PerceptualHasher {
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    private static final PerceptualHasher INSTANCE = new PerceptualHasher(
+            Boolean.parseBoolean(System.getProperty("imagefinder.dedupe.perceptual", "true")),
+            Long.getLong("imagefinder.dedupe.maxBytes", DEFAULT_MAX_BYTES));
+
+    /**
+     * The longer edge, in pixels, that images are decoded to for hashing.
+     */
+    public static final int DECODE_EDGE = 64;
+
+    private final boolean enabled;
+    private final long maxBytes;
+
+    /**
+     * Instantiates a new Perceptual hasher.
+     *
+     * @param enabled  whether to hash at all
+     * @param maxBytes the largest image downloaded for a hash
+     */
+    public PerceptualHasher(boolean enabled, long maxBytes) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static PerceptualHasher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Is enabled boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets max bytes.
+     *
+     * @return the largest image downloaded for a hash
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Hash encoded image bytes.
+     *
+     * @param bytes the encoded image
+     * @return the hash, or null if the bytes cannot be decoded
+     */
+    public static Long hash(byte[] bytes) {
+        BufferedImage image = decode(bytes, DECODE_EDGE);
+        return image == null ? null : dHash(image);
+    }
+
+    /**
+     * Decode image bytes, skipping source pixels so the result is not much larger than needed.
+     *
+     * @param bytes      the encoded image
+     * @param targetEdge the smallest longer edge, in pixels, the result may have (unless the image is smaller)
+     * @return the image, or null if the bytes cannot be decoded
+     */
+    public static BufferedImage decode(byte[] bytes, int targetEdge) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = in == null ? Collections.<ImageReader>emptyIterator() : ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int edge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, edge / targetEdge);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compute the difference hash of a decoded image.
+     *
+     * @param image the image
+     * @return the hash
+     */
+    public static long dHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, 9, 8, null);
+        } finally {
+            g.dispose();
+        }
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = small.getRaster().getSample(x, y, 0);
+                int right = small.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,208 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-per-task executor whose concurrency is bounded by explicit permits instead of a pool size.
+ * <p>
+ * Submitting never blocks: tasks wait in an unbounded queue and a new thread is started only when a
+ * permit is free, so at most {@code permits} threads exist at a time. On a JDK with virtual threads
+ * (21+) the threads are virtual; otherwise they are short-lived platform threads.
+ */
+public class PermitBoundedExecutor extends AbstractExecutorService {
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Object terminationLock = new Object();
+    private volatile boolean shutdown;
+
+    /**
+     * Instantiates a new Permit bounded executor.
+     *
+     * @param permits       the maximum number of concurrently running tasks
+     * @param preferVirtual use virtual threads when the running JDK supports them
+     */
+    public PermitBoundedExecutor(int permits, boolean preferVirtual) {
+        ThreadFactory virtual = preferVirtual ? virtualThreadFactory() : null;
+        this.threadFactory = virtual != null ? virtual : platformThreadFactory();
+        this.permits = new Semaphore(permits);
+        this.maxPermits = permits;
+    }
+
+    /**
+     * Whether the running JDK provides virtual threads.
+     *
+     * @return the boolean
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    /**
+     * {@code Thread.ofVirtual().name("crawl-vt-", 0).factory()}, looked up reflectively
+     * because the project is compiled for Java 8.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "crawl-vt-", 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "crawl-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            rejected.increment();
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        queue.add(command);
+        drain();
+    }
+
+    /**
+     * Start a thread for each queued task that can get a permit.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                permits.release();
+                continue;
+            }
+            active.incrementAndGet();
+            Thread thread = threadFactory.newThread(() -> {
+                running.add(Thread.currentThread());
+                try {
+                    task.run();
+                } finally {
+                    running.remove(Thread.currentThread());
+                    active.decrementAndGet();
+                    permits.release();
+                    drain();
+                    signalIfTerminated();
+                }
+            });
+            thread.start();
+        }
+    }
+
+    private void signalIfTerminated() {
+        if (isTerminated()) {
+            synchronized (terminationLock) {
+                terminationLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of running tasks.
+     *
+     * @return the active count
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Gets the number of tasks waiting for a permit.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of tasks refused because the executor was shut down.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the permit count.
+     *
+     * @return the max permits
+     */
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        signalIfTerminated();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            pending.add(task);
+        }
+        for (Thread thread : running) {
+            thread.interrupt();
+        }
+        signalIfTerminated();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && active.get() == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+            return true;
+        }
+    }
+}
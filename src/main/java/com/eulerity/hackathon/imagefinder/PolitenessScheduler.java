@@ -0,0 +1,209 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-host politeness scheduler.
+ * <p>
+ * Every host gets its own queue, a lock-free {@link TokenBucket} and a cap on concurrently running
+ * requests. A throttled host never blocks a thread: it arms a timer for the moment its next token is
+ * due and meanwhile other hosts keep dispatching. Limits are set with
+ * {@code -Dimagefinder.host.rate} (requests per second, default {@value #DEFAULT_RATE}),
+ * {@code -Dimagefinder.host.burst} (default {@value #DEFAULT_BURST}) and
+ * {@code -Dimagefinder.host.maxConcurrent} (default {@value #DEFAULT_MAX_CONCURRENT}).
+ */
+public class PolitenessScheduler {
+    private static final int DEFAULT_RATE = 5;
+    private static final int DEFAULT_BURST = 10;
+    private static final int DEFAULT_MAX_CONCURRENT = 4;
+    private static final long IDLE_HOST_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final PolitenessScheduler INSTANCE = new PolitenessScheduler(
+            CrawlingThreadPool.getInstance().getExecutor(),
+            CrawlingThreadPool.getInstance().getScheduler(),
+            Double.parseDouble(System.getProperty("imagefinder.host.rate", String.valueOf(DEFAULT_RATE))),
+            Integer.getInteger("imagefinder.host.burst", DEFAULT_BURST),
+            Integer.getInteger("imagefinder.host.maxConcurrent", DEFAULT_MAX_CONCURRENT));
+
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final int maxConcurrentPerHost;
+    private final ConcurrentHashMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Instantiates a new Politeness scheduler.
+     *
+     * @param executor             runs the tasks
+     * @param timer                wakes throttled hosts up
+     * @param permitsPerSecond     the per-host request rate
+     * @param burst                the per-host burst size
+     * @param maxConcurrentPerHost the per-host concurrency cap
+     */
+    public PolitenessScheduler(Executor executor, ScheduledExecutorService timer,
+                               double permitsPerSecond, int burst, int maxConcurrentPerHost) {
+        this.executor = executor;
+        this.timer = timer;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        timer.scheduleWithFixedDelay(this::sweepIdleHosts, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static PolitenessScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue work against a host. The task runs on the executor once the host has a token and a free
+     * concurrency slot; the slot is held until the future returned by the task completes.
+     *
+     * @param host the host the task will hit
+     * @param task starts the work and returns its completion
+     */
+    public void submit(String host, Supplier<? extends CompletableFuture<?>> task) {
+        while (true) {
+            HostQueue queue = hosts.computeIfAbsent(host, key -> new HostQueue());
+            queue.tasks.add(task);
+            if (!queue.retired) {
+                drain(queue);
+                return;
+            }
+            // raced with the idle sweep: take the task back and retry on a fresh queue
+            if (!queue.tasks.remove(task)) {
+                return; // the sweep already moved it
+            }
+        }
+    }
+
+    /**
+     * Take back a task that has not started yet.
+     *
+     * @param host the host the task was submitted for
+     * @param task the task
+     * @return true if the task was still queued and will not run
+     */
+    public boolean withdraw(String host, Supplier<? extends CompletableFuture<?>> task) {
+        HostQueue queue = hosts.get(host);
+        return queue != null && queue.tasks.remove(task);
+    }
+
+    private void drain(HostQueue queue) {
+        while (!queue.tasks.isEmpty()) {
+            if (queue.active.incrementAndGet() > maxConcurrentPerHost) {
+                // a running task will drain again when it finishes
+                queue.active.decrementAndGet();
+                return;
+            }
+            long now = System.nanoTime();
+            if (!queue.bucket.tryAcquire(now)) {
+                queue.active.decrementAndGet();
+                throttled.increment();
+                arm(queue, queue.bucket.nanosUntilAvailable(now));
+                return;
+            }
+            Supplier<? extends CompletableFuture<?>> task = queue.tasks.poll();
+            if (task == null) {
+                queue.active.decrementAndGet();
+                continue; // token is lost, which only makes us slightly more polite
+            }
+            queue.lastUsedNanos = now;
+            executor.execute(() -> run(queue, task));
+        }
+    }
+
+    private void run(HostQueue queue, Supplier<? extends CompletableFuture<?>> task) {
+        CompletableFuture<?> done;
+        try {
+            done = task.get();
+        } catch (RuntimeException e) {
+            Logger.getInstance().error("[Politeness] Task failed: " + e.getMessage());
+            done = CompletableFuture.completedFuture(null);
+        }
+        done.whenComplete((result, e) -> {
+            queue.active.decrementAndGet();
+            drain(queue);
+        });
+    }
+
+    private void arm(HostQueue queue, long delayNanos) {
+        if (queue.timerArmed.compareAndSet(false, true)) {
+            timer.schedule(() -> {
+                queue.timerArmed.set(false);
+                drain(queue);
+            }, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void sweepIdleHosts() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, HostQueue> entry : hosts.entrySet()) {
+            HostQueue queue = entry.getValue();
+            if (queue.tasks.isEmpty() && queue.active.get() == 0 && !queue.timerArmed.get()
+                    && now - queue.lastUsedNanos > IDLE_HOST_NANOS && queue.bucket.isFull(now)) {
+                queue.retired = true;
+                hosts.remove(entry.getKey(), queue);
+                Supplier<? extends CompletableFuture<?>> late;
+                while ((late = queue.tasks.poll()) != null) {
+                    submit(entry.getKey(), late);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of hosts with scheduler state.
+     *
+     * @return the host count
+     */
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Gets the number of times a host had queued work but no token.
+     *
+     * @return the throttled count
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Gets the number of tasks waiting across all hosts.
+     *
+     * @return the queued count
+     */
+    public int getQueuedCount() {
+        int total = 0;
+        for (HostQueue queue : hosts.values()) {
+            total += queue.tasks.size();
+        }
+        return total;
+    }
+
+    private final class HostQueue {
+        private final ConcurrentLinkedQueue<Supplier<? extends CompletableFuture<?>>> tasks = new ConcurrentLinkedQueue<>();
+        private final TokenBucket bucket = new TokenBucket(permitsPerSecond, burst);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicBoolean timerArmed = new AtomicBoolean();
+        private volatile boolean retired;
+        private volatile long lastUsedNanos = System.nanoTime();
+    }
+}
@@ -1,48 +1,223 @@
 package com.eulerity.hackathon.imagefinder;
 
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The type Rate limiter.
+ * <p>
+ * Built on a lock-free {@link TokenBucket}, so refill is exact to the nanosecond. Callers that cannot
+ * get a token right away wait in FIFO order: {@link #acquire(long, TimeUnit)} parks the thread and
+ * {@link #acquireAsync()} returns a future, and neither lets later callers barge ahead. Waiters are
+ * woken by a single shared timer thread at the moment the next token is due.
  */
 public class RateLimiter {
-    private final int bucketCapacity;
-    private final long leakRateMs;
-    private long lastLeakTime;
-    private AtomicInteger bucketSize = new AtomicInteger(0);
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "rate-limiter-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final TokenBucket bucket;
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private final AtomicBoolean timerArmed = new AtomicBoolean();
+    private final LongAdder waits = new LongAdder();
 
     /**
      * RateLimiter constructor
      *
-     * @param bucketCapacity
-     * @param leakRateMs
+     * @param bucketCapacity the maximum burst
+     * @param leakRateMs     milliseconds per token
+     */
+    public RateLimiter(int bucketCapacity, long leakRateMs) {
+        this(new TokenBucket(1000.0 / leakRateMs, bucketCapacity));
+    }
+
+    private RateLimiter(TokenBucket bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Create a limiter with a sub-millisecond refill interval.
+     *
+     * @param permitsPerSecond the refill rate
+     * @param bucketCapacity   the maximum burst
+     * @return the rate limiter
+     */
+    public static RateLimiter perSecond(double permitsPerSecond, int bucketCapacity) {
+        return new RateLimiter(new TokenBucket(permitsPerSecond, bucketCapacity));
+    }
+
+    /**
+     * Take a token if one is available now and nobody is queued ahead.
+     *
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire() {
+        return waiters.isEmpty() && bucket.tryAcquire();
+    }
+
+    /**
+     * Wait up to the timeout for a token.
+     *
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @return true if a token was taken, false on timeout
+     * @throws InterruptedException if interrupted while waiting; no token is taken
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryAcquire()) {
+            return true;
+        }
+        Waiter waiter = enqueue();
+        try {
+            waiter.future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return !waiter.cancel();
+        } catch (InterruptedException e) {
+            if (!waiter.cancel()) {
+                // granted while we were being interrupted: hand the token to the next waiter
+                bucket.refund();
+                drain();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get a future that completes once a token has been taken for the caller.
+     * Cancelling the future gives up the place in the queue.
+     *
+     * @return the future
      */
-    public RateLimiter( int bucketCapacity, long leakRateMs) {
-        this.bucketCapacity = bucketCapacity;
-        this.leakRateMs = leakRateMs;
-        this.lastLeakTime = System.currentTimeMillis();
+    public CompletableFuture<Void> acquireAsync() {
+        if (tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return enqueue().future;
     }
 
     /**
      * Allow request token bucket boolean.
      *
      * @return the boolean
+     * @deprecated use {@link #tryAcquire()}
      */
-    public synchronized boolean allowRequestTokenBucket() {
-        long now = System.currentTimeMillis();
+    @Deprecated
+    public boolean allowRequestTokenBucket() {
+        return tryAcquire();
+    }
 
-        int newTokens = (int) ((now - lastLeakTime) / leakRateMs);
-        lastLeakTime = now;
+    /**
+     * Gets the number of queued waiters.
+     *
+     * @return the waiter count
+     */
+    public int getWaiterCount() {
+        return waiters.size();
+    }
 
-        bucketSize.getAndUpdate(size -> Math.min(bucketCapacity, size + newTokens));
+    /**
+     * Gets the number of callers that had to queue for a token.
+     *
+     * @return the wait count
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
 
-        if (bucketSize.get() > 0) {
-            bucketSize.decrementAndGet();
-            return true;
+    private Waiter enqueue() {
+        waits.increment();
+        Waiter waiter = new Waiter();
+        waiters.add(waiter);
+        drain();
+        return waiter;
+    }
+
+    /**
+     * Hand tokens to waiters in arrival order. Only one thread drains at a time; concurrent
+     * calls just make that thread loop once more.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
         }
+        do {
+            boolean holdingToken = false;
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                if (head.state.get() != WAITING) {
+                    waiters.poll();
+                    continue;
+                }
+                if (!holdingToken) {
+                    long now = System.nanoTime();
+                    if (!bucket.tryAcquire(now)) {
+                        armTimer(bucket.nanosUntilAvailable(now));
+                        break;
+                    }
+                    holdingToken = true;
+                }
+                waiters.poll();
+                if (head.grant()) {
+                    holdingToken = false;
+                }
+                // otherwise the waiter was cancelled meanwhile: keep the token for the next one
+            }
+            if (holdingToken) {
+                bucket.refund();
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
 
-        return false;
+    private void armTimer(long delayNanos) {
+        if (timerArmed.compareAndSet(false, true)) {
+            TIMER.schedule(() -> {
+                timerArmed.set(false);
+                drain();
+            }, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final class Waiter {
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final CompletableFuture<Void> future = new CompletableFuture<Void>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return Waiter.this.cancel() && super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        boolean grant() {
+            if (state.compareAndSet(WAITING, GRANTED)) {
+                future.complete(null);
+                return true;
+            }
+            return false;
+        }
+
+        boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            drain(); // unlinks the waiter, so tryAcquire is not blocked behind it
+            return true;
+        }
     }
 }
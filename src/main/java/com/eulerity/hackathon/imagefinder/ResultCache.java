@@ -0,0 +1,318 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of crawl jobs keyed by start url.
+ * <p>
+ * Entries are kept in access order and evicted least-recently-used first once there are more than
+ * {@code -Dimagefinder.cache.maxEntries} (default {@value #DEFAULT_MAX_ENTRIES}) of them or their
+ * results hold more than {@code -Dimagefinder.cache.maxBytes} (default 64MB). Finished jobs also
+ * expire {@code -Dimagefinder.cache.ttlSeconds} (default {@value #DEFAULT_TTL_SECONDS}) after they
+ * complete; a single sweeper task on the crawl scheduler removes them. Running jobs are never evicted.
+ */
+public class ResultCache {
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_TTL_SECONDS = 600;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes; // guarded by jobs
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Instantiates a new Result cache.
+     *
+     * @param maxEntries the maximum number of jobs
+     * @param maxBytes   the maximum estimated bytes held by finished jobs
+     * @param ttlNanos   how long a finished job is kept
+     * @param clock      the {@code System.nanoTime()} source
+     */
+    ResultCache(int maxEntries, long maxBytes, long ttlNanos, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets instance. The first call starts the expiry sweeper.
+     *
+     * @return the instance
+     */
+    public static ResultCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final ResultCache INSTANCE = new ResultCache(
+                Integer.getInteger("imagefinder.cache.maxEntries", DEFAULT_MAX_ENTRIES),
+                Long.getLong("imagefinder.cache.maxBytes", DEFAULT_MAX_BYTES),
+                TimeUnit.SECONDS.toNanos(Long.getLong("imagefinder.cache.ttlSeconds", DEFAULT_TTL_SECONDS)),
+                System::nanoTime).startSweeper(CrawlingThreadPool.getInstance().getScheduler());
+    }
+
+    /**
+     * Run {@link #sweep()} periodically, at a quarter of the ttl but at least every second.
+     *
+     * @param scheduler the scheduler
+     * @return this cache
+     */
+    ResultCache startSweeper(ScheduledExecutorService scheduler) {
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), ttlNanos / 4);
+        scheduler.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.NANOSECONDS);
+        return this;
+    }
+
+    /**
+     * Look a job up, counting a hit or a miss. Expired jobs are dropped and count as a miss.
+     *
+     * @param url the start url
+     * @return the job, or null
+     */
+    public Job get(String url) {
+        synchronized (jobs) {
+            Job job = jobs.get(url);
+            if (job != null && job.isExpired(clock.getAsLong())) {
+                removeLocked(url, job);
+                expirations.increment();
+                job = null;
+            }
+            if (job == null) {
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            return job;
+        }
+    }
+
+    /**
+     * Cache a job, replacing any previous job for the url. Its size is accounted once it finishes.
+     *
+     * @param url    the start url
+     * @param future the job's result
+     * @param log    the job's result log, or null if the result is all there is
+     * @return the job
+     */
+    public Job put(String url, CompletableFuture<CrawlResult> future, ResultLog log) {
+        return putIfAbsent(url, future, log, previous -> true);
+    }
+
+    /**
+     * Cache a job unless the url already has one to join: the check and the insert are one step, so of
+     * several requests racing to start the same url exactly one wins.
+     *
+     * @param url     the start url
+     * @param future  the new job's result
+     * @param log     the new job's result log, or null if the result is all there is
+     * @param replace whether a cached job should be replaced instead of joined
+     * @return the job cached for the url afterwards: the new one if it won, the existing one otherwise
+     */
+    public Job putIfAbsent(String url, CompletableFuture<CrawlResult> future, ResultLog log, Predicate<Job> replace) {
+        Job job = new Job(future, log);
+        synchronized (jobs) {
+            Job previous = jobs.get(url);
+            if (previous != null && previous.isExpired(clock.getAsLong())) {
+                removeLocked(url, previous);
+                expirations.increment();
+                previous = null;
+            }
+            if (previous != null && !replace.test(previous)) {
+                return previous;
+            }
+            jobs.put(url, job);
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            evictLocked();
+        }
+        future.whenComplete((result, e) -> finished(url, job));
+        return job;
+    }
+
+    /**
+     * Remove a job, if it is still the one cached for the url.
+     *
+     * @param url the start url
+     * @param job the job
+     */
+    public void remove(String url, Job job) {
+        synchronized (jobs) {
+            if (jobs.get(url) == job) {
+                removeLocked(url, job);
+            }
+        }
+    }
+
+    /**
+     * Remove a job.
+     *
+     * @param url the start url
+     */
+    public void remove(String url) {
+        synchronized (jobs) {
+            Job job = jobs.get(url);
+            if (job != null) {
+                removeLocked(url, job);
+            }
+        }
+    }
+
+    private void finished(String url, Job job) {
+        synchronized (jobs) {
+            job.finishedNanos = clock.getAsLong();
+            job.done = true;
+            if (jobs.get(url) == job) {
+                job.bytes = job.log != null ? job.log.estimateBytes() : 0;
+                bytes += job.bytes;
+                evictLocked();
+            }
+        }
+    }
+
+    /**
+     * Drop expired jobs.
+     */
+    public void sweep() {
+        long now = clock.getAsLong();
+        synchronized (jobs) {
+            Iterator<Map.Entry<String, Job>> it = jobs.entrySet().iterator();
+            while (it.hasNext()) {
+                Job job = it.next().getValue();
+                if (job.isExpired(now)) {
+                    it.remove();
+                    bytes -= job.bytes;
+                    expirations.increment();
+                }
+            }
+        }
+    }
+
+    private void evictLocked() {
+        if (jobs.size() <= maxEntries && bytes <= maxBytes) {
+            return;
+        }
+        Iterator<Map.Entry<String, Job>> it = jobs.entrySet().iterator(); // least recently used first
+        while (it.hasNext() && (jobs.size() > maxEntries || bytes > maxBytes)) {
+            Job job = it.next().getValue();
+            if (job.done) {
+                it.remove();
+                bytes -= job.bytes;
+                evictions.increment();
+            }
+        }
+    }
+
+    private void removeLocked(String url, Job job) {
+        jobs.remove(url);
+        bytes -= job.bytes;
+    }
+
+    /**
+     * Gets the number of cached jobs.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (jobs) {
+            return jobs.size();
+        }
+    }
+
+    /**
+     * Gets the estimated bytes held by finished jobs.
+     *
+     * @return the bytes
+     */
+    public long getBytes() {
+        synchronized (jobs) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Gets hits.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets misses.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of jobs evicted to stay within the bounds.
+     *
+     * @return the evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of jobs dropped because their ttl ran out.
+     *
+     * @return the expirations
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * A cached crawl job.
+     */
+    public final class Job {
+        private final CompletableFuture<CrawlResult> future;
+        private final ResultLog log;
+        private volatile boolean done;
+        private long finishedNanos;
+        private long bytes;
+
+        Job(CompletableFuture<CrawlResult> future, ResultLog log) {
+            this.future = future;
+            this.log = log;
+        }
+
+        private boolean isExpired(long now) {
+            return done && now - finishedNanos > ttlNanos;
+        }
+
+        /**
+         * Gets future.
+         *
+         * @return the result
+         */
+        public CompletableFuture<CrawlResult> getFuture() { return future; }
+
+        /**
+         * Gets log.
+         *
+         * @return the result log, or null
+         */
+        public ResultLog getLog() { return log; }
+    }
+}
@@ -0,0 +1,267 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Append-only, sequence-numbered log of the images accepted by one crawl job.
+ * <p>
+ * Entry {@code n} (counting from 0) has sequence number {@code n + 1}, so a cursor is simply the
+ * number of entries a client has already seen and {@code 0} means "from the start". Entries live in
+ * fixed-size chunks that are never moved or copied once written, which lets readers walk them without
+ * a lock: an append fills its slot first and only then publishes the new size through a volatile write.
+ * <p>
+ * Each entry keeps what validation learned about the image and also counts the near-duplicate
+ * variants folded into it; that count keeps growing after the entry is appended, so a reader sees
+ * whatever it is at the time of the read. A read lists every image under {@code images}, logos
+ * included, and the logos once more under {@code logos}, as crawl results always have.
+ * <p>
+ * {@link CrawlListener Listeners} hear of each entry as it is appended, so clients can follow a job
+ * without polling.
+ */
+public class ResultLog {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile String[][] chunks = new String[1][CHUNK_SIZE];
+    private volatile boolean[][] logoFlags = new boolean[1][CHUNK_SIZE];
+    private volatile ImageInfo[][] infos = new ImageInfo[1][CHUNK_SIZE];
+    private volatile AtomicIntegerArray[] variantCounts = {new AtomicIntegerArray(CHUNK_SIZE)};
+    private volatile int size;
+    private int logoCount;
+    private volatile long urlChars;
+    private final List<CrawlListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Append an accepted image about which nothing else is known.
+     *
+     * @param imageUrl the image url
+     * @param logo     whether the image is a logo
+     * @return the sequence number of the new entry
+     */
+    public long append(String imageUrl, boolean logo) {
+        return append(imageUrl, logo, null);
+    }
+
+    /**
+     * Append an accepted image.
+     *
+     * @param imageUrl the image url
+     * @param logo     whether the image is a logo
+     * @param info     what validation found out about it, or null
+     * @return the sequence number of the new entry
+     */
+    public long append(String imageUrl, boolean logo, ImageInfo info) {
+        long sequence = write(imageUrl, logo, info);
+        for (CrawlListener listener : listeners) {
+            listener.onImage(imageUrl, logo);
+        }
+        return sequence;
+    }
+
+    private synchronized long write(String imageUrl, boolean logo, ImageInfo info) {
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            String[][] grownChunks = new String[chunk * 2][];
+            boolean[][] grownFlags = new boolean[chunk * 2][];
+            ImageInfo[][] grownInfos = new ImageInfo[chunk * 2][];
+            AtomicIntegerArray[] grownCounts = new AtomicIntegerArray[chunk * 2];
+            System.arraycopy(chunks, 0, grownChunks, 0, chunk);
+            System.arraycopy(logoFlags, 0, grownFlags, 0, chunk);
+            System.arraycopy(infos, 0, grownInfos, 0, chunk);
+            System.arraycopy(variantCounts, 0, grownCounts, 0, chunk);
+            grownChunks[chunk] = new String[CHUNK_SIZE];
+            grownFlags[chunk] = new boolean[CHUNK_SIZE];
+            grownInfos[chunk] = new ImageInfo[CHUNK_SIZE];
+            grownCounts[chunk] = new AtomicIntegerArray(CHUNK_SIZE);
+            chunks = grownChunks;
+            logoFlags = grownFlags;
+            infos = grownInfos;
+            variantCounts = grownCounts;
+        } else if (chunks[chunk] == null) {
+            chunks[chunk] = new String[CHUNK_SIZE];
+            logoFlags[chunk] = new boolean[CHUNK_SIZE];
+            infos[chunk] = new ImageInfo[CHUNK_SIZE];
+            variantCounts[chunk] = new AtomicIntegerArray(CHUNK_SIZE);
+        }
+        chunks[chunk][index & CHUNK_MASK] = imageUrl;
+        logoFlags[chunk][index & CHUNK_MASK] = logo;
+        infos[chunk][index & CHUNK_MASK] = info;
+        if (logo) {
+            logoCount++;
+        }
+        urlChars += imageUrl.length();
+        size = index + 1; // publishes the slot written above
+        return size;
+    }
+
+    /**
+     * Add a listener for entries appended from now on.
+     *
+     * @param listener the listener
+     */
+    public void addListener(CrawlListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(CrawlListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Count one more near-duplicate variant of an entry.
+     *
+     * @param sequence the sequence number of the entry the variant was folded into
+     * @return the entry's cluster size, counting the entry itself
+     */
+    public int addVariant(long sequence) {
+        int index = checkedIndex(sequence);
+        return variantCounts[index >>> CHUNK_SHIFT].incrementAndGet(index & CHUNK_MASK) + 1;
+    }
+
+    /**
+     * Gets the url of an entry.
+     *
+     * @param sequence the sequence number of the entry
+     * @return the image url
+     */
+    public String urlAt(long sequence) {
+        int index = checkedIndex(sequence);
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private int checkedIndex(long sequence) {
+        if (sequence < 1 || sequence > size) {
+            throw new IndexOutOfBoundsException("no entry " + sequence + " in a log of " + size);
+        }
+        return (int) sequence - 1;
+    }
+
+    /**
+     * Read every entry appended after the cursor.
+     *
+     * @param since the last sequence number the caller has seen, 0 for everything
+     * @return the entries and the cursor to pass next time
+     */
+    public Slice read(long since) {
+        return read(since, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read at most {@code limit} entries appended after the cursor.
+     *
+     * @param since the last sequence number the caller has seen, 0 for everything
+     * @param limit the maximum number of entries to return
+     * @return the entries and the cursor to pass next time
+     */
+    public Slice read(long since, int limit) {
+        int end = size; // volatile read: every slot below it is fully written
+        int start = (int) Math.max(0, Math.min(since, end));
+        end = (int) Math.min(end, (long) start + Math.max(0, limit));
+        String[][] chunkView = chunks;
+        boolean[][] flagView = logoFlags;
+        ImageInfo[][] infoView = infos;
+        AtomicIntegerArray[] countView = variantCounts;
+        List<String> images = new ArrayList<>();
+        List<String> logos = new ArrayList<>();
+        List<ImageMetadata> metadata = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            int chunk = i >>> CHUNK_SHIFT;
+            int slot = i & CHUNK_MASK;
+            String imageUrl = chunkView[chunk][slot];
+            boolean logo = flagView[chunk][slot];
+            images.add(imageUrl);
+            if (logo) {
+                logos.add(imageUrl);
+            }
+            metadata.add(new ImageMetadata(imageUrl, logo, infoView[chunk][slot], countView[chunk].get(slot) + 1));
+        }
+        return new Slice(images, logos, metadata, end);
+    }
+
+    /**
+     * Gets the number of entries, which is also the sequence number of the latest one.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a rough estimate of the heap held by the log: the url strings plus the chunk arrays.
+     *
+     * @return the estimated bytes
+     */
+    public long estimateBytes() {
+        long entries = size;
+        long chunkCount = (entries + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        // ~40 bytes of String and char[] headers per url, 2 bytes per char, ~40 more for the ImageInfo;
+        // two references, a flag and a count per slot
+        return urlChars * 2 + entries * 80 + chunkCount * CHUNK_SIZE * 13;
+    }
+
+    /**
+     * Gets the number of logo entries.
+     *
+     * @return the logo count
+     */
+    public synchronized int getLogoCount() {
+        return logoCount;
+    }
+
+    /**
+     * A run of consecutive log entries.
+     */
+    public static final class Slice {
+        private final List<String> images;
+        private final List<String> logos;
+        private final List<ImageMetadata> metadata;
+        private final long cursor;
+
+        Slice(List<String> images, List<String> logos, List<ImageMetadata> metadata, long cursor) {
+            this.images = Collections.unmodifiableList(images);
+            this.logos = Collections.unmodifiableList(logos);
+            this.metadata = Collections.unmodifiableList(metadata);
+            this.cursor = cursor;
+        }
+
+        /**
+         * Gets images.
+         *
+         * @return every image, logos included
+         */
+        public List<String> getImages() { return images; }
+
+        /**
+         * Gets logos.
+         *
+         * @return the logos
+         */
+        public List<String> getLogos() { return logos; }
+
+        /**
+         * Gets metadata.
+         *
+         * @return every entry of the slice, images and logos, in log order
+         */
+        public List<ImageMetadata> getMetadata() { return metadata; }
+
+        /**
+         * Gets cursor.
+         *
+         * @return the sequence number of the last entry in the slice
+         */
+        public long getCursor() { return cursor; }
+    }
+}
@@ -0,0 +1,206 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared per-host robots.txt cache.
+ * <p>
+ * Each host's robots.txt is fetched once, compiled into {@link RobotsRules} and kept for
+ * {@link #TTL_MS}. Failed fetches are cached as allow-all for the shorter {@link #NEGATIVE_TTL_MS},
+ * so an unreachable robots.txt does not cost a round trip per page either.
+ * Concurrent misses for the same host share a single fetch, made through the crawl's {@link Fetcher},
+ * so with the async fetcher a page waiting for its host's robots.txt holds no thread.
+ * At most {@code -Dimagefinder.robots.maxHosts} (default {@value #DEFAULT_MAX_HOSTS}) hosts are kept,
+ * least recently used evicted first.
+ */
+public class RobotsCache {
+    private static final int DEFAULT_MAX_HOSTS = 10_000;
+    private static final RobotsCache INSTANCE = new RobotsCache(Fetcher.getDefault(),
+            Integer.getInteger("imagefinder.robots.maxHosts", DEFAULT_MAX_HOSTS));
+
+    /**
+     * The user-agent token matched against robots.txt groups.
+     */
+    public static final String AGENT_TOKEN = "imagefinder";
+    private static final long TTL_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long NEGATIVE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_ROBOTS_BYTES = 512 * 1024;
+    private static final int TIMEOUT_MS = 5000;
+
+    private final Fetcher fetcher;
+    private final LinkedHashMap<String, Entry> cache; // guarded by itself, least recently used first
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Instantiates a new Robots cache.
+     *
+     * @param fetcher  fetches robots.txt
+     * @param maxHosts the maximum number of hosts kept
+     */
+    RobotsCache(Fetcher fetcher, int maxHosts) {
+        this.fetcher = fetcher;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxHosts;
+            }
+        };
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static RobotsCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Check whether the url may be crawled according to its host's robots.txt.
+     *
+     * @param url the url
+     * @return true if allowed (or if the url cannot be parsed)
+     */
+    public boolean isAllowed(String url) {
+        return isAllowedAsync(url).join();
+    }
+
+    /**
+     * Check whether the url may be crawled, without blocking on a robots.txt fetch.
+     *
+     * @param url the url
+     * @return a future of true if allowed (or if the url cannot be parsed)
+     */
+    public CompletableFuture<Boolean> isAllowedAsync(String url) {
+        URL parsed;
+        try {
+            parsed = new URL(url);
+        } catch (MalformedURLException e) {
+            return CompletableFuture.completedFuture(true);
+        }
+        String path = parsed.getFile();
+        return getRulesAsync(parsed).thenApply(rules -> rules.isAllowed(path.isEmpty() ? "/" : path));
+    }
+
+    /**
+     * Gets the compiled rules for the url's host, fetching robots.txt on a miss.
+     *
+     * @param url the url
+     * @return the rules
+     */
+    public RobotsRules getRules(URL url) {
+        return getRulesAsync(url).join();
+    }
+
+    /**
+     * Gets the compiled rules for the url's host, fetching robots.txt on a miss.
+     *
+     * @param url the url
+     * @return a future of the rules; it never fails
+     */
+    public CompletableFuture<RobotsRules> getRulesAsync(URL url) {
+        String hostKey = url.getProtocol() + "://" + url.getAuthority();
+        long now = System.currentTimeMillis();
+
+        Entry fresh;
+        synchronized (cache) {
+            Entry entry = cache.get(hostKey);
+            if (entry != null && !entry.isExpired(now)) {
+                // cached, or another thread is already fetching this host
+                hits.incrementAndGet();
+                return entry.rules;
+            }
+            fresh = new Entry();
+            cache.put(hostKey, fresh);
+        }
+
+        misses.incrementAndGet();
+        fetch(hostKey, fresh);
+        return fresh.rules;
+    }
+
+    private void fetch(String hostKey, Entry entry) {
+        CompletableFuture<FetchResponse> response;
+        try {
+            response = fetcher.fetch(hostKey + "/robots.txt", Collections.<String, String>emptyMap(),
+                    MAX_ROBOTS_BYTES, TIMEOUT_MS);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        response.whenComplete((result, e) -> {
+            RobotsRules rules;
+            long ttl = TTL_MS;
+            if (e != null) {
+                rules = RobotsRules.ALLOW_ALL;
+                ttl = NEGATIVE_TTL_MS;
+            } else if (result.isSuccessful()) {
+                rules = RobotsRules.parse(new String(result.getBody(), StandardCharsets.UTF_8), AGENT_TOKEN);
+            } else {
+                rules = RobotsRules.ALLOW_ALL;
+                if (result.getStatusCode() >= 500) {
+                    ttl = NEGATIVE_TTL_MS;
+                }
+            }
+            entry.expiresAt = System.currentTimeMillis() + ttl;
+            entry.rules.complete(rules);
+        });
+    }
+
+    /**
+     * Gets the number of lookups served from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that fetched robots.txt.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of cached hosts.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Drop all cached entries.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE; // not expired while the fetch is in flight
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
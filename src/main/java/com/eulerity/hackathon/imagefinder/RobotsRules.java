@@ -0,0 +1,188 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiled robots.txt rules for a single host.
+ * <p>
+ * Only the group(s) naming our product token are kept, or the {@code *} group(s) if none does, and
+ * each Allow/Disallow line is compiled once into a prefix or wildcard matcher. A group of ours with
+ * no rules allows everything.
+ * Matching follows RFC 9309: the longest matching rule wins and Allow wins a tie.
+ */
+public class RobotsRules {
+    /**
+     * Rules that allow everything (missing robots.txt, 4xx, network errors).
+     */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(Collections.<Rule>emptyList());
+
+    private final List<Rule> rules;
+
+    private RobotsRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Parse robots.txt content for the given user-agent token.
+     *
+     * @param content    the robots.txt body
+     * @param agentToken our product token, e.g. "imagefinder"
+     * @return the compiled rules
+     */
+    public static RobotsRules parse(String content, String agentToken) {
+        if (content == null || content.isEmpty()) {
+            return ALLOW_ALL;
+        }
+        String token = agentToken.toLowerCase(Locale.ROOT);
+
+        List<Rule> specific = new ArrayList<>();
+        List<Rule> wildcard = new ArrayList<>();
+        boolean agentGroupFound = false;
+        boolean groupMatchesAgent = false;
+        boolean groupMatchesStar = false;
+        boolean inAgentLines = false;
+
+        for (String rawLine : content.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (field.equals("user-agent")) {
+                if (!inAgentLines) {
+                    // a user-agent line after rules starts a new group
+                    groupMatchesAgent = false;
+                    groupMatchesStar = false;
+                    inAgentLines = true;
+                }
+                String agent = productToken(value);
+                if (agent.equals("*")) {
+                    groupMatchesStar = true;
+                } else if (agent.equals(token)) {
+                    groupMatchesAgent = true;
+                    agentGroupFound = true;
+                }
+            } else if (field.equals("allow") || field.equals("disallow")) {
+                inAgentLines = false;
+                if (value.isEmpty()) {
+                    continue; // "Disallow:" with no path allows everything
+                }
+                Rule rule = new Rule(value, field.equals("allow"));
+                if (groupMatchesAgent) {
+                    specific.add(rule);
+                }
+                if (groupMatchesStar) {
+                    wildcard.add(rule);
+                }
+            } else {
+                // sitemap, crawl-delay, ... do not close the user-agent list
+                inAgentLines = false;
+            }
+        }
+
+        List<Rule> selected = agentGroupFound ? specific : wildcard;
+        if (selected.isEmpty()) {
+            return ALLOW_ALL;
+        }
+        // longest pattern first, Allow before Disallow on equal length: first match wins
+        selected.sort((a, b) -> a.length != b.length
+                ? Integer.compare(b.length, a.length)
+                : Boolean.compare(b.allow, a.allow));
+        return new RobotsRules(Collections.unmodifiableList(selected));
+    }
+
+    /**
+     * The product token of a user-agent line, e.g. "imagefinder" for "ImageFinder/1.0".
+     */
+    private static String productToken(String value) {
+        int end = 0;
+        while (end < value.length() && value.charAt(end) != '/' && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Check whether the path (including query string) may be fetched.
+     *
+     * @param pathAndQuery the path and query, e.g. "/a/b?c=d"
+     * @return true if allowed
+     */
+    public boolean isAllowed(String pathAndQuery) {
+        String path = pathAndQuery == null || pathAndQuery.isEmpty() ? "/" : pathAndQuery;
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of compiled rules.
+     *
+     * @return the rule count
+     */
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * A single compiled Allow/Disallow line.
+     */
+    private static final class Rule {
+        private final boolean allow;
+        private final int length;
+        private final String prefix;
+        private final String[] segments;
+        private final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.allow = allow;
+            this.length = pattern.length();
+            boolean endAnchor = pattern.endsWith("$");
+            String body = endAnchor ? pattern.substring(0, pattern.length() - 1) : pattern;
+            if (body.indexOf('*') < 0 && !endAnchor) {
+                this.prefix = body;
+                this.segments = null;
+            } else {
+                this.prefix = null;
+                this.segments = body.split("\\*", -1);
+            }
+            this.anchored = endAnchor;
+        }
+
+        boolean matches(String path) {
+            if (prefix != null) {
+                return path.startsWith(prefix);
+            }
+            if (!path.startsWith(segments[0])) {
+                return false;
+            }
+            int pos = segments[0].length();
+            int last = segments.length - 1;
+            for (int i = 1; i < last; i++) {
+                int found = path.indexOf(segments[i], pos);
+                if (found < 0) {
+                    return false;
+                }
+                pos = found + segments[i].length();
+            }
+            if (last == 0) {
+                return !anchored || pos == path.length();
+            }
+            String tail = segments[last];
+            if (anchored) {
+                return path.length() - tail.length() >= pos && path.endsWith(tail);
+            }
+            return path.indexOf(tail, pos) >= 0;
+        }
+    }
+}
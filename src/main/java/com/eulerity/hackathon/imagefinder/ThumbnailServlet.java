@@ -0,0 +1,61 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves thumbnails from the {@link ThumbnailStore}: {@code GET /thumbnail?url=<image url>}.
+ * <p>
+ * A file's name is the hash of the picture it shows, so it doubles as a strong ETag and the response
+ * may be cached for a day. Without a {@code url} the servlet answers 204 when thumbnails are enabled and
+ * 404 when they are not, which lets the UI decide once whether to ask for them at all.
+ */
+@WebServlet(
+        name = "Thumbnails",
+        urlPatterns = {"/thumbnail"}
+)
+public class ThumbnailServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final long MAX_AGE_SECONDS = 24 * 60 * 60;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ThumbnailStore thumbnails = ThumbnailStore.getInstance();
+        String url = request.getParameter("url");
+        if (url == null || url.isEmpty()) {
+            response.setStatus(thumbnails.isEnabled() ? HttpServletResponse.SC_NO_CONTENT : HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = thumbnails.isEnabled() ? thumbnails.find(url) : null;
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String fileName = file.getFileName().toString();
+        String etag = "\"" + fileName.substring(0, fileName.indexOf('.')) + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE_SECONDS);
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // evicted between find and read
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setContentType(fileName.endsWith(".png") ? "image/png" : "image/jpeg");
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+}
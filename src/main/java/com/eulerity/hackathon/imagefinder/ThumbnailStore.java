@@ -0,0 +1,272 @@
+package com.eulerity.hackathon.imagefinder;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of thumbnails, addressed by the SHA-256 of the original image so that the same picture
+ * found under several urls is scaled and stored once.
+ * <p>
+ * Opt-in with {@code -Dimagefinder.thumbnails.enabled=true}. Thumbnails are at most
+ * {@code -Dimagefinder.thumbnails.maxEdge} (default {@value #DEFAULT_MAX_EDGE}) pixels on their longer
+ * edge, JPEG unless the image has transparency, and live in {@code -Dimagefinder.thumbnails.dir}
+ * (default {@code thumbnail-cache}). Once the directory holds more than
+ * {@code -Dimagefinder.thumbnails.maxBytes} (default 256 MB) the least recently served files are deleted;
+ * the modification time of a file records its last use, so the order survives a restart.
+ * The url to file mapping is kept in memory only.
+ */
+public class ThumbnailStore {
+    private static final int DEFAULT_MAX_EDGE = 256;
+    private static final long DEFAULT_MAX_BYTES = 256L << 20;
+    private static final int MAX_URLS = 100_000;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final int maxEdge;
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true); // name -> size, LRU first
+    private final LinkedHashMap<String, String> fileByUrl = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_URLS;
+        }
+    };
+    private long totalBytes; // guarded by this
+
+    /**
+     * Instantiates a new Thumbnail store.
+     *
+     * @param dir      the cache directory, or null to disable the store
+     * @param maxBytes the size the directory is kept under
+     * @param maxEdge  the longest edge of a thumbnail in pixels
+     * @throws IOException if the directory cannot be created or listed
+     */
+    ThumbnailStore(Path dir, long maxBytes, int maxEdge) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.maxEdge = maxEdge;
+        if (dir == null) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.{jpg,png}")) {
+            for (Path file : stream) {
+                existing.add(file);
+            }
+        }
+        existing.sort((a, b) -> lastModified(a).compareTo(lastModified(b)));
+        for (Path file : existing) {
+            long size = Files.size(file);
+            files.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static ThumbnailStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final ThumbnailStore INSTANCE = open();
+
+        private static ThumbnailStore open() {
+            long maxBytes = Long.getLong("imagefinder.thumbnails.maxBytes", DEFAULT_MAX_BYTES);
+            int maxEdge = Integer.getInteger("imagefinder.thumbnails.maxEdge", DEFAULT_MAX_EDGE);
+            String dir = System.getProperty("imagefinder.thumbnails.dir", "thumbnail-cache");
+            try {
+                return new ThumbnailStore(Boolean.getBoolean("imagefinder.thumbnails.enabled") ? Paths.get(dir) : null,
+                        maxBytes, maxEdge);
+            } catch (IOException e) {
+                Logger.getInstance().error("[Thumbnails] Failed to open " + dir + ": " + e.getMessage());
+                try {
+                    return new ThumbnailStore(null, maxBytes, maxEdge);
+                } catch (IOException impossible) {
+                    throw new IllegalStateException(impossible);
+                }
+            }
+        }
+    }
+
+    /**
+     * Is enabled boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Gets max edge.
+     *
+     * @return the longest edge of a thumbnail in pixels
+     */
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    /**
+     * Store the thumbnail of a downloaded image, unless the same picture is stored already.
+     *
+     * @param imageUrl the image url
+     * @param original the downloaded image bytes, which determine the file name
+     * @param decoded  the image decoded at no less than {@link #getMaxEdge()} pixels
+     */
+    public void put(String imageUrl, byte[] original, BufferedImage decoded) {
+        if (dir == null) {
+            return;
+        }
+        boolean alpha = decoded.getColorModel().hasAlpha();
+        String name = sha256(original) + (alpha ? ".png" : ".jpg");
+        synchronized (this) {
+            if (files.containsKey(name)) {
+                fileByUrl.put(imageUrl, name);
+                return;
+            }
+        }
+        try {
+            Path tmp = Files.createTempFile(dir, "thumb", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                ImageIO.write(scale(decoded, alpha), alpha ? "png" : "jpg", out);
+            }
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(dir.resolve(name));
+            synchronized (this) {
+                Long previous = files.put(name, size);
+                totalBytes += size - (previous == null ? 0 : previous);
+                fileByUrl.put(imageUrl, name);
+                evict();
+            }
+        } catch (IOException e) {
+            Logger.getInstance().warn("[Thumbnails] Failed to store thumbnail of " + imageUrl + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Serve an image url with the thumbnail of another, e.g. a near-duplicate with its representative's.
+     *
+     * @param imageUrl       the image url
+     * @param representative the url whose thumbnail to share
+     */
+    public synchronized void alias(String imageUrl, String representative) {
+        String name = fileByUrl.get(representative);
+        if (name != null) {
+            fileByUrl.put(imageUrl, name);
+        }
+    }
+
+    /**
+     * Find the thumbnail of an image url and mark it as used.
+     *
+     * @param imageUrl the image url
+     * @return the thumbnail file, or null if there is none
+     */
+    public Path find(String imageUrl) {
+        String name;
+        synchronized (this) {
+            name = fileByUrl.get(imageUrl);
+            if (name == null || files.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = dir.resolve(name);
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            return null; // deleted behind our back
+        }
+        return file;
+    }
+
+    /**
+     * Gets the bytes the cached thumbnails take on disk.
+     *
+     * @return the bytes
+     */
+    public synchronized long getBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Gets the number of cached thumbnails.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(dir.resolve(entry.getKey()));
+            } catch (IOException e) {
+                Logger.getInstance().warn("[Thumbnails] Failed to delete " + entry.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove(); // urls still naming the file are dropped by find
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, boolean alpha) {
+        double factor = Math.min(1.0, (double) maxEdge / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        BufferedImage thumbnail = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * <p>
+ * The whole bucket state is one {@code long}: the {@code System.nanoTime()} at which the bucket will
+ * next be empty-and-refilled (the "theoretical arrival time" of the generic cell rate algorithm).
+ * Taking a token pushes it forward by one refill interval with a single CAS, so refill is exact to
+ * the nanosecond and no thread ever holds a lock.
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * Instantiates a new Token bucket that starts full.
+     *
+     * @param permitsPerSecond the refill rate
+     * @param capacity         the maximum number of tokens (burst size)
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        if (permitsPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate and capacity must be positive");
+        }
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * (capacity - 1);
+        this.nextFreeNanos = new AtomicLong(System.nanoTime() - burstNanos - intervalNanos);
+    }
+
+    /**
+     * Take a token if one is available.
+     *
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Take a token if one is available at the given time.
+     *
+     * @param now the current {@code System.nanoTime()}
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long current = nextFreeNanos.get();
+            long base = current - now > 0 ? current : now;
+            if (base - now > burstNanos) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(current, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back a token taken with {@link #tryAcquire()} that ended up unused.
+     */
+    public void refund() {
+        nextFreeNanos.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * Gets the time until the next token becomes available.
+     *
+     * @param now the current {@code System.nanoTime()}
+     * @return the wait in nanoseconds, 0 if a token is available now
+     */
+    public long nanosUntilAvailable(long now) {
+        return Math.max(0L, nextFreeNanos.get() - now - burstNanos);
+    }
+
+    /**
+     * Whether the bucket has refilled completely.
+     *
+     * @param now the current {@code System.nanoTime()}
+     * @return the boolean
+     */
+    public boolean isFull(long now) {
+        return nextFreeNanos.get() - now <= 0;
+    }
+
+    /**
+     * Gets the refill interval.
+     *
+     * @return nanoseconds per token
+     */
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+}
@@ -0,0 +1,107 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces urls to one canonical spelling so that trivially different links dedupe to the same page.
+ * <p>
+ * The scheme and host are lower-cased, default ports ({@code :80} for http, {@code :443} for https)
+ * and the fragment are dropped, {@code .} and {@code ..} path segments are resolved, an empty path
+ * becomes {@code /} and a trailing slash on any other path is removed. The query is kept as is.
+ */
+public final class UrlCanonicalizer {
+    private static final Pattern IMAGE_FILE = Pattern.compile("(?i).*\\.(jpe?g|png|gif|webp|avif|bmp|svg)$");
+    // "-300x200", "_1024x768", "@2x" and WordPress' "-scaled" right before the extension
+    private static final Pattern SIZE_SUFFIX = Pattern.compile("(?i)(?:[-_]\\d{1,5}x\\d{1,5}|@\\dx|-scaled)+(?=\\.[a-z0-9]+$)");
+    // query parameters CDNs and image servers use to pick size, crop, quality or format, and cache busters
+    private static final Set<String> VARIANT_PARAMS = new HashSet<>(Arrays.asList(
+            "w", "h", "width", "height", "size", "resize", "fit", "crop", "dpr", "q", "quality",
+            "auto", "fm", "format", "v", "ver", "version", "cb", "t", "ts", "_"));
+
+    private UrlCanonicalizer() {}
+
+    /**
+     * Canonicalize a url.
+     *
+     * @param url an absolute url
+     * @return the canonical url, or the input unchanged if it cannot be parsed
+     */
+    public static String canonicalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim()).normalize();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null) {
+            return url;
+        }
+        scheme = scheme.toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+            port = -1;
+        }
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        } else if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length());
+        canonical.append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(host.toLowerCase(Locale.ROOT));
+        if (port != -1) {
+            canonical.append(':').append(port);
+        }
+        canonical.append(path);
+        if (uri.getRawQuery() != null) {
+            canonical.append('?').append(uri.getRawQuery());
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Reduce a canonical image url to the key shared by its CDN and resized variants: for paths that end in
+     * an image file extension the query parameters that only select size, quality or format or bust caches
+     * are dropped, and so are size suffixes of the file name. Any other parameter is kept, as it may be
+     * what tells one image from another; urls of other paths are returned unchanged.
+     *
+     * @param canonicalUrl a url returned by {@link #canonicalize(String)}
+     * @return the variant key
+     */
+    public static String variantKey(String canonicalUrl) {
+        int query = canonicalUrl.indexOf('?');
+        String path = query < 0 ? canonicalUrl : canonicalUrl.substring(0, query);
+        if (!IMAGE_FILE.matcher(path).matches()) {
+            return canonicalUrl;
+        }
+        int slash = path.lastIndexOf('/');
+        StringBuilder key = new StringBuilder(canonicalUrl.length())
+                .append(path, 0, slash + 1)
+                .append(SIZE_SUFFIX.matcher(path.substring(slash + 1)).replaceFirst(""));
+        if (query >= 0) {
+            char separator = '?';
+            for (String param : canonicalUrl.substring(query + 1).split("&")) {
+                int equals = param.indexOf('=');
+                String name = (equals < 0 ? param : param.substring(0, equals)).toLowerCase(Locale.ROOT);
+                if (!param.isEmpty() && !VARIANT_PARAMS.contains(name)) {
+                    key.append(separator).append(param);
+                    separator = '&';
+                }
+            }
+        }
+        return key.toString();
+    }
+}
@@ -6,13 +6,54 @@ document.addEventListener("DOMContentLoaded", function() {
     var loadingMessage = document.querySelector('#loadingMessage');
     var statsMessage = document.querySelector('#statsMessage');
     var submitBtn = document.querySelector('#submitBtn');
-    let socket = new WebSocket("ws://localhost:8080/socket");
+    let socketScheme = location.protocol === "https:" ? "wss://" : "ws://";
+    let socket = new WebSocket(socketScheme + location.host + location.pathname.replace(/[^/]*$/, "") + "socket");
+    let streamed = { images: 0, logos: 0 };
+    let thumbnails = false;
+
+    // the server answers 204 when it keeps thumbnails, so only then are they worth asking for
+    fetch("thumbnail").then(response => { thumbnails = response.status === 204; }).catch(() => {});
+
+    function createImage(imgUrl) {
+        var img = document.createElement("img");
+        if (thumbnails) {
+            img.onerror = function() {
+                img.onerror = null;
+                img.src = imgUrl;
+            };
+            img.src = "thumbnail?url=" + encodeURIComponent(imgUrl);
+        } else {
+            img.src = imgUrl;
+        }
+        return img;
+    }
 
     socket.onmessage = function(event) {
-        let response = JSON.parse(event.data);
-        updateList(response);
+        let message = JSON.parse(event.data);
+        if (message.type === "images") {
+            appendImages(message.images, message.logos);
+        } else if (message.type === "completed") {
+            loadingMessage.style.display = "none";
+            if (streamed.images + streamed.logos === 0) {
+                errorMessage.textContent = "No images found.";
+            }
+        } else if (message.type === "error") {
+            loadingMessage.style.display = "none";
+            errorMessage.textContent = "Crawling failed: " + message.message;
+        }
     };
 
+    // "images" lists every image, logos included; "logos" repeats the logos
+    function appendImages(images, logos) {
+        let logoSet = new Set(logos || []);
+        let normal = (images || []).filter(imgUrl => !logoSet.has(imgUrl));
+        normal.forEach(imgUrl => normalImageList.appendChild(createImage(imgUrl)));
+        logoSet.forEach(imgUrl => logoImageList.appendChild(createImage(imgUrl)));
+        streamed.images += normal.length;
+        streamed.logos += logoSet.size;
+        statsMessage.textContent = `Total images found: ${streamed.images + streamed.logos} (Normal: ${streamed.images}, Logos: ${streamed.logos})`;
+    }
+
     function apiCallBack(xhr, callback) {
         if (xhr.readyState === XMLHttpRequest.DONE) {
             loadingMessage.style.display = "none";
@@ -40,22 +81,8 @@ document.addEventListener("DOMContentLoaded", function() {
             return;
         }
 
-        let images = response.images ? JSON.parse(response.images) : [];
-        let logos = response.logos ? JSON.parse(response.logos) : [];
-
-        statsMessage.textContent = `Total images found: ${images.length + logos.length} (Normal: ${images.length}, Logos: ${logos.length})`;
-
-        images.forEach(imgUrl => {
-            var img = document.createElement("img");
-            img.src = imgUrl;
-            normalImageList.appendChild(img);
-        });
-
-        logos.forEach(imgUrl => {
-            var img = document.createElement("img");
-            img.src = imgUrl;
-            logoImageList.appendChild(img);
-        });
+        streamed = { images: 0, logos: 0 };
+        appendImages(response.images, response.logos);
     }
 
     let makeApiCall = function (url, method, obj, callback) {
@@ -69,11 +96,17 @@ document.addEventListener("DOMContentLoaded", function() {
         let retryCount = 0;
         let maxRetries = 10;
         let interval = 3000;
+        let cursor = 0;
+        streamed = { images: 0, logos: 0 };
 
         function poll() {
-            makeApiCall('main?url=' + encodeURIComponent(url), 'GET', null, function(response) {
-                if (response.status === "completed") {
-                    updateList(response);
+            makeApiCall('main?url=' + encodeURIComponent(url) + '&since=' + cursor, 'GET', null, function(response) {
+                if (response.cursor !== undefined) {
+                    appendImages(response.images, response.logos);
+                    cursor = response.cursor;
+                }
+                if (response.status === "completed" || response.status === "partial") {
+                    loadingMessage.style.display = "none";
                 } else if (response.status === "error") {
                     errorMessage.textContent = "Crawling failed: " + response.message;
                 } else if (response.status === "in_progress") {
@@ -108,8 +141,8 @@ document.addEventListener("DOMContentLoaded", function() {
         logoImageList.innerHTML = '';
 
         if (socket && socket.readyState === WebSocket.OPEN) {
+            streamed = { images: 0, logos: 0 };
             socket.send(JSON.stringify({ action: "crawl", url: url }));
-            checkCrawlStatus(url);
         } else {
             makeApiCall('main?url=' + encodeURIComponent(url), 'POST', null, function(response) {
                 if (response.status === "in_progress") {
@@ -0,0 +1,88 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlGroupsTest {
+
+    @Test
+    public void testAdmitsSitesInWindowAndAggregates() {
+        Map<String, CompletableFuture<CrawlResult>> crawls = new HashMap<>();
+        CrawlGroups groups = new CrawlGroups(2, 4, Runnable::run);
+        CrawlGroups.Group group = groups.create(Arrays.asList("http://a/", "http://b/", "http://a/", "http://c/"), url -> {
+            CompletableFuture<CrawlResult> future = new CompletableFuture<>();
+            crawls.put(url, future);
+            return ResultCache.getInstance().new Job(future, null);
+        });
+
+        Assert.assertEquals(3, group.getSites().size());
+        Assert.assertEquals(2, crawls.size());
+        Assert.assertEquals(1, CrawlGroups.queuedCount(group));
+        BatchResult started = BatchResult.of(group, true);
+        Assert.assertEquals("in_progress", started.getStatus());
+        Assert.assertEquals(1, started.getQueued());
+        Assert.assertEquals(2, started.getRunning());
+
+        crawls.get("http://a/").complete(new CrawlResult("completed", "done", Arrays.asList("http://a/1.png", "http://a/2.png"), null));
+        Assert.assertTrue(crawls.containsKey("http://c/"));
+        crawls.get("http://b/").cancel(true);
+        crawls.get("http://c/").complete(new CrawlResult("error", "failed", null, null));
+
+        Assert.assertTrue(group.isDone());
+        BatchResult finished = BatchResult.of(group, false);
+        Assert.assertEquals("completed", finished.getStatus());
+        Assert.assertEquals(1, finished.getCompleted());
+        Assert.assertEquals(2, finished.getFailed());
+        Assert.assertEquals(2, finished.getImages());
+        Assert.assertEquals("http://a/", finished.getResults().get(0).getUrl());
+        Assert.assertEquals(Arrays.asList("http://a/1.png", "http://a/2.png"), finished.getResults().get(0).getImages());
+        Assert.assertNull(BatchResult.of(group, true).getResults().get(0).getImages());
+        Assert.assertSame(group, groups.get(group.getId()));
+    }
+
+    @Test
+    public void testDropsOldestFinishedGroups() {
+        CrawlGroups groups = new CrawlGroups(1, 2, Runnable::run);
+        CompletableFuture<CrawlResult> pending = new CompletableFuture<>();
+        CrawlGroups.Group running = groups.create(Arrays.asList("http://slow/"),
+                url -> ResultCache.getInstance().new Job(pending, null));
+        CrawlGroups.Group failed = groups.create(Arrays.asList("http://broken/"), url -> {
+            throw new IllegalStateException("no crawler");
+        });
+        Assert.assertTrue(failed.isDone());
+        Assert.assertEquals("error", failed.getSites().get(0).getResult().getStatus());
+
+        CrawlGroups.Group latest = groups.create(Arrays.asList("http://new/"),
+                url -> ResultCache.getInstance().new Job(CompletableFuture.completedFuture(
+                        new CrawlResult("completed", "done", null, null)), null));
+        Assert.assertEquals(2, groups.size());
+        Assert.assertSame(running, groups.get(running.getId()));
+        Assert.assertNull(groups.get(failed.getId()));
+        Assert.assertSame(latest, groups.get(latest.getId()));
+    }
+
+    @Test
+    public void testTurnsDownNewGroupsWhileAllKeptOnesRun() {
+        CrawlGroups groups = new CrawlGroups(1, 2, Runnable::run);
+        CompletableFuture<CrawlResult> first = new CompletableFuture<>();
+        groups.create(Arrays.asList("http://one/"), url -> ResultCache.getInstance().new Job(first, null));
+        CrawlGroups.Group second = groups.create(Arrays.asList("http://two/"),
+                url -> ResultCache.getInstance().new Job(new CompletableFuture<>(), null));
+        Assert.assertNull(groups.create(Arrays.asList("http://three/"), url -> {
+            throw new AssertionError("a turned down group must not start its sites");
+        }));
+        Assert.assertEquals(2, groups.size());
+
+        first.complete(new CrawlResult("completed", "done", null, null));
+        CrawlGroups.Group third = groups.create(Arrays.asList("http://three/"),
+                url -> ResultCache.getInstance().new Job(new CompletableFuture<>(), null));
+        Assert.assertNotNull(third);
+        Assert.assertEquals(2, groups.size());
+        Assert.assertSame(second, groups.get(second.getId()));
+    }
+}
@@ -0,0 +1,107 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlJobsTest {
+
+    @Test
+    public void testTimedOutJobIsResumedByTheNextRequest() throws Exception {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 20;
+        config.fanOut = 19;
+        config.imagesPerPage = 0;
+        config.latencyMillis = 100;
+        config.robots = false;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            String url = site.siteUrl(21);
+            CrawlJobs jobs = new CrawlJobs(400, Long.MAX_VALUE);
+            try {
+                ResultCache.Job first = jobs.startJob(url);
+                Assert.assertEquals("partial", first.getFuture().get(5, TimeUnit.SECONDS).getStatus());
+
+                ResultCache.Job job = first;
+                for (int attempt = 0; attempt < 20 && !"completed".equals(job.getFuture().get(5, TimeUnit.SECONDS).getStatus()); attempt++) {
+                    ResultCache.Job next = jobs.startJob(url);
+                    Assert.assertNotSame(job, next);
+                    job = next;
+                }
+                Assert.assertEquals("completed", job.getFuture().get().getStatus());
+                Assert.assertSame(job, jobs.startJob(url));
+                // resumed from the store each time: no page was lost with a stopped crawler
+                Assert.assertEquals(config.pages, CrawlStore.getInstance().load(url).getDonePages().size());
+            } finally {
+                ResultCache.getInstance().remove(url);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsJoinOneJob() throws Exception {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 5;
+        config.imagesPerPage = 1;
+        config.latencyMillis = 50;
+        config.robots = false;
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            String url = site.siteUrl(22);
+            CrawlJobs jobs = new CrawlJobs();
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                List<Future<ResultCache.Job>> started = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    started.add(requests.submit(() -> {
+                        start.await();
+                        return jobs.startJob(url);
+                    }));
+                }
+                start.countDown();
+                ResultCache.Job job = started.get(0).get(5, TimeUnit.SECONDS);
+                for (Future<ResultCache.Job> other : started) {
+                    Assert.assertSame(job, other.get(5, TimeUnit.SECONDS));
+                }
+                Assert.assertEquals("completed", job.getFuture().get(10, TimeUnit.SECONDS).getStatus());
+            } finally {
+                requests.shutdownNow();
+                ResultCache.getInstance().remove(url);
+            }
+        }
+    }
+
+    @Test
+    public void testStaleStoredJobIsCrawledAgain() throws Exception {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 3;
+        config.imagesPerPage = 1;
+        config.robots = false;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            String url = site.siteUrl(23);
+            try {
+                Assert.assertEquals("completed", CrawlJobs.getInstance().startJob(url).getFuture()
+                        .get(10, TimeUnit.SECONDS).getStatus());
+                long pages = site.getPageRequests();
+
+                ResultCache.getInstance().remove(url);
+                ResultCache.Job stored = new CrawlJobs(1000, Long.MAX_VALUE).startJob(url);
+                Assert.assertTrue(stored.getFuture().isDone());
+                Assert.assertEquals(pages, site.getPageRequests());
+
+                ResultCache.getInstance().remove(url);
+                ResultCache.Job recrawled = new CrawlJobs(1000, 0).startJob(url);
+                Assert.assertEquals("completed", recrawled.getFuture().get(10, TimeUnit.SECONDS).getStatus());
+                Assert.assertTrue(site.getPageRequests() > pages);
+            } finally {
+                ResultCache.getInstance().remove(url);
+            }
+        }
+    }
+}
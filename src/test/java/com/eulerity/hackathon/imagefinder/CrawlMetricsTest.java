@@ -0,0 +1,30 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CrawlMetricsTest {
+    @Test
+    public void testRendersStagesAndOutcomesAsPrometheusText() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.record(CrawlMetrics.Stage.FETCH, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.record(CrawlMetrics.Stage.FETCH, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.page(CrawlMetrics.PageResult.NOT_MODIFIED);
+        metrics.image(CrawlMetrics.ImageResult.VARIANT);
+
+        StringBuilder out = new StringBuilder();
+        metrics.renderCrawl(out);
+        String text = out.toString();
+        Assert.assertTrue(text.contains("# TYPE imagefinder_stage_latency_seconds summary\n"));
+        Assert.assertTrue(text.contains("imagefinder_stage_latency_seconds_count{stage=\"fetch\"} 2\n"));
+        Assert.assertTrue(text.contains("imagefinder_stage_latency_seconds_sum{stage=\"fetch\"} 0.04\n"));
+        Assert.assertTrue(text.contains("imagefinder_stage_latency_seconds_count{stage=\"logo\"} 0\n"));
+        Assert.assertTrue(text.contains("imagefinder_pages_total{result=\"not_modified\"} 1\n"));
+        Assert.assertTrue(text.contains("imagefinder_images_total{result=\"variant\"} 1\n"));
+        for (String line : text.split("\n")) {
+            Assert.assertTrue(line, line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*})? [0-9.E-]+"));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CrawlSocketTest {
+
+    @Test
+    public void testStreamsTheJobOfTheUrlUntilItCompletes() {
+        String url = "http://socket-test.example/";
+        ResultLog log = new ResultLog();
+        log.append("http://socket-test.example/a.png", false);
+        CompletableFuture<CrawlResult> future = new CompletableFuture<>();
+        ResultCache.getInstance().put(url, future, log);
+
+        List<JsonObject> sent = Collections.synchronizedList(new ArrayList<>());
+        Session session = session(sent);
+        CrawlSocket socket = new CrawlSocket();
+        try {
+            socket.onMessage("{\"action\":\"crawl\",\"url\":\"" + url + "\"}", session);
+            log.append("http://socket-test.example/logo.png", true);
+            future.complete(new CrawlResult("completed", "done", log.read(0)));
+
+            JsonObject last = sent.get(sent.size() - 1);
+            Assert.assertEquals("completed", last.get("type").getAsString());
+            Assert.assertEquals(2, last.get("total").getAsInt());
+            Assert.assertEquals("images", sent.get(0).get("type").getAsString());
+            Assert.assertEquals("http://socket-test.example/a.png", sent.get(0).getAsJsonArray("images").get(0).getAsString());
+        } finally {
+            ResultCache.getInstance().remove(url);
+        }
+    }
+
+    private static Session session(List<JsonObject> sent) {
+        Session session = Mockito.mock(Session.class);
+        RemoteEndpoint.Async remote = Mockito.mock(RemoteEndpoint.Async.class);
+        Mockito.when(session.isOpen()).thenReturn(true);
+        Mockito.when(session.getAsyncRemote()).thenReturn(remote);
+        Mockito.doAnswer(invocation -> {
+            sent.add(new JsonParser().parse((String) invocation.getArguments()[0]).getAsJsonObject());
+            ((SendHandler) invocation.getArguments()[1]).onResult(new SendResult());
+            return null;
+        }).when(remote).sendText(Mockito.anyString(), Mockito.any(SendHandler.class));
+        return session;
+    }
+}
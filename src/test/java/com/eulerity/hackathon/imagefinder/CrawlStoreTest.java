@@ -0,0 +1,155 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CrawlStoreTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long BUDGET = TimeUnit.SECONDS.toNanos(5);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeInterruptedJob(CrawlStore store) {
+        store.jobStarted("http://a.com");
+        store.pageQueued("http://a.com", "http://a.com/", 0);
+        store.pageQueued("http://a.com", "http://a.com/x", 1);
+        store.pageQueued("http://a.com", "http://a.com/y", 1);
+        store.imageAccepted("http://a.com", "http://a.com/1.png", false, new ImageInfo("png", 10, 10, 20_000, "image/png"));
+        store.imageAccepted("http://a.com", "http://a.com/logo.png", true, new ImageInfo("png", 10, 10));
+        store.imageRejected("http://a.com", "http://a.com/tiny.gif");
+        store.pageDone("http://a.com", "http://a.com/");
+        store.pageDone("http://a.com", "http://a.com/x");
+    }
+
+    @Test
+    public void testInterruptedJobSurvivesRestart() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        CrawlStore store = new CrawlStore(dir, DAY, BUDGET, null);
+        writeInterruptedJob(store);
+        store.close();
+
+        CrawlStore reopened = new CrawlStore(dir, DAY, BUDGET, null);
+        CrawlStore.StoredJob job = reopened.load("http://a.com");
+        Assert.assertFalse(job.isCompleted());
+        Assert.assertEquals(Arrays.asList("http://a.com/", "http://a.com/x"), job.getDonePages());
+        Assert.assertEquals(1, job.getPendingPages().size());
+        Assert.assertEquals("http://a.com/y", job.getPendingPages().get(0).getUrl());
+        Assert.assertEquals(1, job.getPendingPages().get(0).getDepth());
+        Assert.assertEquals(Arrays.asList("http://a.com/1.png", "http://a.com/logo.png"), job.getResults().read(0).getImages());
+        Assert.assertEquals(Collections.singletonList("http://a.com/logo.png"), job.getResults().read(0).getLogos());
+        Assert.assertEquals(3, job.getSeenImages().size());
+        ImageMetadata metadata = job.getResults().read(0).getMetadata().get(0);
+        Assert.assertEquals(Long.valueOf(20_000), metadata.getBytes());
+        Assert.assertEquals("image/png", metadata.getContentType());
+        Assert.assertEquals(Integer.valueOf(10), metadata.getWidth());
+        Assert.assertNull(reopened.load("http://b.com"));
+    }
+
+    @Test
+    public void testTornTailIsSkippedAndNewRecordsStillIndexed() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        CrawlStore store = new CrawlStore(dir, DAY, BUDGET, null);
+        writeInterruptedJob(store);
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(dir.resolve("records.dat").toFile(), "rw")) {
+            raf.setLength(raf.length() - 5); // crash in the middle of the last record
+        }
+
+        CrawlStore reopened = new CrawlStore(dir, DAY, BUDGET, null);
+        Assert.assertEquals(1, reopened.load("http://a.com").getDonePages().size());
+        reopened.pageDone("http://a.com", "http://a.com/y");
+        reopened.jobCompleted("http://a.com");
+        reopened.close();
+
+        CrawlStore again = new CrawlStore(dir, DAY, BUDGET, null);
+        CrawlStore.StoredJob job = again.load("http://a.com");
+        Assert.assertTrue(job.isCompleted());
+        Assert.assertEquals(2, job.getResults().size());
+    }
+
+    @Test
+    public void testCompactionDropsSupersededJobsAndPagesOfCompletedOnes() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        CrawlStore store = new CrawlStore(dir, DAY, BUDGET, null);
+        writeInterruptedJob(store);
+        writeInterruptedJob(store); // a fresh crawl supersedes the first one
+        store.pageDone("http://a.com", "http://a.com/y");
+        store.jobCompleted("http://a.com");
+        long before = store.getLogBytes();
+
+        store.compact();
+        Assert.assertTrue(store.getLogBytes() < before / 2);
+        CrawlStore.StoredJob job = store.load("http://a.com");
+        Assert.assertTrue(job.isCompleted());
+        Assert.assertEquals(2, job.getResults().size());
+        Assert.assertTrue(job.getDonePages().isEmpty());
+        store.close();
+
+        CrawlStore reopened = new CrawlStore(dir, DAY, BUDGET, null);
+        Assert.assertEquals(1, reopened.getJobCount());
+        Assert.assertEquals(2, reopened.load("http://a.com").getResults().size());
+    }
+
+    @Test
+    public void testCorruptRecordInTheMiddleIsSkipped() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        CrawlStore store = new CrawlStore(dir, DAY, BUDGET, null);
+        store.jobStarted("http://a.com");
+        store.imageAccepted("http://a.com", "http://a.com/1.png", false, new ImageInfo("png", 10, 10));
+        long corrupt = store.getLogBytes();
+        store.imageAccepted("http://a.com", "http://a.com/2.png", false, new ImageInfo("png", 10, 10));
+        store.imageAccepted("http://a.com", "http://a.com/3.png", false, new ImageInfo("png", 10, 10));
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(dir.resolve("records.dat").toFile(), "rw")) {
+            raf.seek(corrupt + 20);
+            raf.write(new byte[8]); // breaks the crc of the second image only
+        }
+
+        CrawlStore reopened = new CrawlStore(dir, DAY, BUDGET, null);
+        Assert.assertEquals(Arrays.asList("http://a.com/1.png", "http://a.com/3.png"),
+                reopened.load("http://a.com").getResults().read(0).getImages());
+        reopened.close();
+    }
+
+    @Test
+    public void testRecordsAppendedDuringCompactionAreKept() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        CrawlStore store = new CrawlStore(dir, DAY, BUDGET, null);
+        for (int i = 0; i < 200; i++) {
+            writeInterruptedJob(store);
+        }
+        store.jobStarted("http://b.com");
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                store.imageAccepted("http://b.com", "http://b.com/" + i + ".png", false, new ImageInfo("png", 10, 10));
+                if (i == 250) {
+                    store.jobStarted("http://c.com");
+                    store.imageAccepted("http://c.com", "http://c.com/1.png", false, new ImageInfo("png", 10, 10));
+                }
+            }
+        });
+        writer.start();
+        store.compact();
+        writer.join();
+
+        Assert.assertEquals(500, store.load("http://b.com").getResults().size());
+        Assert.assertEquals(1, store.load("http://c.com").getResults().size());
+        Assert.assertEquals(2, store.load("http://a.com").getDonePages().size());
+        store.close();
+
+        CrawlStore reopened = new CrawlStore(dir, DAY, BUDGET, null);
+        Assert.assertEquals(3, reopened.getJobCount());
+        Assert.assertEquals(500, reopened.load("http://b.com").getResults().size());
+        Assert.assertEquals(2, reopened.load("http://a.com").getResults().size());
+    }
+}
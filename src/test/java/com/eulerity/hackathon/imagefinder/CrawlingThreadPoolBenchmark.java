@@ -0,0 +1,70 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Platform pool vs. permit-bounded thread-per-task mode on a batch of blocking I/O-like tasks.
+ * <p>
+ * Run after {@code mvn test-compile} with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main CrawlingThreadPoolBenchmark};
+ * on JDK 21+ the {@code VIRTUAL} mode uses virtual threads.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CrawlingThreadPoolBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String mode;
+
+    @Param({"200"})
+    public int tasks;
+
+    @Param({"20"})
+    public int ioMillis;
+
+    private CrawlingThreadPool pool;
+
+    @Setup
+    public void setUp() {
+        pool = new CrawlingThreadPool(CrawlingThreadPool.Mode.valueOf(mode), 256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public void blockingBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            pool.getExecutor().execute(() -> {
+                try {
+                    Thread.sleep(ioMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
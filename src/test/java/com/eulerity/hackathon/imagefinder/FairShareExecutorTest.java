@@ -0,0 +1,77 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FairShareExecutorTest {
+
+    @Test
+    public void testLanesTakeTurns() throws InterruptedException {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            FairShareExecutor fairShare = new FairShareExecutor(pool, 1);
+            CountDownLatch gate = new CountDownLatch(1);
+            fairShare.newLane().execute(() -> awaitQuietly(gate)); // holds the only slot while the lanes fill
+
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(7);
+            Executor big = fairShare.newLane();
+            Executor small = fairShare.newLane();
+            for (int i = 0; i < 5; i++) {
+                String name = "big" + i;
+                big.execute(() -> { order.add(name); done.countDown(); });
+            }
+            for (int i = 0; i < 2; i++) {
+                String name = "small" + i;
+                small.execute(() -> { order.add(name); done.countDown(); });
+            }
+            Assert.assertEquals(2, fairShare.getReadyLaneCount());
+            Assert.assertEquals(7, fairShare.getQueuedCount());
+
+            gate.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList("big0", "small0", "big1", "small1", "big2", "big3", "big4"), order);
+            Assert.assertEquals(0, fairShare.getQueuedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRunsAtMostMaxRunningAtOnce() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            FairShareExecutor fairShare = new FairShareExecutor(pool, 2);
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(6);
+            for (int i = 0; i < 6; i++) {
+                fairShare.newLane().execute(() -> { awaitQuietly(gate); done.countDown(); });
+            }
+            Assert.assertEquals(2, fairShare.getRunningCount());
+            Assert.assertEquals(4, fairShare.getQueuedCount());
+
+            gate.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The visited-page set under contention: eight threads fingerprinting urls and inserting them, or
+ * checking urls that were seen before. With {@code exactLimit=4096} the set is past its exact limit
+ * and new fingerprints go to the Bloom filter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+public class FingerprintSetBenchmark {
+    private static final int SEEN = 1 << 16;
+    private static final int URLS_PER_THREAD = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Visited {
+        @Param({"1048576", "4096"})
+        public int exactLimit;
+
+        FingerprintSet set;
+        String[] seen;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            set = new FingerprintSet(exactLimit);
+            seen = new String[SEEN];
+            for (int i = 0; i < SEEN; i++) {
+                seen[i] = "https://www.example.com/section/" + (i % 97) + "/article-" + i + ".html";
+                set.add(FingerprintSet.fingerprint(seen[i]));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Urls {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        String[] fresh;
+        int next;
+
+        @Setup
+        public void setUp() {
+            int thread = THREADS.incrementAndGet();
+            fresh = new String[URLS_PER_THREAD];
+            for (int i = 0; i < URLS_PER_THREAD; i++) {
+                fresh[i] = "https://www.example.com/t" + thread + "/page-" + i + "?ref=nav";
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addNew(Visited visited, Urls urls) {
+        // each url is new the first time round; later rounds measure the duplicate path
+        String url = urls.fresh[urls.next++ & (URLS_PER_THREAD - 1)];
+        return visited.set.add(FingerprintSet.fingerprint(url));
+    }
+
+    @Benchmark
+    public boolean containsSeen(Visited visited, Urls urls) {
+        String url = visited.seen[urls.next++ & (SEEN - 1)];
+        return visited.set.contains(FingerprintSet.fingerprint(url));
+    }
+}
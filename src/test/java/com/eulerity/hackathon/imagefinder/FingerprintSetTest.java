@@ -0,0 +1,61 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FingerprintSetTest {
+
+    @Test
+    public void testAddIsAtomicAcrossThreads() throws InterruptedException {
+        FingerprintSet set = new FingerprintSet();
+        AtomicInteger inserted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    if (set.add(FingerprintSet.fingerprint("http://example.com/page/" + i))) {
+                        inserted.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(20_000, inserted.get());
+        Assert.assertEquals(20_000, set.size());
+        Assert.assertTrue(set.contains(FingerprintSet.fingerprint("http://example.com/page/123")));
+        Assert.assertFalse(set.contains(FingerprintSet.fingerprint("http://example.com/page/20000")));
+    }
+
+    @Test
+    public void testOverflowsIntoBloomFilterPastExactLimit() {
+        FingerprintSet set = new FingerprintSet(1000);
+        int added = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (set.add(FingerprintSet.fingerprint("http://example.com/" + i))) {
+                added++;
+            }
+        }
+        // the first 1000 are exact, a Bloom false positive may swallow a few of the rest
+        Assert.assertTrue("added: " + added, added > 4950);
+        Assert.assertEquals(added, set.size());
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertFalse(set.add(FingerprintSet.fingerprint("http://example.com/" + i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 5000; i < 15000; i++) {
+            if (set.contains(FingerprintSet.fingerprint("http://example.com/" + i))) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 100);
+    }
+}
@@ -0,0 +1,83 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpCacheTest {
+    private static FetchResponse response(int status, String etag, String lastModified) {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) {
+            headers.put("ETag", etag);
+        }
+        if (lastModified != null) {
+            headers.put("Last-Modified", lastModified);
+        }
+        return new FetchResponse("http://a.com/", status, headers, new byte[0]);
+    }
+
+    @Test
+    public void testRevalidatesWithStoredValidators() {
+        HttpCache cache = new HttpCache(10, Long.MAX_VALUE);
+        PageExtraction extraction = new PageExtraction(Arrays.asList("http://a.com/1.png"),
+                Collections.<String>emptySet(), Collections.<String>emptyList());
+        cache.store("http://a.com/", response(200, "\"v1\"", "Mon, 05 Oct 2026 10:00:00 GMT"), extraction);
+
+        HttpCache.Entry entry = cache.lookup("http://a.com/", PageExtraction.class);
+        Map<String, String> headers = cache.conditionalHeaders(entry, Collections.singletonMap("Range", "bytes=0-1"));
+        Assert.assertEquals("\"v1\"", headers.get("If-None-Match"));
+        Assert.assertEquals("Mon, 05 Oct 2026 10:00:00 GMT", headers.get("If-Modified-Since"));
+        Assert.assertEquals("bytes=0-1", headers.get("Range"));
+
+        Assert.assertTrue(cache.isNotModified(entry, response(304, null, null)));
+        Assert.assertFalse(cache.isNotModified(entry, response(200, "\"v2\"", null)));
+        Assert.assertSame(extraction, entry.getPayload());
+        Assert.assertNull(cache.lookup("http://a.com/", ImageInfo.class));
+        Assert.assertEquals(1, cache.getNotModified());
+    }
+
+    @Test
+    public void testResponsesWithoutValidatorsAreNotKeptAndOldestIsEvicted() {
+        HttpCache cache = new HttpCache(2, Long.MAX_VALUE);
+        cache.store("http://a.com/", response(200, "\"v1\"", null), new ImageInfo("png", 1, 1));
+        cache.store("http://a.com/", response(200, null, null), new ImageInfo("png", 1, 1));
+        Assert.assertNull(cache.lookup("http://a.com/", ImageInfo.class));
+        Assert.assertTrue(cache.conditionalHeaders(null, Collections.<String, String>emptyMap()).isEmpty());
+
+        cache.store("http://a.com/1", response(200, "\"1\"", null), new ImageInfo("png", 1, 1));
+        cache.store("http://a.com/2", response(200, "\"2\"", null), new ImageInfo("png", 1, 1));
+        cache.store("http://a.com/3", response(200, "\"3\"", null), new ImageInfo("png", 1, 1));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.lookup("http://a.com/1", ImageInfo.class));
+    }
+
+    @Test
+    public void testLargeExtractionsAreEvictedByTheByteBudget() {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            links.add("http://a.com/page/" + i);
+        }
+        PageExtraction large = new PageExtraction(Collections.<String>emptyList(), Collections.<String>emptySet(), links);
+        HttpCache cache = new HttpCache(100, 64 * 1024);
+        cache.store("http://a.com/small", response(200, "\"s\"", null), new ImageInfo("png", 1, 1));
+        cache.store("http://a.com/1", response(200, "\"1\"", null), large);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.getBytes() > large.estimateBytes());
+
+        cache.lookup("http://a.com/small", ImageInfo.class);
+        cache.store("http://a.com/2", response(200, "\"2\"", null), large);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.lookup("http://a.com/1", PageExtraction.class));
+        Assert.assertNotNull(cache.lookup("http://a.com/small", ImageInfo.class));
+
+        cache.store("http://a.com/2", response(200, null, null), large);
+        cache.store("http://a.com/small", response(200, null, null), new ImageInfo("png", 1, 1));
+        Assert.assertEquals(0, cache.getBytes());
+    }
+}
@@ -0,0 +1,100 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImageCrawlerFactoryTest {
+    private static final long DAY_NANOS = TimeUnit.DAYS.toNanos(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CrawlStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        store = new CrawlStore(folder.getRoot().toPath(), TimeUnit.DAYS.toMillis(1), TimeUnit.SECONDS.toNanos(5), null);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    /**
+     * Record an interrupted crawl, so the crawler that resumes it remembers {@code pages} urls.
+     */
+    private void interruptedJob(String url, int pages) {
+        store.jobStarted(url);
+        for (int i = 0; i < pages; i++) {
+            store.pageQueued(url, url + "p" + i, 1);
+            store.pageDone(url, url + "p" + i);
+        }
+        store.pageQueued(url, url + "pending", 1);
+    }
+
+    @Test
+    public void testGetCrawlerResumesAndReplacesStoppedCrawlers() throws IOException {
+        ImageCrawlerFactory factory = new ImageCrawlerFactory(store, DAY_NANOS, Integer.MAX_VALUE);
+        interruptedJob("http://a.com/", 3);
+
+        ImageCrawler crawler = factory.getCrawler("http://a.com/");
+        Assert.assertSame(crawler, factory.getCrawler("http://a.com/"));
+        Assert.assertEquals(3, crawler.getRetainedUrlCount());
+
+        crawler.stop();
+        ImageCrawler replacement = factory.getCrawler("http://a.com/");
+        Assert.assertNotSame(crawler, replacement);
+        Assert.assertFalse(replacement.isStopped());
+        Assert.assertEquals(1, factory.size());
+    }
+
+    @Test
+    public void testReleaseDropsOnlyThatCrawler() throws IOException {
+        ImageCrawlerFactory factory = new ImageCrawlerFactory(store, DAY_NANOS, Integer.MAX_VALUE);
+        ImageCrawler crawler = factory.getCrawler("http://b.com/");
+
+        factory.release("http://b.com/", new ImageCrawler("http://b.com/", 1));
+        Assert.assertEquals(1, factory.size());
+        factory.release("http://b.com/", crawler);
+        Assert.assertEquals(0, factory.size());
+        Assert.assertNotSame(crawler, factory.getCrawler("http://b.com/"));
+    }
+
+    @Test
+    public void testSweepEvictsIdleCrawlers() throws Exception {
+        ImageCrawlerFactory factory = new ImageCrawlerFactory(store, TimeUnit.MILLISECONDS.toNanos(20), Integer.MAX_VALUE);
+        factory.getCrawler("http://c.com/");
+        factory.sweep();
+        Assert.assertEquals(1, factory.size());
+
+        Thread.sleep(40);
+        factory.getCrawler("http://d.com/");
+        factory.sweep();
+        Assert.assertEquals(1, factory.size());
+        Assert.assertEquals(0, factory.getRetainedUrlCount());
+    }
+
+    @Test
+    public void testSweepEvictsLeastRecentlyActiveOverBudget() throws Exception {
+        ImageCrawlerFactory factory = new ImageCrawlerFactory(store, DAY_NANOS, 4);
+        interruptedJob("http://old.com/", 3);
+        interruptedJob("http://new.com/", 2);
+        ImageCrawler old = factory.getCrawler("http://old.com/");
+        Thread.sleep(2);
+        ImageCrawler recent = factory.getCrawler("http://new.com/");
+        Assert.assertEquals(5, factory.getRetainedUrlCount());
+
+        factory.sweep();
+        Assert.assertEquals(1, factory.size());
+        Assert.assertSame(recent, factory.getCrawler("http://new.com/"));
+        Assert.assertNotSame(old, factory.getCrawler("http://old.com/"));
+    }
+}
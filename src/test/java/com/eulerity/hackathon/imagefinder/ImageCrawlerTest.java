@@ -0,0 +1,70 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageCrawlerTest {
+
+    @Test
+    public void testCompletesWhenLastPendingPageFinishes() throws Exception {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 4;
+        config.fanOut = 3;
+        config.imagesPerPage = 2;
+        config.robots = false;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            String url = site.siteUrl(10);
+            ImageCrawler crawler = new ImageCrawler(url, 1);
+            CompletableFuture<Void> crawl = crawler.crawlFrom(url);
+            Assert.assertTrue(crawler.isCrawling());
+
+            crawl.get(20, TimeUnit.SECONDS);
+            Assert.assertFalse(crawler.isCrawling());
+            Assert.assertEquals(4, site.getPageRequests());
+            // two images of each page, plus the favicon, logo and banner every page shares
+            Assert.assertEquals(4 * 2 + 3, crawler.getResults().size());
+            // every image is validated once, though the shared ones appear on all four pages:
+            // a header sniff, then a download for its perceptual hash
+            Assert.assertEquals(2 * (4 * 2 + 3), site.getImageRequests());
+
+            // nothing new to crawl: completes at once instead of waiting for pages that will never come
+            Assert.assertTrue(crawler.crawlFrom(url).isDone());
+            Assert.assertEquals(4, site.getPageRequests());
+        }
+    }
+
+    @Test
+    public void testStopDropsQueuedPages() throws Exception {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 40;
+        config.fanOut = 39;
+        config.imagesPerPage = 0;
+        config.latencyMillis = 300;
+        config.robots = false;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            String url = site.siteUrl(11);
+            ImageCrawler crawler = new ImageCrawler(url, 1);
+            CompletableFuture<Void> crawl = crawler.crawlFrom(url);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (site.getPageRequests() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            crawler.stop();
+            crawl.get(10, TimeUnit.SECONDS);
+            Assert.assertTrue(crawler.isStopped());
+            Assert.assertFalse(crawler.isCrawling());
+            Assert.assertTrue(site.getPageRequests() < config.pages);
+        }
+    }
+
+    @Test
+    public void testSameDomainIgnoresHostCaseOfStartUrl() throws Exception {
+        ImageCrawler crawler = new ImageCrawler("https://WWW.Example.com/Home", 1);
+        Assert.assertTrue(crawler.isSameDomain(UrlCanonicalizer.canonicalize("https://www.EXAMPLE.com/about")));
+        Assert.assertFalse(crawler.isSameDomain("https://cdn.example.com/about"));
+    }
+}
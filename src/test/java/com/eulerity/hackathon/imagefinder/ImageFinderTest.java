@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 
 import com.google.gson.JsonObject;
@@ -40,14 +41,15 @@ public class ImageFinderTest {
         Mockito.when(request.getSession()).thenReturn(session);
 
         // 初始化 ImageFinder 实例
-        imageFinder = Mockito.spy(new ImageFinder());
+        CrawlJobs jobs = Mockito.spy(new CrawlJobs());
+        imageFinder = Mockito.spy(new ImageFinder(jobs));
 
         // **Mock `startCrawling(url)` 让它返回固定结果，而不是真正爬取**
         CompletableFuture<CrawlResult> mockFuture = CompletableFuture.completedFuture(
                 new CrawlResult("completed", "Crawling completed successfully.",
-                        new Gson().toJson(ImageFinder.testImages), "[]")
+                        Arrays.asList(ImageFinder.testImages), new ArrayList<String>())
         );
-        Mockito.doReturn(mockFuture).when(imageFinder).startCrawling(Mockito.anyString());
+        Mockito.doReturn(ResultCache.getInstance().new Job(mockFuture, null)).when(jobs).startCrawling(Mockito.anyString());
     }
 
     @Test
@@ -60,8 +62,8 @@ public class ImageFinderTest {
         CrawlResult expectedResult = new CrawlResult(
                 "completed",
                 "Crawling completed successfully.",
-                new Gson().toJson(ImageFinder.testImages),
-                new Gson().toJson(new ArrayList<>())
+                Arrays.asList(ImageFinder.testImages),
+                new ArrayList<String>()
         );
 
         JsonObject expectedJson = new JsonParser().parse(new Gson().toJson(expectedResult)).getAsJsonObject();
@@ -0,0 +1,102 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageHeaderSnifferTest {
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static ImageInfo sniff(byte[] data) {
+        return ImageHeaderSniffer.sniff(data, data.length);
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        ImageInfo info = sniff(encode("png", 320, 200));
+        Assert.assertEquals("png", info.getFormat());
+        Assert.assertEquals(320, info.getWidth());
+        Assert.assertEquals(200, info.getHeight());
+    }
+
+    @Test
+    public void testJpeg() throws IOException {
+        ImageInfo info = sniff(encode("jpg", 640, 480));
+        Assert.assertEquals("jpeg", info.getFormat());
+        Assert.assertEquals(640, info.getWidth());
+        Assert.assertEquals(480, info.getHeight());
+    }
+
+    @Test
+    public void testGif() throws IOException {
+        ImageInfo info = sniff(encode("gif", 16, 9));
+        Assert.assertEquals("gif", info.getFormat());
+        Assert.assertEquals(16, info.getWidth());
+        Assert.assertEquals(9, info.getHeight());
+    }
+
+    @Test
+    public void testWebpLossy() {
+        byte[] data = new byte[30];
+        System.arraycopy("RIFF\0\0\0\0WEBPVP8 ".getBytes(), 0, data, 0, 16);
+        data[23] = (byte) 0x9D;
+        data[24] = 0x01;
+        data[25] = 0x2A;
+        data[26] = (byte) 0x90; // 400
+        data[27] = 0x01;
+        data[28] = 0x2C; // 300
+        data[29] = 0x01;
+        ImageInfo info = sniff(data);
+        Assert.assertEquals("webp", info.getFormat());
+        Assert.assertEquals(400, info.getWidth());
+        Assert.assertEquals(300, info.getHeight());
+    }
+
+    @Test
+    public void testWebpExtended() {
+        byte[] data = new byte[30];
+        System.arraycopy("RIFF\0\0\0\0WEBPVP8X".getBytes(), 0, data, 0, 16);
+        data[24] = (byte) 0xFF; // width - 1 = 1023
+        data[25] = 0x03;
+        data[27] = (byte) 0xFF; // height - 1 = 511
+        data[28] = 0x01;
+        ImageInfo info = sniff(data);
+        Assert.assertEquals(1024, info.getWidth());
+        Assert.assertEquals(512, info.getHeight());
+    }
+
+    @Test
+    public void testTruncatedJpegHasUnknownDimensions() throws IOException {
+        byte[] jpeg = encode("jpg", 64, 64);
+        ImageInfo info = ImageHeaderSniffer.sniff(Arrays.copyOf(jpeg, 8), 8);
+        Assert.assertEquals("jpeg", info.getFormat());
+        Assert.assertFalse(info.hasDimensions());
+    }
+
+    @Test
+    public void testIco() {
+        byte[] data = {0, 0, 1, 0, 2, 0, 32, 0, 0, 0};
+        ImageInfo info = sniff(data);
+        Assert.assertEquals("ico", info.getFormat());
+        Assert.assertEquals(32, info.getWidth());
+        Assert.assertEquals(256, info.getHeight());
+    }
+
+    @Test
+    public void testNotAnImage() {
+        byte[] html = "<!DOCTYPE html><html></html>".getBytes();
+        Assert.assertNull(sniff(html));
+    }
+}
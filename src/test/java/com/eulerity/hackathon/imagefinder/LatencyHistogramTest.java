@@ -0,0 +1,41 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testQuantilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.valueAtQuantile(0.5));
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500500), histogram.getSumNanos());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertNear(500, histogram.valueAtQuantile(0.5));
+        assertNear(990, histogram.valueAtQuantile(0.99));
+        assertNear(1000, histogram.valueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int index = 0; index < LatencyHistogram.index(Long.MAX_VALUE >>> 22); index++) {
+            Assert.assertEquals(LatencyHistogram.upperBound(index), LatencyHistogram.lowerBound(index + 1));
+            Assert.assertEquals(index, LatencyHistogram.index(LatencyHistogram.lowerBound(index)));
+            Assert.assertEquals(index, LatencyHistogram.index(LatencyHistogram.upperBound(index) - 1));
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        Assert.assertEquals(2, histogram.getCount());
+    }
+
+    private static void assertNear(long expectedMillis, long actualNanos) {
+        double actualMillis = actualNanos / 1e6;
+        Assert.assertEquals(expectedMillis, actualMillis, expectedMillis / 32.0);
+    }
+}
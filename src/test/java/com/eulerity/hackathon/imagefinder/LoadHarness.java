@@ -0,0 +1,375 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Offline end-to-end load test: starts a {@link SyntheticSite} and crawls it through {@link ImageFinder}
+ * the way the UI does. Each job is a POST that waits for the crawl, with GET polls of its partial results
+ * running next to it.
+ * <p>
+ * The servlet runs in this JVM unless {@code --target=http://host:port} points at a running server,
+ * which must be able to reach this machine's loopback addresses. Every job crawls its own start url,
+ * and concurrent jobs are spread over different loopback hosts so each gets its own politeness queue.
+ * Run with {@code mvn -P load test -Dload.args="--jobs=100 --concurrency=16"}. The options are
+ * {@code --jobs}, {@code --concurrency}, {@code --pollMillis} and {@code --target}, and the
+ * {@link SyntheticSite.Config} fields ({@code --pages}, {@code --fanOut}, {@code --depth},
+ * {@code --imagesPerPage}, {@code --imageWidth}, {@code --imageHeight}, {@code --latencyMillis},
+ * {@code --jitterMillis}, {@code --errorRate}, {@code --robots}). {@code --minPagesPerSecond} and
+ * {@code --maxP99Millis} make the run exit with status 1 when throughput or latency regress past them.
+ * <p>
+ * In-process runs disable the crawl store and console logging unless their system properties are set.
+ */
+public class LoadHarness {
+    private final Map<String, String> options;
+    private final Client client;
+    private final int jobs;
+    private final int concurrency;
+    private final long pollMillis;
+    private final LatencyHistogram jobLatency = new LatencyHistogram();
+    private final LatencyHistogram pollLatency = new LatencyHistogram();
+    private final LongAdder imagesListed = new LongAdder();
+    private final Map<String, LongAdder> outcomes = new HashMap<>();
+
+    LoadHarness(Map<String, String> options, Client client) {
+        this.options = options;
+        this.client = client;
+        this.jobs = Integer.parseInt(options.getOrDefault("jobs", "50"));
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        this.pollMillis = Long.parseLong(options.getOrDefault("pollMillis", "250"));
+        for (String outcome : new String[]{"completed", "partial", "error", "failed"}) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args {@code --name=value} options
+     * @throws Exception if the site cannot start
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        String target = options.get("target");
+        if (target == null) {
+            setIfAbsent("imagefinder.store.dir", "");
+            setIfAbsent("imagefinder.log.console", "false");
+        }
+        int status;
+        try (SyntheticSite site = new SyntheticSite(siteConfig(options))) {
+            Client client = target == null ? new InProcessClient() : new RemoteClient(target);
+            status = new LoadHarness(options, client).run(site);
+        }
+        System.exit(status);
+    }
+
+    int run(SyntheticSite site) throws InterruptedException {
+        System.out.println("[Load] Synthetic site on port " + site.getPort() + ", " + site.pageCount() + " pages per site; "
+                + jobs + " jobs, " + concurrency + " at a time, " + (options.containsKey("target")
+                ? "against " + options.get("target") : "in process"));
+        HeapSampler heap = new HeapSampler();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        ScheduledExecutorService pollers = Executors.newScheduledThreadPool(Math.max(1, concurrency / 4));
+        long start = System.nanoTime();
+        List<Future<?>> running = new ArrayList<>();
+        for (int job = 0; job < jobs; job++) {
+            String url = site.siteUrl(job) + "?job=" + job;
+            running.add(workers.submit(() -> runJob(url, pollers)));
+        }
+        for (Future<?> job : running) {
+            try {
+                job.get();
+            } catch (Exception e) {
+                outcomes.get("failed").increment();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        workers.shutdown();
+        pollers.shutdownNow();
+        heap.stop();
+        return report(site, seconds, heap);
+    }
+
+    private void runJob(String url, ScheduledExecutorService pollers) {
+        AtomicLong cursor = new AtomicLong();
+        ScheduledFuture<?> polling = pollers.scheduleWithFixedDelay(() -> {
+            long pollStart = System.nanoTime();
+            try {
+                JsonObject poll = client.get(url, cursor.get());
+                pollLatency.recordSince(pollStart);
+                JsonElement next = poll.get("cursor");
+                if (next != null && !next.isJsonNull()) {
+                    cursor.set(next.getAsLong());
+                }
+            } catch (IOException | RuntimeException e) {
+                // the job has not been registered yet, or the server is overloaded: poll again
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        long jobStart = System.nanoTime();
+        try {
+            JsonObject result = client.post(url);
+            jobLatency.recordSince(jobStart);
+            String status = result.has("status") ? result.get("status").getAsString() : "error";
+            outcomes.getOrDefault(status, outcomes.get("error")).increment();
+            if (result.has("images") && result.get("images").isJsonArray()) {
+                imagesListed.add(result.getAsJsonArray("images").size());
+            }
+        } catch (IOException | RuntimeException e) {
+            outcomes.get("failed").increment();
+        } finally {
+            polling.cancel(false);
+        }
+    }
+
+    private int report(SyntheticSite site, double seconds, HeapSampler heap) {
+        long pages = site.getPageRequests();
+        long images = imagesListed.sum();
+        double pagesPerSecond = pages / seconds;
+        System.out.println(String.format(Locale.ROOT, "[Load] %d jobs in %.1f s: %d completed, %d partial, %d error, %d failed",
+                jobs, seconds, outcomes.get("completed").sum(), outcomes.get("partial").sum(),
+                outcomes.get("error").sum(), outcomes.get("failed").sum()));
+        System.out.println(String.format(Locale.ROOT, "[Load] pages: %d fetched, %.1f/s | images: %d listed, %.1f/s, %d downloads"
+                        + " | %d injected errors, %.1f MB served",
+                pages, pagesPerSecond, images, images / seconds, site.getImageRequests(), site.getErrors(),
+                site.getBytesServed() / 1e6));
+        System.out.println(String.format(Locale.ROOT, "[Load] job latency: p50 %d ms, p99 %d ms, max %d ms | poll latency: p50 %d ms, p99 %d ms (%d polls)",
+                millis(jobLatency.valueAtQuantile(0.5)), millis(jobLatency.valueAtQuantile(0.99)),
+                millis(jobLatency.getMaxNanos()), millis(pollLatency.valueAtQuantile(0.5)),
+                millis(pollLatency.valueAtQuantile(0.99)), pollLatency.getCount()));
+        if (client instanceof InProcessClient) {
+            System.out.println(String.format(Locale.ROOT, "[Load] heap high-water: %.1f MB sampled, %.1f MB pool peaks (max %.1f MB)",
+                    heap.getMaxUsed() / 1048576.0, heap.getPoolPeaks() / 1048576.0,
+                    Runtime.getRuntime().maxMemory() / 1048576.0));
+        }
+
+        int status = 0;
+        double minPagesPerSecond = Double.parseDouble(options.getOrDefault("minPagesPerSecond", "0"));
+        if (pagesPerSecond < minPagesPerSecond) {
+            System.out.println(String.format(Locale.ROOT, "[Load] FAIL: %.1f pages/s is below %.1f", pagesPerSecond, minPagesPerSecond));
+            status = 1;
+        }
+        long maxP99Millis = Long.parseLong(options.getOrDefault("maxP99Millis", String.valueOf(Long.MAX_VALUE)));
+        if (millis(jobLatency.valueAtQuantile(0.99)) > maxP99Millis) {
+            System.out.println("[Load] FAIL: p99 job latency is above " + maxP99Millis + " ms");
+            status = 1;
+        }
+        return status;
+    }
+
+    static SyntheticSite.Config siteConfig(Map<String, String> options) {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = Integer.parseInt(options.getOrDefault("pages", String.valueOf(config.pages)));
+        config.fanOut = Integer.parseInt(options.getOrDefault("fanOut", String.valueOf(config.fanOut)));
+        config.depth = Integer.parseInt(options.getOrDefault("depth", String.valueOf(config.depth)));
+        config.imagesPerPage = Integer.parseInt(options.getOrDefault("imagesPerPage", String.valueOf(config.imagesPerPage)));
+        config.imageWidth = Integer.parseInt(options.getOrDefault("imageWidth", String.valueOf(config.imageWidth)));
+        config.imageHeight = Integer.parseInt(options.getOrDefault("imageHeight", String.valueOf(config.imageHeight)));
+        config.latencyMillis = Integer.parseInt(options.getOrDefault("latencyMillis", String.valueOf(config.latencyMillis)));
+        config.jitterMillis = Integer.parseInt(options.getOrDefault("jitterMillis", String.valueOf(config.jitterMillis)));
+        config.errorRate = Double.parseDouble(options.getOrDefault("errorRate", String.valueOf(config.errorRate)));
+        config.robots = Boolean.parseBoolean(options.getOrDefault("robots", String.valueOf(config.robots)));
+        return config;
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Talks to the ImageFinder servlet.
+     */
+    interface Client {
+        JsonObject post(String url) throws IOException;
+
+        JsonObject get(String url, long since) throws IOException;
+    }
+
+    /**
+     * Calls a servlet in this JVM through stub requests and responses.
+     */
+    static final class InProcessClient implements Client {
+        private final ImageFinder servlet = new ImageFinder();
+
+        @Override
+        public JsonObject post(String url) throws IOException {
+            StringWriter body = new StringWriter();
+            try {
+                servlet.doPost(request(url, null), response(body));
+            } catch (javax.servlet.ServletException e) {
+                throw new IOException(e);
+            }
+            return new JsonParser().parse(body.toString()).getAsJsonObject();
+        }
+
+        @Override
+        public JsonObject get(String url, long since) throws IOException {
+            StringWriter body = new StringWriter();
+            servlet.doGet(request(url, String.valueOf(since)), response(body));
+            return new JsonParser().parse(body.toString()).getAsJsonObject();
+        }
+
+        private static HttpServletRequest request(String url, String since) {
+            return (HttpServletRequest) Proxy.newProxyInstance(LoadHarness.class.getClassLoader(),
+                    new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("getParameter")) {
+                            return "url".equals(args[0]) ? url : "since".equals(args[0]) ? since : null;
+                        }
+                        return defaultValue(method.getReturnType());
+                    });
+        }
+
+        private static HttpServletResponse response(StringWriter body) {
+            PrintWriter writer = new PrintWriter(body);
+            return (HttpServletResponse) Proxy.newProxyInstance(LoadHarness.class.getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) ->
+                            method.getName().equals("getWriter") ? writer : defaultValue(method.getReturnType()));
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == int.class) {
+                return 0;
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Calls {@code /main} on a running server.
+     */
+    static final class RemoteClient implements Client {
+        private final String endpoint;
+
+        RemoteClient(String target) {
+            this.endpoint = (target.endsWith("/") ? target : target + "/") + "main";
+        }
+
+        @Override
+        public JsonObject post(String url) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("url=" + URLEncoder.encode(url, "UTF-8")).getBytes(StandardCharsets.UTF_8));
+            }
+            return read(connection);
+        }
+
+        @Override
+        public JsonObject get(String url, long since) throws IOException {
+            return read((HttpURLConnection) new URL(endpoint + "?url=" + URLEncoder.encode(url, "UTF-8")
+                    + "&since=" + since).openConnection());
+        }
+
+        private static JsonObject read(HttpURLConnection connection) throws IOException {
+            int status = connection.getResponseCode();
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                if (in == null) {
+                    throw new IOException("HTTP " + status);
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                return new JsonParser().parse(new String(body.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+            }
+        }
+    }
+
+    /**
+     * Tracks the most heap in use, by sampling and from the heap pools' peak counters.
+     */
+    static final class HeapSampler {
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicLong maxUsed = new AtomicLong();
+
+        HeapSampler() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+            timer.scheduleAtFixedRate(() -> maxUsed.accumulateAndGet(
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max),
+                    0, 20, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            timer.shutdownNow();
+        }
+
+        long getMaxUsed() {
+            return maxUsed.get();
+        }
+
+        /**
+         * The sum of each heap pool's own peak, an upper bound since the pools peak at different times.
+         */
+        long getPoolPeaks() {
+            long total = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    total += pool.getPeakUsage().getUsed();
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.logging.Level;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoggerTest {
+    @Test
+    public void testWritesQueuedMessagesAboveThreshold() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(Level.INFO, 4, Collections.<Writer>singletonList(out));
+        Assert.assertFalse(logger.isDebugEnabled());
+        logger.debug("hidden");
+        logger.info("first");
+        logger.error("second");
+
+        Assert.assertEquals(2, logger.drain());
+        String[] lines = out.toString().split(System.lineSeparator());
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue(lines[0].matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d INFO first"));
+        Assert.assertTrue(lines[1].endsWith(" SEVERE second"));
+        Assert.assertEquals(2, logger.getWritten());
+    }
+
+    @Test
+    public void testDropsAndReportsMessagesWhenFull() {
+        StringWriter out = new StringWriter();
+        Logger logger = new Logger(Level.INFO, 3, Collections.<Writer>singletonList(out));
+        Assert.assertEquals(4, logger.getCapacity());
+        for (int i = 0; i < 6; i++) {
+            logger.info("message " + i);
+        }
+        Assert.assertEquals(2, logger.getDropped());
+
+        Assert.assertEquals(4, logger.drain());
+        Assert.assertEquals(4, logger.getHighWaterMark());
+        Assert.assertTrue(out.toString().contains("message 3"));
+        Assert.assertFalse(out.toString().contains("message 4"));
+        Assert.assertTrue(out.toString().contains("[Logger] Buffer full, dropped 2 messages"));
+
+        // the slots are free again, and wrap around
+        logger.info("message 6");
+        Assert.assertEquals(1, logger.drain());
+        Assert.assertTrue(out.toString().contains("message 6"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LogoClassifierTest {
+    private static final String HOME = "https://acme.com/";
+    private final LogoClassifier classifier = new LogoClassifier("logo,brand,icon");
+
+    private boolean isLogo(String body) {
+        Document doc = Jsoup.parse("<html><body>" + body + "</body></html>", "https://acme.com/products/list");
+        Element img = doc.selectFirst("img");
+        return classifier.isLogo(img, UrlCanonicalizer.canonicalize(img.absUrl("src")), HOME);
+    }
+
+    @Test
+    public void testMarkupSignalsMakeALogo() {
+        Assert.assertTrue(isLogo("<img src='/img/logo.svg'>"));
+        Assert.assertTrue(isLogo("<img src='/img/a1.png' alt='ACME Logo'>"));
+        Assert.assertTrue(isLogo("<div class='navbar-brand'><img src='/img/a1.png'></div>"));
+        Assert.assertTrue(isLogo("<a href='/'><img src='/img/a1.png'></a>"));
+        Assert.assertTrue(isLogo("<header><a href='https://acme.com'><img src='/img/a1.png'></a></header>"));
+    }
+
+    @Test
+    public void testWeakOrMissingSignalsDoNot() {
+        Assert.assertFalse(isLogo("<img src='/img/shoe.jpg' alt='Red shoe'>"));
+        Assert.assertFalse(isLogo("<nav><img src='/img/arrow.png'></nav>"));
+        Assert.assertFalse(isLogo("<a href='/products/1'><img src='/img/shoe.jpg'></a>"));
+        Assert.assertFalse(new LogoClassifier("logo").isLogo(
+                Jsoup.parse("<img src='https://logo-cdn.com/shoe.jpg'>").selectFirst("img"),
+                "https://logo-cdn.com/shoe.jpg", HOME));
+    }
+
+    @Test
+    public void testIconLinks() {
+        Document doc = Jsoup.parse("<link rel='shortcut icon' href='/favicon.ico'>"
+                + "<link rel='apple-touch-icon' href='/touch.png'><link rel='stylesheet' href='/a.css'>");
+        Assert.assertTrue(LogoClassifier.isIconLink(doc.select("link").get(0)));
+        Assert.assertTrue(LogoClassifier.isIconLink(doc.select("link").get(1)));
+        Assert.assertFalse(LogoClassifier.isIconLink(doc.select("link").get(2)));
+    }
+}
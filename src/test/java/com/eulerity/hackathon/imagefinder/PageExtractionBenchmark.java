@@ -0,0 +1,132 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-page costs of the crawl loop on the checked-in corpus in {@code src/test/resources/corpus}:
+ * the whole extraction {@link ImageCrawler#extractPage(String, FetchResponse)} does, the same extraction
+ * through the Jsoup fallback of {@link PageExtractor}, the Jsoup parse alone, logo classification of
+ * every image, and the same-domain filter over every link.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dimagefinder.store.dir=")
+public class PageExtractionBenchmark {
+    private static final String BASE_URL = "https://www.example.com/";
+
+    @Param({"news", "shop", "blog", "landing"})
+    public String page;
+
+    private String url;
+    private FetchResponse response;
+    private Elements images;
+    private String[] imageUrls;
+    private String[] links;
+    private String homeUrl;
+    private ImageCrawler crawler;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] body = load("/corpus/" + page + ".html");
+        url = BASE_URL + page + ".html";
+        response = new FetchResponse(url, 200,
+                Collections.singletonMap("Content-Type", "text/html; charset=utf-8"), body);
+        Document document = Jsoup.parse(new String(body, StandardCharsets.UTF_8), url);
+        images = document.select("img");
+        imageUrls = new String[images.size()];
+        for (int i = 0; i < images.size(); i++) {
+            imageUrls[i] = UrlCanonicalizer.canonicalize(images.get(i).absUrl("src"));
+        }
+        links = ImageCrawler.extractPage(url, response).getLinks().toArray(new String[0]);
+        homeUrl = UrlCanonicalizer.canonicalize(BASE_URL);
+        crawler = newCrawler();
+    }
+
+    @Benchmark
+    public PageExtraction extractPage() {
+        return ImageCrawler.extractPage(url, response);
+    }
+
+    @Benchmark
+    public PageExtraction extractWithJsoup() throws IOException {
+        return new PageExtractor(url).parseWithJsoup(response);
+    }
+
+    @Benchmark
+    public Document parseOnly() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.getCharset(), url);
+    }
+
+    @Benchmark
+    public int classifyLogos() {
+        LogoClassifier classifier = LogoClassifier.getInstance();
+        int logos = 0;
+        for (int i = 0; i < imageUrls.length; i++) {
+            Element img = images.get(i);
+            if (classifier.isLogo(img, imageUrls[i], homeUrl)) {
+                logos++;
+            }
+        }
+        return logos;
+    }
+
+    @Benchmark
+    public int sameDomainLinks() {
+        int sameDomain = 0;
+        for (String link : links) {
+            if (crawler.isSameDomain(link)) {
+                sameDomain++;
+            }
+        }
+        return sameDomain;
+    }
+
+    private static ImageCrawler newCrawler() {
+        try {
+            return new ImageCrawler(BASE_URL, 1);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] load(String resource) throws IOException {
+        try (InputStream in = PageExtractionBenchmark.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing corpus page " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PageExtractorTest {
+    private static final String URL = "https://www.example.com/news/today.html";
+
+    @Test
+    public void testStreamingMatchesJsoupOnCorpus() throws IOException {
+        for (String page : new String[]{"news", "shop", "blog", "landing"}) {
+            FetchResponse response = response(PageExtractionBenchmark.load("/corpus/" + page + ".html"));
+            PageExtraction streamed = new PageExtractor(URL).stream(
+                    new StringReader(new String(response.getBody(), StandardCharsets.UTF_8)));
+            PageExtraction parsed = new PageExtractor(URL).parseWithJsoup(response);
+
+            Assert.assertNotNull(page, streamed);
+            Assert.assertEquals(page, parsed.getImageUrls(), streamed.getImageUrls());
+            Assert.assertEquals(page, logos(parsed), logos(streamed));
+            Assert.assertEquals(page, parsed.getLinks(), streamed.getLinks());
+        }
+    }
+
+    @Test
+    public void testStreamsImageSourcesLinksAndLogos() throws IOException {
+        String html = "<!DOCTYPE html><html><head><base href=\"/static/\">"
+                + "<link rel=\"shortcut icon\" href=\"favicon.ico\"><script>var s = '<img src=\"no.png\">';</script>"
+                + "<style>a > img { border: 0 }</style></head><body>"
+                + "<!-- <img src=\"commented.png\"> --><header><a href=\"https://www.example.com/\">"
+                + "<img src=\"data:image/gif;base64,R0lGOD\" data-src=\"brand.png\" alt=\"\"></a></header>"
+                + "<ul><li><img src=a.jpg?w=1&amp;h=2 srcset=\"a.jpg 1x, a@2x.jpg 2x\"><li><a href=page.html>More</a></ul>"
+                + "<p><a href=\"\">Here</a><IMG SRC='b.png' title=\"Photo\"></p><img src=\"cut";
+        PageExtraction extraction = new PageExtractor(URL).stream(new StringReader(html));
+
+        Assert.assertEquals(Arrays.asList(
+                "https://www.example.com/static/favicon.ico",
+                "https://www.example.com/static/brand.png",
+                "https://www.example.com/static/a.jpg?w=1&h=2",
+                "https://www.example.com/static/a.jpg",
+                "https://www.example.com/static/a@2x.jpg",
+                "https://www.example.com/static/b.png"), extraction.getImageUrls());
+        Assert.assertEquals(Arrays.asList("https://www.example.com/", "https://www.example.com/static/page.html"),
+                extraction.getLinks());
+        Assert.assertTrue(extraction.isLogo("https://www.example.com/static/favicon.ico"));
+        Assert.assertTrue(extraction.isLogo("https://www.example.com/static/brand.png"));
+        Assert.assertFalse(extraction.isLogo("https://www.example.com/static/b.png"));
+        Assert.assertEquals("a&b<\u00e9A&bogus; & x", PageExtractor.decodeEntities("a&amp;b&lt;&eacute;&#x41;&bogus; & x"));
+    }
+
+    @Test
+    public void testStopsAtLimitsAndFallsBackOnBrokenMarkup() throws IOException {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            html.append("<a href=\"/p").append(i).append("\"><img src=\"/i").append(i).append(".png\"></a>");
+        }
+        PageExtraction limited = new PageExtractor(URL, 3, 2).stream(new StringReader(html.toString()));
+        Assert.assertEquals(3, limited.getImageUrls().size());
+        Assert.assertEquals(2, limited.getLinks().size());
+
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i <= PageExtractor.MAX_DEPTH; i++) {
+            nested.append("<div>");
+        }
+        nested.append("<img src=\"deep.png\">");
+        Assert.assertNull(new PageExtractor(URL).stream(new StringReader(nested.toString())));
+
+        long fallbacks = PageExtractor.getFallbackCount();
+        PageExtraction parsed = new PageExtractor(URL).extract(response(nested.toString().getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(Collections.singletonList("https://www.example.com/news/deep.png"), parsed.getImageUrls());
+        Assert.assertEquals(fallbacks + 1, PageExtractor.getFallbackCount());
+    }
+
+    private static List<String> logos(PageExtraction extraction) {
+        List<String> logos = new ArrayList<>();
+        for (String image : extraction.getImageUrls()) {
+            if (extraction.isLogo(image)) {
+                logos.add(image);
+            }
+        }
+        return logos;
+    }
+
+    private static FetchResponse response(byte[] body) {
+        return new FetchResponse(URL, 200, Collections.singletonMap("Content-Type", "text/html; charset=utf-8"), body);
+    }
+}
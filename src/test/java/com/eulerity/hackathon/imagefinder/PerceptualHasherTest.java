@@ -0,0 +1,56 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PerceptualHasherTest {
+    private static BufferedImage scene(int width, int height, boolean mirrored) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, mirrored ? Color.BLACK : Color.WHITE,
+                width, height, mirrored ? Color.WHITE : Color.BLACK));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.RED);
+        g.fillOval(width / 4, height / 4, width / 3, height / 2);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testResizedAndReencodedCopiesHashClose() throws IOException {
+        Long original = PerceptualHasher.hash(encode(scene(800, 600, false), "png"));
+        Long thumbnail = PerceptualHasher.hash(encode(scene(200, 150, false), "jpg"));
+        Long other = PerceptualHasher.hash(encode(scene(800, 600, true), "png"));
+        Assert.assertNotNull(original);
+        Assert.assertTrue(Long.bitCount(original ^ thumbnail) <= 6);
+        Assert.assertTrue(Long.bitCount(original ^ other) > 6);
+        Assert.assertNull(PerceptualHasher.hash(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testBkTreeFindsClosestWithinDistance() {
+        HammingBkTree tree = new HammingBkTree();
+        tree.add(0L, 1);
+        tree.add(0xFFL, 2);
+        tree.add(-1L, 3);
+        Assert.assertEquals(1, tree.find(0x3L, 4));
+        Assert.assertEquals(2, tree.find(0x7FL, 4));
+        Assert.assertEquals(-1, tree.find(0xFFFF_0000L, 4));
+        Assert.assertEquals(3, tree.size());
+    }
+}
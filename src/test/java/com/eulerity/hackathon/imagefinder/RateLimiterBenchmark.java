@@ -0,0 +1,132 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and accuracy of {@link RateLimiter} under contention, against the previous
+ * synchronized implementation.
+ * <p>
+ * Limiters are configured for {@code rate} permits per second. The {@code granted} counter is the
+ * accuracy figure: it should stay close to {@code rate} ops/s, while the primary score is the
+ * raw call throughput. At 5/s the legacy limiter's refill truncation starves it completely.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private static final int CAPACITY = 10;
+
+    @State(Scope.Benchmark)
+    public static class Limiters {
+        @Param({"1000", "5"})
+        public int rate;
+
+        RateLimiter limiter;
+        LegacyRateLimiter legacy;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            limiter = RateLimiter.perSecond(rate, CAPACITY);
+            legacy = new LegacyRateLimiter(CAPACITY, 1000 / rate);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long granted;
+        public long denied;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            granted = 0;
+            denied = 0;
+        }
+    }
+
+    @Benchmark
+    public boolean tryAcquire(Limiters limiters, Counters counters) {
+        boolean allowed = limiters.limiter.tryAcquire();
+        if (allowed) {
+            counters.granted++;
+        } else {
+            counters.denied++;
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    public boolean legacyAllowRequest(Limiters limiters, Counters counters) {
+        boolean allowed = limiters.legacy.allowRequestTokenBucket();
+        if (allowed) {
+            counters.granted++;
+        } else {
+            counters.denied++;
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    public boolean acquireBlocking(Limiters limiters, Counters counters) throws InterruptedException {
+        boolean allowed = limiters.limiter.acquire(100, TimeUnit.MILLISECONDS);
+        if (allowed) {
+            counters.granted++;
+        } else {
+            counters.denied++;
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    public void acquireAsync(Limiters limiters, Counters counters) {
+        limiters.limiter.acquireAsync().join();
+        counters.granted++;
+    }
+
+    /**
+     * The synchronized, millisecond-truncating limiter this class replaced.
+     */
+    static final class LegacyRateLimiter {
+        private final int bucketCapacity;
+        private final long leakRateMs;
+        private long lastLeakTime;
+        private final AtomicInteger bucketSize = new AtomicInteger(0);
+
+        LegacyRateLimiter(int bucketCapacity, long leakRateMs) {
+            this.bucketCapacity = bucketCapacity;
+            this.leakRateMs = leakRateMs;
+            this.lastLeakTime = System.currentTimeMillis();
+        }
+
+        synchronized boolean allowRequestTokenBucket() {
+            long now = System.currentTimeMillis();
+            int newTokens = (int) ((now - lastLeakTime) / leakRateMs);
+            lastLeakTime = now;
+            bucketSize.getAndUpdate(size -> Math.min(bucketCapacity, size + newTokens));
+            if (bucketSize.get() > 0) {
+                bucketSize.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
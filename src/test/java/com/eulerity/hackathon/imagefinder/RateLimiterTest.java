@@ -0,0 +1,92 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testWaitersAreServedInArrivalOrder() throws Exception {
+        RateLimiter limiter = RateLimiter.perSecond(50, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int waiter = i;
+            permits.add(limiter.acquireAsync().thenRun(() -> order.add(waiter)));
+        }
+        // a token that frees up goes to the queue, not to a caller barging in
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(4, limiter.getWaitCount());
+
+        CompletableFuture.allOf(permits.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), order);
+        Assert.assertEquals(0, limiter.getWaiterCount());
+    }
+
+    @Test
+    public void testTimedAcquireGivesUpItsPlace() throws InterruptedException {
+        RateLimiter limiter = RateLimiter.perSecond(1, 1);
+        Assert.assertTrue(limiter.acquire(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        Assert.assertFalse(limiter.acquire(50, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(0, limiter.getWaiterCount());
+    }
+
+    @Test
+    public void testCancelledWaiterLeavesTokenToTheNext() throws Exception {
+        RateLimiter limiter = RateLimiter.perSecond(4, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+        CompletableFuture<Void> cancelled = limiter.acquireAsync();
+        CompletableFuture<Void> next = limiter.acquireAsync();
+
+        long start = System.nanoTime();
+        Assert.assertTrue(cancelled.cancel(true));
+        Assert.assertEquals(1, limiter.getWaiterCount());
+        next.get(5, TimeUnit.SECONDS);
+        // the next token is due after 250 ms; had the cancelled waiter used it, the wait would be 500 ms
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(450));
+        Assert.assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    public void testInterruptedAcquireRefundsItsToken() throws Exception {
+        RateLimiter limiter = RateLimiter.perSecond(2, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            done.countDown();
+        });
+        waiter.start();
+        while (limiter.getWaiterCount() == 0) {
+            Thread.sleep(1);
+        }
+        long start = System.nanoTime();
+        waiter.interrupt();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(interrupted.get());
+
+        // the token the interrupted thread gave up, or never took, goes to the next caller when due
+        limiter.acquireAsync().get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+    }
+}
@@ -0,0 +1,91 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+    private static CompletableFuture<CrawlResult> done() {
+        return CompletableFuture.completedFuture(new CrawlResult("completed", "ok", null, null));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedFinishedJobs() {
+        ResultCache cache = new ResultCache(2, Long.MAX_VALUE, Long.MAX_VALUE, System::nanoTime);
+        CompletableFuture<CrawlResult> running = new CompletableFuture<>();
+        cache.put("a", running, null);
+        cache.put("b", done(), null);
+        cache.put("c", done(), null);
+
+        // "a" is older but still running, so "b" goes
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictions());
+
+        running.complete(new CrawlResult("completed", "ok", null, null));
+        cache.get("a");
+        cache.put("d", done(), null);
+        Assert.assertNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsToStayWithinByteBudget() {
+        ResultCache cache = new ResultCache(100, 10_000, Long.MAX_VALUE, System::nanoTime);
+        ResultLog big = new ResultLog();
+        for (int i = 0; i < 100; i++) {
+            big.append("http://example.com/images/" + i + ".png", false);
+        }
+        Assert.assertTrue(big.estimateBytes() > 10_000);
+
+        cache.put("small", done(), new ResultLog());
+        cache.put("big", done(), big);
+        Assert.assertNull(cache.get("small"));
+        Assert.assertNull(cache.get("big"));
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testPutIfAbsentJoinsOrReplaces() {
+        ResultCache cache = new ResultCache(100, Long.MAX_VALUE, Long.MAX_VALUE, System::nanoTime);
+        ResultCache.Job first = cache.putIfAbsent("a", new CompletableFuture<>(), null, job -> false);
+        Assert.assertSame(first, cache.putIfAbsent("a", new CompletableFuture<>(), null, job -> false));
+
+        ResultCache.Job second = cache.putIfAbsent("a", new CompletableFuture<>(), null, job -> true);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(second, cache.get("a"));
+
+        // a stale job cannot remove the one that replaced it
+        cache.remove("a", first);
+        Assert.assertSame(second, cache.get("a"));
+        cache.remove("a", second);
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testFinishedJobsExpireAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        ResultCache cache = new ResultCache(100, Long.MAX_VALUE, 1000, now::get);
+        CompletableFuture<CrawlResult> running = new CompletableFuture<>();
+        cache.put("running", running, null);
+        cache.put("done", done(), null);
+
+        now.set(2000);
+        cache.sweep();
+        Assert.assertNotNull(cache.get("running"));
+        Assert.assertNull(cache.get("done"));
+
+        running.complete(new CrawlResult("completed", "ok", null, null));
+        now.set(2500);
+        Assert.assertNotNull(cache.get("running"));
+        now.set(3001);
+        Assert.assertNull(cache.get("running"));
+        Assert.assertEquals(2, cache.getExpirations());
+    }
+}
@@ -0,0 +1,94 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResultLogTest {
+
+    @Test
+    public void testReadSinceCursorReturnsOnlyNewEntries() {
+        ResultLog log = new ResultLog();
+        Assert.assertEquals(1, log.append("http://a.com/1.png", false));
+        Assert.assertEquals(2, log.append("http://a.com/logo.png", true));
+
+        ResultLog.Slice first = log.read(0);
+        // logos are listed with the images and once more on their own
+        Assert.assertEquals(Arrays.asList("http://a.com/1.png", "http://a.com/logo.png"), first.getImages());
+        Assert.assertEquals(Collections.singletonList("http://a.com/logo.png"), first.getLogos());
+        Assert.assertEquals(2, first.getCursor());
+
+        log.append("http://a.com/2.png", false);
+        ResultLog.Slice next = log.read(first.getCursor());
+        Assert.assertEquals(Collections.singletonList("http://a.com/2.png"), next.getImages());
+        Assert.assertTrue(next.getLogos().isEmpty());
+        Assert.assertEquals(3, next.getCursor());
+
+        ResultLog.Slice none = log.read(next.getCursor());
+        Assert.assertTrue(none.getImages().isEmpty());
+        Assert.assertEquals(3, none.getCursor());
+    }
+
+    @Test
+    public void testReadAcrossChunksWithLimit() {
+        ResultLog log = new ResultLog();
+        for (int i = 0; i < 5000; i++) {
+            log.append("http://a.com/" + i + ".png", i % 100 == 0);
+        }
+        Assert.assertEquals(5000, log.size());
+        Assert.assertEquals(50, log.getLogoCount());
+
+        ResultLog.Slice slice = log.read(1020, 10);
+        Assert.assertEquals(1030, slice.getCursor());
+        Assert.assertEquals(Arrays.asList("http://a.com/1020.png", "http://a.com/1021.png"),
+                slice.getImages().subList(0, 2));
+        Assert.assertEquals(10, slice.getImages().size());
+
+        Assert.assertEquals(5000, log.read(-7).getImages().size());
+        Assert.assertEquals(50, log.read(-7).getLogos().size());
+        Assert.assertEquals(5000, log.read(99999).getCursor());
+    }
+
+    @Test
+    public void testMetadataCarriesImageInfoAndClusterSize() {
+        ResultLog log = new ResultLog();
+        log.append("http://a.com/1.jpg", false, new ImageInfo("jpeg", 640, 480, 52_000, "image/jpeg"));
+        long logo = log.append("http://a.com/logo.png", true);
+        Assert.assertEquals(2, log.addVariant(logo));
+        Assert.assertEquals("http://a.com/logo.png", log.urlAt(logo));
+
+        ImageMetadata photo = log.read(0).getMetadata().get(0);
+        Assert.assertEquals("jpeg", photo.getFormat());
+        Assert.assertEquals(Integer.valueOf(640), photo.getWidth());
+        Assert.assertEquals(Integer.valueOf(480), photo.getHeight());
+        Assert.assertEquals(Long.valueOf(52_000), photo.getBytes());
+        Assert.assertEquals("image/jpeg", photo.getContentType());
+        Assert.assertEquals(1, photo.getClusterSize());
+
+        ImageMetadata brand = log.read(1).getMetadata().get(0);
+        Assert.assertTrue(brand.isLogo());
+        Assert.assertNull(brand.getFormat());
+        Assert.assertNull(brand.getBytes());
+        Assert.assertEquals(2, brand.getClusterSize());
+    }
+
+    @Test
+    public void testListenersHearEntriesAppendedWhileSubscribed() {
+        ResultLog log = new ResultLog();
+        log.append("https://a.com/before.png", false);
+        List<String> heard = new ArrayList<>();
+        CrawlListener listener = (imageUrl, logo) -> heard.add(imageUrl + (logo ? " logo" : ""));
+        log.addListener(listener);
+        log.append("https://a.com/logo.png", true);
+        log.append("https://a.com/x.png", false);
+        log.removeListener(listener);
+        log.append("https://a.com/after.png", false);
+
+        Assert.assertEquals(Arrays.asList("https://a.com/logo.png logo", "https://a.com/x.png"), heard);
+        Assert.assertEquals(4, log.size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and serializing a crawl result the way {@code ImageFinder} answers a poll: a slice of the
+ * {@link ResultLog} with per-image metadata, written with the servlet's pretty-printing Gson, and for
+ * comparison with a compact one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSerializationBenchmark {
+    private static final Gson PRETTY = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson COMPACT = new Gson();
+
+    @Param({"100", "2000"})
+    public int images;
+
+    private ResultLog log;
+    private CrawlResult result;
+
+    @Setup
+    public void setUp() {
+        log = new ResultLog();
+        for (int i = 0; i < images; i++) {
+            String format = i % 3 == 0 ? "png" : "jpeg";
+            ImageInfo info = new ImageInfo(format, 300 + i % 500, 200 + i % 300, 10_240L + i * 37L, "image/" + format);
+            long sequence = log.append("https://static.example-cdn.com/images/2026/10/story-" + i + "-1024x683.jpg",
+                    i % 50 == 0, info);
+            if (i % 10 == 0) {
+                log.addVariant(sequence);
+            }
+        }
+        result = new CrawlResult("completed", "Crawling completed successfully.", log.read(0));
+    }
+
+    @Benchmark
+    public String sliceAndSerialize() {
+        return PRETTY.toJson(new CrawlResult("completed", "Crawling completed successfully.", log.read(0)));
+    }
+
+    @Benchmark
+    public String serializePretty() {
+        return PRETTY.toJson(result);
+    }
+
+    @Benchmark
+    public String serializeCompact() {
+        return COMPACT.toJson(result);
+    }
+}
@@ -0,0 +1,59 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RobotsCacheTest {
+
+    @Test
+    public void testMissesShareOneFetchWithoutBlocking() throws Exception {
+        List<CompletableFuture<FetchResponse>> fetches = new ArrayList<>();
+        RobotsCache cache = new RobotsCache((url, headers, maxBytes, timeout) -> {
+            CompletableFuture<FetchResponse> response = new CompletableFuture<>();
+            fetches.add(response);
+            return response;
+        }, 10);
+
+        CompletableFuture<Boolean> first = cache.isAllowedAsync("http://a.com/private/x");
+        CompletableFuture<Boolean> second = cache.isAllowedAsync("http://a.com/public");
+        Assert.assertFalse(first.isDone());
+        Assert.assertEquals(1, fetches.size());
+        Assert.assertEquals(1, cache.getMisses());
+
+        fetches.get(0).complete(new FetchResponse("http://a.com/robots.txt", 200, Collections.<String, String>emptyMap(),
+                "User-agent: *\nDisallow: /private\n".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertFalse(first.get());
+        Assert.assertTrue(second.get());
+        Assert.assertTrue(cache.isAllowed("http://a.com/"));
+        Assert.assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void testFailedFetchAllowsAndLeastRecentlyUsedHostIsEvicted() throws Exception {
+        RobotsCache cache = new RobotsCache((url, headers, maxBytes, timeout) -> {
+            CompletableFuture<FetchResponse> response = new CompletableFuture<>();
+            response.completeExceptionally(new IOException("unreachable"));
+            return response;
+        }, 2);
+
+        Assert.assertTrue(cache.isAllowed("http://a.com/x"));
+        cache.getRules(new URL("http://b.com/"));
+        cache.getRules(new URL("http://a.com/"));
+        cache.getRules(new URL("http://c.com/"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, cache.getMisses());
+
+        cache.getRules(new URL("http://a.com/"));
+        Assert.assertEquals(3, cache.getMisses());
+        cache.getRules(new URL("http://b.com/"));
+        Assert.assertEquals(4, cache.getMisses());
+    }
+}
@@ -0,0 +1,105 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RobotsRulesTest {
+
+    @Test
+    public void testEmptyContentAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("", "imagefinder");
+        Assert.assertTrue(rules.isAllowed("/anything"));
+        Assert.assertEquals(0, rules.size());
+    }
+
+    @Test
+    public void testDisallowIsPrefixMatchNotSubstring() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /private\n", "imagefinder");
+        Assert.assertFalse(rules.isAllowed("/private/page"));
+        Assert.assertTrue(rules.isAllowed("/public/private"));
+    }
+
+    @Test
+    public void testLongestMatchWinsAndAllowWinsTie() {
+        String content = "User-agent: *\n"
+                + "Disallow: /shop\n"
+                + "Allow: /shop/images\n"
+                + "Disallow: /same\n"
+                + "Allow: /same\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertFalse(rules.isAllowed("/shop/cart"));
+        Assert.assertTrue(rules.isAllowed("/shop/images/a.png"));
+        Assert.assertTrue(rules.isAllowed("/same/page"));
+    }
+
+    @Test
+    public void testSpecificAgentGroupOverridesWildcard() {
+        String content = "User-agent: *\n"
+                + "Disallow: /\n"
+                + "\n"
+                + "User-agent: ImageFinder\n"
+                + "Disallow: /admin\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertTrue(rules.isAllowed("/gallery"));
+        Assert.assertFalse(rules.isAllowed("/admin/users"));
+
+        RobotsRules others = RobotsRules.parse(content, "otherbot");
+        Assert.assertFalse(others.isAllowed("/gallery"));
+    }
+
+    @Test
+    public void testGroupWithSeveralAgents() {
+        String content = "User-agent: googlebot\n"
+                + "User-agent: imagefinder\n"
+                + "Disallow: /tmp # comment\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertFalse(rules.isAllowed("/tmp/x"));
+        Assert.assertTrue(rules.isAllowed("/x"));
+    }
+
+    @Test
+    public void testWildcardAndEndAnchor() {
+        String content = "User-agent: *\n"
+                + "Disallow: /*.gif$\n"
+                + "Disallow: /*?session=\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertFalse(rules.isAllowed("/images/a.gif"));
+        Assert.assertTrue(rules.isAllowed("/images/a.gif?x=1"));
+        Assert.assertFalse(rules.isAllowed("/page?session=42"));
+        Assert.assertTrue(rules.isAllowed("/page?id=42"));
+    }
+
+    @Test
+    public void testEmptyDisallowAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow:\n", "imagefinder");
+        Assert.assertTrue(rules.isAllowed("/"));
+    }
+
+    @Test
+    public void testOwnGroupWithoutRulesAllowsEverything() {
+        String content = "User-agent: *\n"
+                + "Disallow: /\n"
+                + "\n"
+                + "User-agent: imagefinder\n"
+                + "Crawl-delay: 1\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertTrue(rules.isAllowed("/gallery"));
+        Assert.assertFalse(RobotsRules.parse(content, "otherbot").isAllowed("/gallery"));
+    }
+
+    @Test
+    public void testAgentMatchesProductTokenOnly() {
+        String content = "User-agent: finder\n"
+                + "Disallow: /a\n"
+                + "\n"
+                + "User-agent: imagefinderbot\n"
+                + "Disallow: /b\n"
+                + "\n"
+                + "User-agent: ImageFinder/2.1\n"
+                + "Disallow: /c\n";
+        RobotsRules rules = RobotsRules.parse(content, "imagefinder");
+        Assert.assertTrue(rules.isAllowed("/a"));
+        Assert.assertTrue(rules.isAllowed("/b"));
+        Assert.assertFalse(rules.isAllowed("/c"));
+    }
+}
@@ -0,0 +1,324 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that makes up image-heavy sites on the fly, for crawling offline.
+ * <p>
+ * Each site is a tree of pages: {@code /} is the root, and page {@code n} links to its {@code fanOut}
+ * children {@code /page-<n*fanOut+1>.html} and on, down to {@code depth} levels or {@code pages} pages,
+ * whichever is reached first. Each page also links home, to one page at random and off-site. Every page has
+ * {@code imagesPerPage} images of its own, which are random-noise PNGs of {@code imageWidth} x
+ * {@code imageHeight} pixels, so they are not near-duplicates of each other. Every page also has a
+ * header logo and a banner that all pages share. With {@code robots} on, {@code /robots.txt} disallows
+ * {@code /private/}, and every page links into it.
+ * <p>
+ * The server answers on every loopback address. The host of a request seeds its pictures, so
+ * {@code 127.0.0.2} and {@code 127.0.0.3} serve different images. Crawling them in parallel also keeps
+ * them in separate politeness queues. Each response is delayed by {@code latencyMillis} plus up to
+ * {@code jitterMillis}, and fails with a 500 with probability {@code errorRate}.
+ */
+public class SyntheticSite implements AutoCloseable {
+    private static final int IMAGE_CACHE_SIZE = 512;
+
+    private final Config config;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "synthetic-site");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+    private final LongAdder pageRequests = new LongAdder();
+    private final LongAdder imageRequests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    /**
+     * What the generated sites look like and how the server behaves.
+     */
+    public static class Config {
+        /**
+         * Pages per site.
+         */
+        public int pages = 200;
+        /**
+         * Links from a page to its children.
+         */
+        public int fanOut = 20;
+        /**
+         * Levels of pages below the root.
+         */
+        public int depth = 3;
+        /**
+         * Images of its own on each page.
+         */
+        public int imagesPerPage = 8;
+        /**
+         * Image width in pixels.
+         */
+        public int imageWidth = 160;
+        /**
+         * Image height in pixels.
+         */
+        public int imageHeight = 120;
+        /**
+         * Fixed delay of every response.
+         */
+        public int latencyMillis = 0;
+        /**
+         * Random extra delay of every response, up to this much.
+         */
+        public int jitterMillis = 0;
+        /**
+         * Probability that a response is a 500.
+         */
+        public double errorRate = 0;
+        /**
+         * Whether to serve a robots.txt that disallows {@code /private/}.
+         */
+        public boolean robots = true;
+    }
+
+    /**
+     * Start a server on an ephemeral port.
+     *
+     * @param config the site shape
+     * @throws IOException if the server cannot bind
+     */
+    public SyntheticSite(Config config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress(0), 256);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Gets the port.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the home page url of a site.
+     *
+     * @param site the site number, from 0 to 253
+     * @return the url
+     */
+    public String siteUrl(int site) {
+        return "http://127.0.0." + (site % 254 + 1) + ":" + getPort() + "/";
+    }
+
+    /**
+     * Gets the number of pages served, errors and 404s included, robots.txt not.
+     *
+     * @return the page requests
+     */
+    public long getPageRequests() {
+        return pageRequests.sum();
+    }
+
+    /**
+     * Gets the number of images served, errors included.
+     *
+     * @return the image requests
+     */
+    public long getImageRequests() {
+        return imageRequests.sum();
+    }
+
+    /**
+     * Gets the number of injected errors.
+     *
+     * @return the errors
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the response body bytes sent.
+     *
+     * @return the bytes
+     */
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String host = String.valueOf(exchange.getRequestHeaders().getFirst("Host"));
+            boolean image = path.startsWith("/img/");
+            if (image) {
+                imageRequests.increment();
+            } else if (!path.equals("/robots.txt")) {
+                pageRequests.increment();
+            }
+            delay();
+            if (config.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < config.errorRate) {
+                errors.increment();
+                send(exchange, 500, "text/plain", "injected error".getBytes(StandardCharsets.UTF_8));
+            } else if (path.equals("/robots.txt")) {
+                if (config.robots) {
+                    send(exchange, 200, "text/plain", "User-agent: *\nDisallow: /private/\n".getBytes(StandardCharsets.UTF_8));
+                } else {
+                    send(exchange, 404, "text/plain", new byte[0]);
+                }
+            } else if (image) {
+                send(exchange, 200, "image/png", image(host, path));
+            } else {
+                int page = pageNumber(path);
+                if (page < 0) {
+                    send(exchange, 404, "text/html; charset=utf-8", "<html><body>Not found</body></html>"
+                            .getBytes(StandardCharsets.UTF_8));
+                } else {
+                    send(exchange, 200, "text/html; charset=utf-8", page(page).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void delay() {
+        int millis = config.latencyMillis
+                + (config.jitterMillis > 0 ? ThreadLocalRandom.current().nextInt(config.jitterMillis + 1) : 0);
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        bytesServed.add(body.length);
+    }
+
+    /**
+     * The page number of a path: 0 for the root, -1 for pages the site does not have.
+     */
+    private int pageNumber(String path) {
+        if (path.equals("/") || path.equals("/index.html")) {
+            return 0;
+        }
+        if (!path.startsWith("/page-") || !path.endsWith(".html")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring("/page-".length(), path.length() - ".html".length()));
+            return page > 0 && page < pageCount() ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The number of pages: a full tree of the configured fan-out and depth, cut off at {@code pages}.
+     */
+    int pageCount() {
+        long count = 1;
+        long level = 1;
+        for (int d = 0; d < config.depth && count < config.pages; d++) {
+            level *= Math.max(1, config.fanOut);
+            count += level;
+        }
+        return (int) Math.min(count, config.pages);
+    }
+
+    String page(int page) {
+        int pages = pageCount();
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Page ").append(page)
+                .append("</title><link rel=\"icon\" href=\"/img/favicon.png\"></head>\n<body>\n")
+                .append("<header><a href=\"/\"><img src=\"/img/logo.png\" alt=\"Synthetic logo\"></a></header>\n")
+                .append("<img class=\"banner\" src=\"/img/banner.png\" alt=\"\">\n<nav>\n");
+        for (int i = 1; i <= config.fanOut; i++) {
+            long child = (long) page * config.fanOut + i;
+            if (child < pages) {
+                html.append("<a href=\"/page-").append(child).append(".html\">Page ").append(child).append("</a>\n");
+            }
+        }
+        Random random = new Random(page);
+        html.append("<a href=\"/\">Home</a>\n");
+        if (pages > 1) {
+            html.append("<a href=\"/page-").append(1 + random.nextInt(pages - 1)).append(".html\">Elsewhere</a>\n");
+        }
+        if (config.robots) {
+            html.append("<a href=\"/private/page-").append(page).append(".html\">Members</a>\n");
+        }
+        html.append("<a href=\"https://elsewhere.example/\">Off-site</a>\n</nav>\n<main>\n");
+        for (int i = 0; i < config.imagesPerPage; i++) {
+            html.append("<figure><img src=\"/img/p").append(page).append("-").append(i)
+                    .append(".png\" alt=\"Picture ").append(i).append("\"><figcaption>Picture ").append(i)
+                    .append(" of page ").append(page).append("</figcaption></figure>\n");
+        }
+        return html.append("</main>\n</body></html>\n").toString();
+    }
+
+    private byte[] image(String host, String path) throws IOException {
+        String key = host + path;
+        synchronized (images) {
+            byte[] cached = images.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        BufferedImage image = new BufferedImage(config.imageWidth, config.imageHeight, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(key.hashCode());
+        for (int y = 0; y < config.imageHeight; y++) {
+            for (int x = 0; x < config.imageWidth; x++) {
+                image.setRGB(x, y, random.nextInt(1 << 24));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        byte[] bytes = out.toByteArray();
+        synchronized (images) {
+            images.put(key, bytes);
+        }
+        return bytes;
+    }
+}
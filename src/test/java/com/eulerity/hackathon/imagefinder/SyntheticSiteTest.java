@@ -0,0 +1,66 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SyntheticSiteTest {
+    @Test
+    public void testServesPageTreeRobotsAndImages() throws IOException {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.pages = 7;
+        config.fanOut = 3;
+        config.imagesPerPage = 2;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            Assert.assertEquals(7, site.pageCount());
+            String home = new String(get(site.siteUrl(0), 200), StandardCharsets.UTF_8);
+            Assert.assertTrue(home.contains("href=\"/page-1.html\"") && home.contains("href=\"/page-3.html\""));
+            Assert.assertTrue(home.contains("src=\"/img/p0-1.png\""));
+            Assert.assertTrue(new String(get(site.siteUrl(0) + "robots.txt", 200), StandardCharsets.UTF_8)
+                    .contains("Disallow: /private/"));
+            get(site.siteUrl(0) + "page-7.html", 404);
+
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(get(site.siteUrl(0) + "img/p0-1.png", 200)));
+            Assert.assertEquals(config.imageWidth, image.getWidth());
+            Assert.assertEquals(config.imageHeight, image.getHeight());
+            Assert.assertEquals(2, site.getPageRequests());
+            Assert.assertEquals(1, site.getImageRequests());
+        }
+    }
+
+    @Test
+    public void testInjectsErrors() throws IOException {
+        SyntheticSite.Config config = new SyntheticSite.Config();
+        config.errorRate = 1;
+        try (SyntheticSite site = new SyntheticSite(config)) {
+            get(site.siteUrl(1), 500);
+            Assert.assertEquals(1, site.getErrors());
+        }
+    }
+
+    private static byte[] get(String url, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        Assert.assertEquals(expectedStatus, connection.getResponseCode());
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+}
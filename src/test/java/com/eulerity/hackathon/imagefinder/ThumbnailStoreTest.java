@@ -0,0 +1,67 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThumbnailStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BufferedImage image(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb ^ (x * y));
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void testSamePictureUnderTwoUrlsIsStoredOnce() throws IOException {
+        ThumbnailStore store = new ThumbnailStore(folder.getRoot().toPath(), 1 << 20, 32);
+        byte[] original = {1, 2, 3};
+        store.put("http://a.com/1.jpg", original, image(640, 320, 0x336699));
+        store.put("http://b.com/copy.jpg", original, image(640, 320, 0x336699));
+
+        Path first = store.find("http://a.com/1.jpg");
+        Assert.assertNotNull(first);
+        Assert.assertEquals(first, store.find("http://b.com/copy.jpg"));
+        Assert.assertEquals(1, store.size());
+        Assert.assertNull(store.find("http://a.com/unknown.jpg"));
+
+        store.alias("http://a.com/1-300x150.jpg", "http://a.com/1.jpg");
+        Assert.assertEquals(first, store.find("http://a.com/1-300x150.jpg"));
+
+        BufferedImage thumbnail = ImageIO.read(first.toFile());
+        Assert.assertEquals(32, thumbnail.getWidth());
+        Assert.assertEquals(16, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvictedPastTheByteBudget() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        ThumbnailStore probe = new ThumbnailStore(folder.newFolder().toPath(), Long.MAX_VALUE, 64);
+        probe.put("http://a.com/x.jpg", new byte[]{0}, image(64, 64, 0x102030));
+        long oneFile = probe.getBytes();
+
+        ThumbnailStore store = new ThumbnailStore(dir, oneFile * 2 + oneFile / 2, 64);
+        store.put("http://a.com/1.jpg", new byte[]{1}, image(64, 64, 0x102030));
+        store.put("http://a.com/2.jpg", new byte[]{2}, image(64, 64, 0x102030));
+        Assert.assertNotNull(store.find("http://a.com/1.jpg")); // now 2 is the least recently used
+        store.put("http://a.com/3.jpg", new byte[]{3}, image(64, 64, 0x102030));
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertNull(store.find("http://a.com/2.jpg"));
+        Assert.assertNotNull(store.find("http://a.com/1.jpg"));
+        Assert.assertEquals(2, new ThumbnailStore(dir, Long.MAX_VALUE, 64).size());
+    }
+}
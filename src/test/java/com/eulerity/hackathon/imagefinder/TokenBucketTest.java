@@ -0,0 +1,65 @@
+package com.eulerity.hackathon.imagefinder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertFalse(bucket.tryAcquire(now));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.nanosUntilAvailable(now));
+
+        long later = now + TimeUnit.MILLISECONDS.toNanos(100);
+        Assert.assertEquals(0, bucket.nanosUntilAvailable(later));
+        Assert.assertTrue(bucket.tryAcquire(later));
+        Assert.assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    public void testRefillIsNotTruncatedByFrequentCalls() {
+        TokenBucket bucket = new TokenBucket(1000, 1);
+        long now = System.nanoTime();
+        Assert.assertTrue(bucket.tryAcquire(now));
+        // calls every 0.1 ms must not reset the refill clock
+        for (int i = 1; i < 10; i++) {
+            Assert.assertFalse(bucket.tryAcquire(now + TimeUnit.MICROSECONDS.toNanos(100 * i)));
+        }
+        Assert.assertTrue(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void testBucketRefillsOnlyUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(100, 2);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Assert.assertTrue(bucket.isFull(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void testRefundGivesBackOneTokenButNeverOverfills() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = System.nanoTime();
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertFalse(bucket.tryAcquire(now));
+        bucket.refund();
+        Assert.assertTrue(bucket.tryAcquire(now));
+        Assert.assertFalse(bucket.tryAcquire(now));
+
+        long later = now + TimeUnit.SECONDS.toNanos(10);
+        bucket.refund(); // a full bucket stays at capacity
+        Assert.assertTrue(bucket.tryAcquire(later));
+        Assert.assertTrue(bucket.tryAcquire(later));
+        Assert.assertFalse(bucket.tryAcquire(later));
+    }
+}
@@ -0,0 +1,45 @@
+package com.eulerity.hackathon.imagefinder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlCanonicalizerTest {
+
+    @Test
+    public void testTrivialVariantsCanonicalizeToTheSameUrl() {
+        String expected = "https://example.com/a/b";
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("https://example.com/a/b"));
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("HTTPS://Example.COM/a/b"));
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("https://example.com:443/a/b"));
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("https://example.com/a/b/"));
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("https://example.com/a/b#top"));
+        Assert.assertEquals(expected, UrlCanonicalizer.canonicalize("https://example.com/a/./c/../b"));
+    }
+
+    @Test
+    public void testKeepsMeaningfulDifferences() {
+        Assert.assertEquals("http://example.com/", UrlCanonicalizer.canonicalize("http://example.com"));
+        Assert.assertEquals("http://example.com:8080/x", UrlCanonicalizer.canonicalize("http://example.com:8080/x"));
+        Assert.assertEquals("http://example.com/x?b=2&a=1", UrlCanonicalizer.canonicalize("http://example.com/x?b=2&a=1#f"));
+        Assert.assertEquals("http://example.com/Path", UrlCanonicalizer.canonicalize("http://example.com/Path"));
+        Assert.assertEquals("not a url", UrlCanonicalizer.canonicalize("not a url"));
+    }
+
+    @Test
+    public void testVariantKeyDropsSizeSelectorsOfImageFiles() {
+        String key = "https://cdn.example.com/img/hero.jpg";
+        Assert.assertEquals(key, UrlCanonicalizer.variantKey("https://cdn.example.com/img/hero.jpg?auto=compress&w=300"));
+        Assert.assertEquals(key, UrlCanonicalizer.variantKey("https://cdn.example.com/img/hero-300x200.jpg"));
+        Assert.assertEquals(key, UrlCanonicalizer.variantKey("https://cdn.example.com/img/hero@2x.jpg"));
+        Assert.assertEquals(key, UrlCanonicalizer.variantKey("https://cdn.example.com/img/hero-scaled.jpg"));
+        Assert.assertEquals("https://example.com/image?id=7", UrlCanonicalizer.variantKey("https://example.com/image?id=7"));
+    }
+
+    @Test
+    public void testVariantKeyKeepsParametersThatPickTheImage() {
+        Assert.assertNotEquals(UrlCanonicalizer.variantKey("https://example.com/img.jpg?id=1"),
+                UrlCanonicalizer.variantKey("https://example.com/img.jpg?id=2"));
+        Assert.assertEquals("https://example.com/img.jpg?id=1",
+                UrlCanonicalizer.variantKey("https://example.com/img-300x200.jpg?w=300&id=1&v=42"));
+    }
+}